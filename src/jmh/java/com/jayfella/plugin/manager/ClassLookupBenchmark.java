@@ -0,0 +1,124 @@
+package com.jayfella.plugin.manager;
+
+import com.jayfella.plugin.manager.fixture.PluginJarGenerator;
+import com.jayfella.plugin.manager.plugin.Plugin;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Measures {@link SimplePluginLoader#getClassByName(String)} once every class has been defined: a hit, a miss in a
+ * package that a plugin provides, which has to probe that plugin's jar, and a miss in a package no plugin provides.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ClassLookupBenchmark {
+
+    @Param({ "50" })
+    public int pluginCount;
+
+    @Param({ "100" })
+    public int classCount;
+
+    private File pluginDir;
+    private SimplePluginManager pluginManager;
+    private SimplePluginLoader pluginLoader;
+
+    private String[] hits;
+    private String[] packageMisses;
+    private String[] unknownMisses;
+
+    private int next;
+
+    @Setup(Level.Trial)
+    public void loadPlugins() throws IOException {
+
+        Logger.getLogger("Plugin Manager").setLevel(java.util.logging.Level.WARNING);
+
+        pluginDir = Files.createTempDirectory("class-lookup-benchmark").toFile();
+
+        hits = new String[pluginCount * classCount];
+        packageMisses = new String[hits.length];
+        unknownMisses = new String[hits.length];
+
+        for (int i = 0; i < pluginCount; i++) {
+
+            String id = String.format("plugin-%04d", i);
+            PluginJarGenerator.writePlugin(pluginDir, id, Collections.emptyList(), Collections.emptyMap(), classCount);
+
+            for (int j = 0; j < classCount; j++) {
+                int index = i * classCount + j;
+                hits[index] = PluginJarGenerator.getClassName(id, j);
+                packageMisses[index] = PluginJarGenerator.getPackageName(id) + ".Missing" + j;
+                unknownMisses[index] = "missing." + PluginJarGenerator.getPackageName(id) + ".Missing" + j;
+            }
+        }
+
+        pluginManager = new SimplePluginManager();
+        pluginManager.registerInterface(SimplePluginLoader.class);
+        pluginManager.loadPlugins(pluginDir);
+
+        pluginLoader = (SimplePluginLoader) pluginManager.getPlugin("plugin-0000").getPluginLoader();
+
+        for (String className : hits) {
+            if (pluginLoader.getClassByName(className) == null) {
+                throw new IllegalStateException("Class " + className + " was not found.");
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void unloadPlugins() throws IOException {
+
+        // the plugins do not depend on each other, so each one is unloaded on its own.
+        for (Plugin plugin : pluginManager.getPlugins()) {
+            pluginManager.unloadPlugin(plugin);
+        }
+
+        FileUtils.deleteDirectory(pluginDir);
+    }
+
+    private int nextIndex() {
+        int index = next;
+        next = index + 1 == hits.length ? 0 : index + 1;
+        return index;
+    }
+
+    @Benchmark
+    public Class<?> hit() {
+        return pluginLoader.getClassByName(hits[nextIndex()]);
+    }
+
+    @Benchmark
+    public Class<?> missInProvidedPackage() {
+        return pluginLoader.getClassByName(packageMisses[nextIndex()]);
+    }
+
+    @Benchmark
+    public Class<?> missInUnknownPackage() {
+        return pluginLoader.getClassByName(unknownMisses[nextIndex()]);
+    }
+
+}
@@ -0,0 +1,98 @@
+package com.jayfella.plugin.manager;
+
+import com.jayfella.plugin.manager.fixture.PluginJarGenerator;
+import com.jayfella.plugin.manager.plugin.Plugin;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Measures {@link SimplePluginManager#loadPlugins(File)} over a directory of generated plugins, from discovery up to
+ * and including onLoad. Each plugin depends on the plugin at half its index, so the sort has real work to do.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LoadPluginsBenchmark {
+
+    @Param({ "10", "100", "500" })
+    public int pluginCount;
+
+    @Param({ "10" })
+    public int classCount;
+
+    private File pluginDir;
+    private SimplePluginManager pluginManager;
+
+    @Setup(Level.Trial)
+    public void writePlugins() throws IOException {
+
+        Logger.getLogger("Plugin Manager").setLevel(java.util.logging.Level.WARNING);
+
+        pluginDir = Files.createTempDirectory("load-plugins-benchmark").toFile();
+
+        for (int i = 0; i < pluginCount; i++) {
+            List<String> dependencies = i == 0
+                    ? Collections.emptyList()
+                    : Collections.singletonList(String.format("plugin-%04d", i / 2));
+
+            PluginJarGenerator.writePlugin(pluginDir, String.format("plugin-%04d", i), dependencies, Collections.emptyMap(), classCount);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deletePlugins() throws IOException {
+        FileUtils.deleteDirectory(pluginDir);
+    }
+
+    @Benchmark
+    public Plugin[] loadPlugins() {
+        pluginManager = new SimplePluginManager();
+        pluginManager.registerInterface(SimplePluginLoader.class);
+        return pluginManager.loadPlugins(pluginDir);
+    }
+
+    /**
+     * Closes the class loaders of the previous invocation, so every invocation starts from the same state and no jar
+     * handles pile up.
+     */
+    @TearDown(Level.Invocation)
+    public void unloadPlugins() {
+
+        if (pluginManager == null) {
+            return;
+        }
+
+        // every plugin depends on the first one, directly or transitively, so this unloads all of them.
+        Plugin root = pluginManager.getPlugin("plugin-0000");
+
+        if (root != null) {
+            pluginManager.unloadPlugin(root);
+        }
+
+        pluginManager = null;
+    }
+
+}
@@ -0,0 +1,103 @@
+package com.jayfella.plugin.manager;
+
+import com.jayfella.plugin.manager.fixture.PluginJarGenerator;
+import com.jayfella.plugin.manager.plugin.Plugin;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Measures {@link SimplePluginManager#getPlugin(String)} for registered and unknown ids, and the enabled plugin count,
+ * which are called on every plugin interaction.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PluginLookupBenchmark {
+
+    @Param({ "100", "1000" })
+    public int pluginCount;
+
+    private File pluginDir;
+    private SimplePluginManager pluginManager;
+
+    private String[] ids;
+    private String[] unknownIds;
+
+    private int next;
+
+    @Setup(Level.Trial)
+    public void loadPlugins() throws IOException {
+
+        Logger.getLogger("Plugin Manager").setLevel(java.util.logging.Level.WARNING);
+
+        pluginDir = Files.createTempDirectory("plugin-lookup-benchmark").toFile();
+
+        ids = new String[pluginCount];
+        unknownIds = new String[pluginCount];
+
+        for (int i = 0; i < pluginCount; i++) {
+            ids[i] = String.format("plugin-%04d", i);
+            unknownIds[i] = String.format("unknown-%04d", i);
+            PluginJarGenerator.writePlugin(pluginDir, ids[i], Collections.emptyList());
+        }
+
+        pluginManager = new SimplePluginManager();
+        pluginManager.registerInterface(SimplePluginLoader.class);
+        pluginManager.loadPlugins(pluginDir);
+        pluginManager.enablePlugins();
+    }
+
+    @TearDown(Level.Trial)
+    public void unloadPlugins() throws IOException {
+
+        for (Plugin plugin : pluginManager.getPlugins()) {
+            pluginManager.unloadPlugin(plugin);
+        }
+
+        FileUtils.deleteDirectory(pluginDir);
+    }
+
+    private int nextIndex() {
+        int index = next;
+        next = index + 1 == ids.length ? 0 : index + 1;
+        return index;
+    }
+
+    @Benchmark
+    public Plugin hit() {
+        return pluginManager.getPlugin(ids[nextIndex()]);
+    }
+
+    @Benchmark
+    public Plugin miss() {
+        return pluginManager.getPlugin(unknownIds[nextIndex()]);
+    }
+
+    @Benchmark
+    public long enabledCount() {
+        return pluginManager.getEnabledPluginCount();
+    }
+
+}
@@ -0,0 +1,121 @@
+package com.jayfella.plugin.manager;
+
+import com.google.common.io.ByteStreams;
+import com.jayfella.plugin.manager.json.JsonObjectMapper;
+import com.jayfella.plugin.manager.plugin.description.PluginDescription;
+import com.jayfella.plugin.manager.transformer.ClassTarget;
+import com.jayfella.plugin.manager.transformer.ClassTransformer;
+import org.jetbrains.annotations.NotNull;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Opcodes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link ClassSerializer#processClass} over a real class file, with no transformers, with a transformer
+ * whose target does not match, with one whose annotation target has to scan the constant pool, and with a pass-through
+ * transformer that matches, which costs a full ASM read and write.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProcessClassBenchmark {
+
+    private static final String PATH = SimplePluginManager.class.getName().replace('.', '/') + ".class";
+
+    @Param({ "none", "unmatched", "annotationScan", "passThrough" })
+    public String transformer;
+
+    private ClassSerializer classSerializer;
+    private PluginDescription description;
+
+    private byte[] classBytes;
+    private ByteBuffer directClassBytes;
+
+    @Setup(Level.Trial)
+    public void createSerializer() throws IOException {
+
+        try (InputStream in = SimplePluginManager.class.getClassLoader().getResourceAsStream(PATH)) {
+            classBytes = ByteStreams.toByteArray(in);
+        }
+
+        // mapped jars hand out direct buffers.
+        directClassBytes = ByteBuffer.allocateDirect(classBytes.length);
+        directClassBytes.put(classBytes).flip();
+
+        description = JsonObjectMapper.getInstance().getObjectMapper()
+                .readValue("{ \"id\": \"benchmark\", \"version\": \"1.0.0\" }", PluginDescription.class);
+
+        classSerializer = new SimplePluginManager().getClassSerializer();
+
+        switch (transformer) {
+            case "none":
+                break;
+            case "unmatched":
+                classSerializer.registerTransformer(new PassThroughTransformer(ClassTarget.packages("org.example")));
+                break;
+            case "annotationScan":
+                classSerializer.registerTransformer(new PassThroughTransformer(ClassTarget.annotatedWith("org.example.Missing")));
+                break;
+            case "passThrough":
+                classSerializer.registerTransformer(new PassThroughTransformer(ClassTarget.all()));
+                break;
+            default:
+                throw new IllegalArgumentException(transformer);
+        }
+    }
+
+    @Benchmark
+    public byte[] processArray() {
+        return classSerializer.processClass(description, PATH, classBytes);
+    }
+
+    @Benchmark
+    public ByteBuffer processDirectBuffer() {
+        return classSerializer.processClass(description, PATH, directClassBytes.duplicate());
+    }
+
+    private static final class PassThroughTransformer implements ClassTransformer {
+
+        private final ClassTarget target;
+
+        PassThroughTransformer(@NotNull ClassTarget target) {
+            this.target = target;
+        }
+
+        @Override
+        public @NotNull String getName() {
+            return "pass-through";
+        }
+
+        @Override
+        public @NotNull ClassTarget getTarget() {
+            return target;
+        }
+
+        @Override
+        public @NotNull ClassVisitor transform(@NotNull PluginDescription plugin, @NotNull String className, @NotNull ClassVisitor next) {
+            return new ClassVisitor(Opcodes.ASM7, next) { };
+        }
+
+    }
+
+}
@@ -0,0 +1,50 @@
+package com.jayfella.plugin.manager.sorter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link TopologicalOrder#createOrderedLoad(DirectedGraph)} over the graph shapes of
+ * {@link BenchmarkTopologicalOrder}. The graph is not modified by the sort, so one graph is built per trial.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TopologicalOrderBenchmark {
+
+    @Param({ "chain", "reverse-chain", "random-dag", "star" })
+    public String shape;
+
+    @Param({ "100", "1000", "10000" })
+    public int size;
+
+    private DirectedGraph<Integer> graph;
+
+    @Setup(Level.Trial)
+    public void createGraph() {
+        graph = BenchmarkTopologicalOrder.createGraph(shape, size);
+        BenchmarkTopologicalOrder.verifyOrder(graph, TopologicalOrder.createOrderedLoad(graph));
+    }
+
+    @Benchmark
+    public List<Integer> createOrderedLoad() {
+        return TopologicalOrder.createOrderedLoad(graph);
+    }
+
+}
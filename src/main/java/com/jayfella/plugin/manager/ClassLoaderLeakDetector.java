@@ -0,0 +1,119 @@
+package com.jayfella.plugin.manager;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Tracks the class loaders of unloaded plugins until they are garbage collected.
+ *
+ * A class loader is only collected once nothing references any of its classes, so a loader that is still around long
+ * after its plugin was unloaded is almost always pinned by something outside the plugin: a static field, a thread, a
+ * listener that was never removed. Phantom references are used so tracking a loader never keeps it alive.
+ */
+final class ClassLoaderLeakDetector {
+
+    private static final Logger log = Logger.getLogger(ClassLoaderLeakDetector.class.getName());
+
+    private final ReferenceQueue<ClassLoader> queue = new ReferenceQueue<>();
+
+    // the references must be reachable themselves or they are collected before they are enqueued.
+    private final Map<Reference<? extends ClassLoader>, UnloadedLoader> pending = new ConcurrentHashMap<>();
+
+    private volatile long gracePeriodNanos = TimeUnit.SECONDS.toNanos(30);
+
+    /**
+     * Starts tracking the class loader of a plugin that has just been unloaded.
+     */
+    void track(@NotNull String pluginId, @NotNull ClassLoader classLoader) {
+        UnloadedLoader unloaded = new UnloadedLoader(pluginId, classLoader, queue);
+        pending.put(unloaded, unloaded);
+    }
+
+    /**
+     * Sets how long a class loader may survive after its plugin was unloaded before it is reported as a leak.
+     */
+    void setGracePeriod(long duration, @NotNull TimeUnit unit) {
+        this.gracePeriodNanos = unit.toNanos(duration);
+    }
+
+    long getGracePeriod(@NotNull TimeUnit unit) {
+        return unit.convert(gracePeriodNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Gets the number of unloaded class loaders that have not been collected yet, whether or not they are suspected
+     * leaks.
+     */
+    int getPendingCount() {
+        expunge();
+        return pending.size();
+    }
+
+    /**
+     * Gets the ids of the plugins whose class loader is still reachable longer than the grace period after they were
+     * unloaded. Each leak is logged the first time it is reported.
+     */
+    @NotNull
+    String[] getSuspectedLeaks() {
+
+        expunge();
+
+        long now = System.nanoTime();
+        List<String> leaks = new ArrayList<>();
+
+        for (UnloadedLoader unloaded : pending.values()) {
+
+            if (now - unloaded.unloadedAt < gracePeriodNanos) {
+                continue;
+            }
+
+            leaks.add(unloaded.pluginId);
+
+            if (!unloaded.reported) {
+                unloaded.reported = true;
+                log.warning(String.format("The class loader of plugin '%s' has not been garbage collected %d seconds after it was unloaded. Something still references its classes.",
+                        unloaded.pluginId, TimeUnit.NANOSECONDS.toSeconds(now - unloaded.unloadedAt)));
+            }
+        }
+
+        return leaks.toArray(new String[0]);
+    }
+
+    private void expunge() {
+
+        Reference<? extends ClassLoader> reference;
+
+        while ((reference = queue.poll()) != null) {
+
+            UnloadedLoader unloaded = pending.remove(reference);
+
+            if (unloaded != null && unloaded.reported) {
+                log.info("The class loader of plugin '" + unloaded.pluginId + "' has been garbage collected.");
+            }
+        }
+    }
+
+    private static final class UnloadedLoader extends PhantomReference<ClassLoader> {
+
+        private final String pluginId;
+        private final long unloadedAt = System.nanoTime();
+
+        private volatile boolean reported;
+
+        UnloadedLoader(@NotNull String pluginId, @NotNull ClassLoader classLoader, @NotNull ReferenceQueue<ClassLoader> queue) {
+            super(classLoader, queue);
+            this.pluginId = pluginId;
+        }
+
+    }
+
+}
@@ -0,0 +1,79 @@
+package com.jayfella.plugin.manager;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A lookup of a class that a plugin class loader had not cached yet. Only create it if
+ * {@link FlightRecorderSupport#AVAILABLE}.
+ */
+@Name("com.jayfella.plugin.manager.ClassLookup")
+@Label("Plugin Class Lookup")
+@Category({ "Plugin Manager", "Class Loading" })
+@Description("A class lookup that missed the cache of a plugin class loader, and the plugin that resolved it")
+@StackTrace(false)
+final class ClassLookupEvent extends Event {
+
+    static final String DEFINED = "DEFINED";
+    static final String RESOLVED = "RESOLVED";
+    static final String NOT_FOUND = "NOT_FOUND";
+
+    @Label("Plugin")
+    @Description("The plugin whose class loader looked up the class")
+    String pluginId;
+
+    @Label("Class Name")
+    String className;
+
+    @Label("All Plugins")
+    @Description("Whether the classes of all plugins were searched, or only the jar of the plugin")
+    boolean global;
+
+    @Label("Outcome")
+    @Description("DEFINED from the jar of the plugin, RESOLVED from another plugin, or NOT_FOUND")
+    String outcome;
+
+    @Label("Resolved By")
+    @Description("The plugin whose class loader defined the class")
+    String resolvedBy;
+
+    @NotNull
+    static ClassLookupEvent start() {
+        ClassLookupEvent event = new ClassLookupEvent();
+        event.begin();
+        return event;
+    }
+
+    void finish(@NotNull ClassLoader classLoader, @NotNull String pluginId, @NotNull String className, boolean global, @Nullable Class<?> result) {
+
+        end();
+
+        if (shouldCommit()) {
+
+            this.pluginId = pluginId;
+            this.className = className;
+            this.global = global;
+
+            if (result == null) {
+                this.outcome = NOT_FOUND;
+            } else {
+
+                ClassLoader provider = result.getClassLoader();
+
+                this.outcome = provider == classLoader ? DEFINED : RESOLVED;
+                this.resolvedBy = provider instanceof SimplePluginClassLoader
+                        ? ((SimplePluginClassLoader) provider).getStatistics().getPluginId()
+                        : null;
+            }
+
+            commit();
+        }
+    }
+
+}
@@ -0,0 +1,189 @@
+package com.jayfella.plugin.manager;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.jayfella.plugin.manager.json.JsonObjectMapper;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The ordered list of classes a plugin loads during startup.
+ *
+ * On the first start a profile is recorded by noting every class the plugin's class loader defines until the plugin
+ * manager has finished enabling plugins. On later starts the profile is replayed on a background thread as soon as the
+ * class loader is created, so most classes are already defined by the time the plugin asks for them. The profile is
+ * stored next to the plugin's data folder and is discarded as soon as the jar changes.
+ */
+final class ClassPreloadProfile {
+
+    private static final Logger log = Logger.getLogger(ClassPreloadProfile.class.getName());
+
+    private static final String FILE_SUFFIX = ".preload.json";
+
+    private final File jar;
+    private final File profileFile;
+
+    private volatile List<String> recorded;
+
+    private ClassPreloadProfile(@NotNull File jar, @NotNull File profileFile) {
+        this.jar = jar;
+        this.profileFile = profileFile;
+    }
+
+    /**
+     * Replays the stored profile of the given plugin on the executor if it is still valid, and otherwise starts
+     * recording a new one.
+     *
+     * @param jar         the plugin jar.
+     * @param dataFolder  the data folder of the plugin. The profile is stored next to it.
+     * @param classLoader the class loader of the plugin.
+     * @param executor    the executor to define classes on.
+     * @return the profile, which is recording if no valid profile was stored.
+     */
+    @NotNull
+    static ClassPreloadProfile start(@NotNull File jar, @NotNull File dataFolder, @NotNull ClassLoader classLoader, @NotNull ExecutorService executor) {
+
+        File profileFile = new File(dataFolder.getParentFile(), dataFolder.getName() + FILE_SUFFIX);
+        ClassPreloadProfile profile = new ClassPreloadProfile(jar, profileFile);
+
+        List<String> classes = profile.read();
+
+        if (classes == null) {
+            profile.recorded = new ArrayList<>();
+            return profile;
+        }
+
+        try {
+            executor.execute(() -> preload(classLoader, classes));
+        } catch (RejectedExecutionException e) {
+            log.log(Level.FINE, "Unable to preload the classes of " + jar.getName(), e);
+        }
+
+        return profile;
+    }
+
+    private static void preload(ClassLoader classLoader, List<String> classes) {
+
+        long start = System.nanoTime();
+        int preloaded = 0;
+
+        for (String className : classes) {
+            try {
+                // loadClass takes the per-class lock, so racing the plugin for the same class is safe.
+                Class.forName(className, false, classLoader);
+                preloaded++;
+            } catch (ClassNotFoundException | LinkageError e) {
+                // the plugin will report the problem itself if it ever needs the class.
+            } catch (IllegalStateException e) {
+                // the class loader has been closed.
+                break;
+            }
+        }
+
+        log.fine(String.format("Preloaded %d of %d classes in %d ms", preloaded, classes.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+    }
+
+    /**
+     * Reads the stored profile, deleting it if the jar has changed since it was recorded.
+     *
+     * @return the classes of the profile, or null if there is no valid profile.
+     */
+    private List<String> read() {
+
+        if (!profileFile.isFile()) {
+            return null;
+        }
+
+        try {
+
+            ProfileFile file = JsonObjectMapper.getInstance().getObjectMapper().readValue(profileFile, ProfileFile.class);
+
+            if (file.getJarSize() == jar.length() && file.getJarLastModified() == jar.lastModified() && file.getClasses() != null) {
+                return file.getClasses();
+            }
+
+        } catch (IOException e) {
+            log.log(Level.FINE, "Unable to read class preload profile " + profileFile, e);
+        }
+
+        if (!profileFile.delete()) {
+            log.fine("Unable to delete stale class preload profile " + profileFile);
+        }
+
+        return null;
+    }
+
+    boolean isRecording() {
+        return recorded != null;
+    }
+
+    /**
+     * Records that the plugin defined the given class.
+     */
+    void record(@NotNull String className) {
+
+        List<String> classes = recorded;
+
+        if (classes != null) {
+            synchronized (classes) {
+                classes.add(className);
+            }
+        }
+    }
+
+    /**
+     * Stops recording and stores the profile. Does nothing if the profile was replayed.
+     */
+    void finish() {
+
+        List<String> classes = recorded;
+
+        if (classes == null) {
+            return;
+        }
+
+        recorded = null;
+
+        ProfileFile file = new ProfileFile();
+        file.setJarSize(jar.length());
+        file.setJarLastModified(jar.lastModified());
+
+        synchronized (classes) {
+            file.setClasses(new ArrayList<>(classes));
+        }
+
+        try {
+            JsonObjectMapper.getInstance().getObjectMapper().writeValue(profileFile, file);
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Unable to write class preload profile " + profileFile, e);
+        }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    private static class ProfileFile {
+
+        private long jarSize;
+        private long jarLastModified;
+        private List<String> classes;
+
+        public long getJarSize() { return jarSize; }
+        public void setJarSize(long jarSize) { this.jarSize = jarSize; }
+
+        public long getJarLastModified() { return jarLastModified; }
+        public void setJarLastModified(long jarLastModified) { this.jarLastModified = jarLastModified; }
+
+        public List<String> getClasses() { return classes; }
+        public void setClasses(List<String> classes) { this.classes = classes; }
+
+    }
+
+}
@@ -1,8 +1,25 @@
 package com.jayfella.plugin.manager;
 
+import com.google.common.io.ByteStreams;
+import com.jayfella.plugin.manager.cache.BytecodeCache;
 import com.jayfella.plugin.manager.plugin.description.PluginDescription;
+import com.jayfella.plugin.manager.transformer.ClassCandidate;
+import com.jayfella.plugin.manager.transformer.ClassTransformer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.objectweb.asm.*;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -10,49 +27,427 @@ public class ClassSerializer {
 
     private static final Logger log = Logger.getLogger(ClassSerializer.class.getName());
 
+    private final List<ClassTransformer> transformers = new CopyOnWriteArrayList<>();
+    private final Map<ClassTransformer, TransformerStats> stats = new ConcurrentHashMap<>();
+
+    private final LongAdder bypassed = new LongAdder();
+    private final LongAdder transformed = new LongAdder();
+    private final LongAdder transformNanos = new LongAdder();
+
+    private volatile BytecodeCache bytecodeCache;
+    private volatile boolean transformerTimingsEnabled;
+
     ClassSerializer() {
 
     }
 
+    /**
+     * Sets the cache transformed classes are read from and written to.
+     * Classes that no transformer targets are never cached, because they are not transformed.
+     *
+     * @param bytecodeCache the cache to use, or null to transform every class on every load.
+     */
+    public void setBytecodeCache(@Nullable BytecodeCache bytecodeCache) {
+        this.bytecodeCache = bytecodeCache;
+    }
+
+    @Nullable
+    public BytecodeCache getBytecodeCache() {
+        return bytecodeCache;
+    }
+
+    /**
+     * Sets whether the time of each transformer is recorded, see {@link TransformerStats#getNanos()}. The number of
+     * classes each transformer is applied to is always counted.
+     */
+    public void setTransformerTimingsEnabled(boolean enabled) {
+        this.transformerTimingsEnabled = enabled;
+    }
+
+    public boolean isTransformerTimingsEnabled() {
+        return transformerTimingsEnabled;
+    }
+
+    /**
+     * Registers a transformer. Transformers run in the order they were registered.
+     * Only classes that are loaded after the transformer has been registered are transformed.
+     */
+    public void registerTransformer(@NotNull ClassTransformer transformer) {
+        stats.putIfAbsent(transformer, new TransformerStats(transformer.getName()));
+        transformers.add(transformer);
+    }
+
+    public boolean unregisterTransformer(@NotNull ClassTransformer transformer) {
+        return transformers.remove(transformer);
+    }
+
+    @NotNull
+    public List<ClassTransformer> getTransformers() {
+        return Collections.unmodifiableList(transformers);
+    }
+
+    /**
+     * Gets the statistics of the given transformer, or null if it has never been registered.
+     */
+    @Nullable
+    public TransformerStats getStats(@NotNull ClassTransformer transformer) {
+        return stats.get(transformer);
+    }
+
+    /**
+     * Gets the number of classes that no transformer targeted and that were passed through untouched.
+     */
+    public long getBypassedCount() {
+        return bypassed.sum();
+    }
+
+    /**
+     * Gets the number of classes that were transformed.
+     */
+    public long getTransformedCount() {
+        return transformed.sum();
+    }
+
+    /**
+     * Gets the total time spent transforming classes, in nanoseconds.
+     */
+    public long getTransformNanos() {
+        return transformNanos.sum();
+    }
+
     public byte[] processClass(PluginDescription pdf, String path, byte[] clazz) {
+        return processClass(pdf, path, clazz, null);
+    }
+
+    public byte[] processClass(PluginDescription pdf, String path, byte[] clazz, @Nullable ClassLoader classLoader) {
+        ByteBuffer processed = processClass(pdf, path, ByteBuffer.wrap(clazz), classLoader);
+
+        if (processed.hasArray() && processed.arrayOffset() == 0 && processed.position() == 0
+                && processed.remaining() == processed.array().length) {
+            return processed.array();
+        }
+
+        return toByteArray(processed);
+    }
+
+    public ByteBuffer processClass(PluginDescription pdf, String path, ByteBuffer clazz) {
+        return processClass(pdf, path, clazz, null);
+    }
+
+    /**
+     * Processes the class in the given buffer. If no transformer targets the class the same buffer is returned.
+     * The buffer is never modified, but it must remain valid until the result has been consumed.
+     *
+     * @param classLoader the class loader that will define the class. The supertypes needed to compute frames are
+     *                    read from the class files it can see, see {@link ClassTransformer#getWriterFlags()}. If null,
+     *                    they are read from the system class loader.
+     */
+    public ByteBuffer processClass(PluginDescription pdf, String path, ByteBuffer clazz, @Nullable ClassLoader classLoader) {
+
+        if (transformers.isEmpty()) {
+            bypassed.increment();
+            return clazz;
+        }
+
+        String className = path.substring(0, path.length() - ".class".length()).replace('/', '.');
+        ClassCandidate candidate = new ClassCandidate(pdf, className, clazz);
+
+        List<ClassTransformer> matched = null;
+
+        for (ClassTransformer transformer : transformers) {
+            if (transformer.getTarget().matches(candidate)) {
+
+                if (matched == null) {
+                    matched = new ArrayList<>(2);
+                }
+
+                matched.add(transformer);
+            }
+        }
+
+        if (matched == null) {
+            bypassed.increment();
+            return clazz;
+        }
+
+        ClassTransformEvent event = FlightRecorderSupport.AVAILABLE ? ClassTransformEvent.start() : null;
+        int originalSize = clazz.remaining();
+
+        BytecodeCache cache = bytecodeCache;
+        String key = null;
+
+        if (cache != null) {
+
+            key = cache.createKey(pdf.getId(), className, clazz, matched);
+            byte[] cached = cache.get(key);
+
+            if (cached != null) {
+
+                if (event != null) {
+                    event.finish(pdf.getId(), className, getNames(matched), ClassTransformEvent.CACHED, originalSize, cached.length);
+                }
+
+                return ByteBuffer.wrap(cached);
+            }
+        }
+
         try {
-            clazz = convert(clazz);
+
+            long start = System.nanoTime();
+            PluginClassWriter cw = transform(pdf, className, clazz, matched, classLoader);
+            byte[] converted = cw.toByteArray();
+            long elapsed = System.nanoTime() - start;
+
+            // frames computed from other classes are only valid as long as those classes are, which the key cannot tell.
+            if (cache != null && !cw.hasResolvedTypes()) {
+                cache.put(key, converted);
+            }
+
+            transformed.increment();
+            transformNanos.add(elapsed);
+
+            long share = transformerTimingsEnabled ? elapsed / matched.size() : 0;
+
+            for (ClassTransformer transformer : matched) {
+                TransformerStats transformerStats = stats.get(transformer);
+
+                if (transformerStats != null) {
+                    transformerStats.record(share);
+                }
+            }
+
+            if (event != null) {
+                event.finish(pdf.getId(), className, getNames(matched), ClassTransformEvent.TRANSFORMED, originalSize, converted.length);
+            }
+
+            return ByteBuffer.wrap(converted);
+
         } catch (Exception ex) {
             log.log(Level.SEVERE, "Fatal error trying to convert " + pdf.getFullName() + ":" + path, ex);
         }
 
+        if (event != null) {
+            event.finish(pdf.getId(), className, getNames(matched), ClassTransformEvent.FAILED, originalSize, originalSize);
+        }
+
         return clazz;
     }
 
-    private byte[] convert(byte[] b)
-    {
-        ClassReader cr = new ClassReader( b );
-        ClassWriter cw = new ClassWriter( cr, 0 );
+    private static String getNames(@NotNull List<ClassTransformer> transformers) {
 
-        cr.accept( new ClassVisitor( Opcodes.ASM7, cw )
-        {
-            @Override
-            public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions)
-            {
-                return new MethodVisitor( api, super.visitMethod( access, name, desc, signature, exceptions ) )
-                {
+        StringBuilder names = new StringBuilder();
 
-                    @Override
-                    public void visitFieldInsn(int opcode, String owner, String name, String desc)
-                    {
-                        super.visitFieldInsn( opcode, owner, name, desc );
-                    }
+        for (ClassTransformer transformer : transformers) {
 
-                    @Override
-                    public void visitMethodInsn(int opcode, String owner, String name, String desc, boolean itf)
-                    {
-                        super.visitMethodInsn( opcode, owner, name, desc, itf );
-                    }
-                };
+            if (names.length() > 0) {
+                names.append(", ");
             }
-        }, 0 );
 
-        return cw.toByteArray();
+            names.append(transformer.getName());
+        }
+
+        return names.toString();
+    }
+
+    /**
+     * Runs the given transformers over the class in a single pass. The visitor chain is built back to front so the
+     * first registered transformer sees the class first.
+     *
+     * @return the writer that holds the transformed class.
+     */
+    private PluginClassWriter transform(PluginDescription pdf, String className, ByteBuffer clazz, List<ClassTransformer> matched, @Nullable ClassLoader classLoader) {
+
+        ClassReader cr;
+
+        if (clazz.hasArray()) {
+            cr = new ClassReader( clazz.array(), clazz.arrayOffset() + clazz.position(), clazz.remaining() );
+        } else {
+            cr = new ClassReader( toByteArray(clazz) );
+        }
+
+        int flags = 0;
+
+        for (ClassTransformer transformer : matched) {
+            flags |= transformer.getWriterFlags();
+        }
+
+        PluginClassWriter cw = new PluginClassWriter( cr, flags, classLoader );
+        ClassVisitor cv = cw;
+
+        for (int i = matched.size() - 1; i >= 0; i--) {
+            cv = matched.get(i).transform(pdf, className, cv);
+        }
+
+        cr.accept( cv, 0 );
+
+        return cw;
+    }
+
+    private static byte[] toByteArray(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Reads the class file of the given class through the given class loader without defining the class.
+     *
+     * @return the class file, or null if the class loader cannot see it.
+     */
+    @Nullable
+    private static byte[] readClassFile(@Nullable ClassLoader classLoader, @NotNull String internalName) throws IOException {
+
+        // the resources of a plugin class loader are those of its own jar only, so it resolves the class itself.
+        if (classLoader instanceof SimplePluginClassLoader) {
+            return ((SimplePluginClassLoader) classLoader).findClassFile(internalName.replace('/', '.'));
+        }
+
+        String path = internalName + ".class";
+
+        try (InputStream in = classLoader != null
+                ? classLoader.getResourceAsStream(path)
+                : ClassLoader.getSystemResourceAsStream(path)) {
+
+            return in == null ? null : ByteStreams.toByteArray(in);
+        }
+    }
+
+    /**
+     * A class writer that resolves the supertypes it needs to compute frames from their class files. The default
+     * implementation loads them through the class loader of ASM, which cannot see plugin classes, and loading them
+     * through the plugin instead could define the very class that is being transformed.
+     */
+    private static final class PluginClassWriter extends ClassWriter {
+
+        private static final String OBJECT = "java/lang/Object";
+
+        private final ClassReader reader;
+        private final ClassLoader classLoader;
+        private final Map<String, ClassReader> types = new HashMap<>();
+
+        PluginClassWriter(@NotNull ClassReader reader, int flags, @Nullable ClassLoader classLoader) {
+            super(reader, flags);
+            this.reader = reader;
+            this.classLoader = classLoader;
+        }
+
+        /**
+         * Gets whether the output depends on classes other than the one that was transformed.
+         */
+        boolean hasResolvedTypes() {
+            return !types.isEmpty();
+        }
+
+        @Override
+        protected String getCommonSuperClass(String type1, String type2) {
+
+            // the verifier treats every interface as Object.
+            if (isInterface(type1) || isInterface(type2)) {
+                return OBJECT;
+            }
+
+            List<String> superClasses = new ArrayList<>();
+
+            for (String type = type2; type != null; type = getSuperName(type)) {
+                superClasses.add(type);
+            }
+
+            for (String type = type1; type != null; type = getSuperName(type)) {
+                if (superClasses.contains(type)) {
+                    return type;
+                }
+            }
+
+            return OBJECT;
+        }
+
+        // every walk up the hierarchy ends at Object, which is not read: its class file may be newer than ASM.
+        private boolean isInterface(@NotNull String type) {
+            return !type.equals(OBJECT) && (read(type).getAccess() & Opcodes.ACC_INTERFACE) != 0;
+        }
+
+        @Nullable
+        private String getSuperName(@NotNull String type) {
+            return type.equals(OBJECT) ? null : read(type).getSuperName();
+        }
+
+        @NotNull
+        private ClassReader read(@NotNull String type) {
+
+            if (type.equals(reader.getClassName())) {
+                return reader;
+            }
+
+            ClassReader typeReader = types.get(type);
+
+            if (typeReader == null) {
+
+                byte[] classFile;
+
+                try {
+                    classFile = readClassFile(classLoader, type);
+                } catch (IOException e) {
+                    throw new TypeNotPresentException(type.replace('/', '.'), e);
+                }
+
+                if (classFile == null) {
+                    throw new TypeNotPresentException(type.replace('/', '.'), null);
+                }
+
+                typeReader = new ClassReader(classFile);
+                types.put(type, typeReader);
+            }
+
+            return typeReader;
+        }
+
+    }
+
+    /**
+     * Statistics of a registered transformer. All matching transformers run interleaved in one pass over a class, so
+     * the time of a pass, including reading and writing the class, is split evenly between the transformers in it.
+     * A transformer is only charged exactly its own time in the passes it runs in alone.
+     */
+    public static final class TransformerStats {
+
+        private final String name;
+        private final LongAdder classes = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+
+        TransformerStats(String name) {
+            this.name = name;
+        }
+
+        void record(long elapsed) {
+            classes.increment();
+            nanos.add(elapsed);
+        }
+
+        @NotNull
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Gets the number of classes this transformer has been applied to.
+         */
+        public long getClassCount() {
+            return classes.sum();
+        }
+
+        /**
+         * Gets the share of the transform time charged to this transformer, in nanoseconds. Only recorded while
+         * transformer timings are enabled, see {@link ClassSerializer#setTransformerTimingsEnabled(boolean)}.
+         */
+        public long getNanos() {
+            return nanos.sum();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d classes in %.3f ms", name, getClassCount(), getNanos() / 1_000_000.0);
+        }
+
     }
 
 }
@@ -0,0 +1,71 @@
+package com.jayfella.plugin.manager;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The transformation of a class that at least one transformer targets. Only create it if
+ * {@link FlightRecorderSupport#AVAILABLE}.
+ */
+@Name("com.jayfella.plugin.manager.ClassTransform")
+@Label("Plugin Class Transform")
+@Category({ "Plugin Manager", "Class Loading" })
+@Description("A pass of the matching transformers over a plugin class, or a read of its result from the bytecode cache")
+@StackTrace(false)
+final class ClassTransformEvent extends Event {
+
+    static final String TRANSFORMED = "TRANSFORMED";
+    static final String CACHED = "CACHED";
+    static final String FAILED = "FAILED";
+
+    @Label("Plugin")
+    String pluginId;
+
+    @Label("Class Name")
+    String className;
+
+    @Label("Transformers")
+    @Description("The names of the transformers that target the class, in the order they run")
+    String transformers;
+
+    @Label("Outcome")
+    @Description("TRANSFORMED, CACHED if the bytecode cache held the result, or FAILED if the original class was used")
+    String outcome;
+
+    @Label("Original Size")
+    @DataAmount
+    long originalSize;
+
+    @Label("Transformed Size")
+    @DataAmount
+    long transformedSize;
+
+    @NotNull
+    static ClassTransformEvent start() {
+        ClassTransformEvent event = new ClassTransformEvent();
+        event.begin();
+        return event;
+    }
+
+    void finish(@NotNull String pluginId, @NotNull String className, @NotNull String transformers, @NotNull String outcome, long originalSize, long transformedSize) {
+
+        end();
+
+        if (shouldCommit()) {
+            this.pluginId = pluginId;
+            this.className = className;
+            this.transformers = transformers;
+            this.outcome = outcome;
+            this.originalSize = originalSize;
+            this.transformedSize = transformedSize;
+            commit();
+        }
+    }
+
+}
@@ -0,0 +1,27 @@
+package com.jayfella.plugin.manager;
+
+/**
+ * Whether the Java Flight Recorder event API is present in this JVM. It was added in Java 11 and backported to
+ * Java 8 update 262. The events of the plugin manager extend {@code jdk.jfr.Event}, so they are only ever created when
+ * it is present. When it is, an event that no recording has enabled is discarded without being committed, and the JIT
+ * removes its allocation.
+ */
+final class FlightRecorderSupport {
+
+    static final boolean AVAILABLE = isEventApiPresent();
+
+    private FlightRecorderSupport() {
+
+    }
+
+    private static boolean isEventApiPresent() {
+
+        try {
+            Class.forName("jdk.jfr.Event", false, FlightRecorderSupport.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+}
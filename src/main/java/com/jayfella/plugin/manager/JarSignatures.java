@@ -0,0 +1,428 @@
+package com.jayfella.plugin.manager;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.jayfella.plugin.manager.json.JsonObjectMapper;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSigner;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.Timestamp;
+import java.security.cert.CertPath;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * The verified code signers of every class in a signed jar.
+ *
+ * {@link JarFile} verifies the digest of an entry while it is read, so a class loader that reads signed classes
+ * through it verifies the jar one class at a time, behind each class load. Instead, the whole jar is verified once,
+ * up front, and the signers of each class are remembered so classes can be defined from the memory-mapped jar.
+ *
+ * Most classes of a jar share the same signers, so each distinct set of signers is stored once and classes refer to
+ * it by index. The SHA-256 of each signed class is remembered too, and a class loader checks the bytes it defines
+ * against it, so a jar that is changed after it was verified cannot pass off other classes with the same signers.
+ * The result can be stored on disk and is trusted again while the SHA-256 of the jar matches, or, when the caller
+ * already knows the jar is unchanged, while its size and modification time match.
+ */
+final class JarSignatures {
+
+    private static final int FORMAT_VERSION = 2;
+    private static final String CERT_PATH_ENCODING = "PkiPath";
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+
+    private final long size;
+    private final long lastModified;
+    private final String hash;
+
+    private final CodeSigner[][] signerSets;
+    private final Map<String, Integer> entries;
+
+    // class entry -> the SHA-256 of its content, for every signed class.
+    private final Map<String, byte[]> digests;
+
+    private JarSignatures(long size, long lastModified, @NotNull String hash, @NotNull CodeSigner[][] signerSets, @NotNull Map<String, Integer> entries, @NotNull Map<String, byte[]> digests) {
+        this.size = size;
+        this.lastModified = lastModified;
+        this.hash = hash;
+        this.signerSets = signerSets;
+        this.entries = entries;
+        this.digests = digests;
+    }
+
+    /**
+     * Returns whether the given jar contains signature files, without verifying them.
+     */
+    static boolean isSigned(@NotNull File file) throws IOException {
+
+        try (ZipFile zip = new ZipFile(file)) {
+
+            Enumeration<? extends ZipEntry> zipEntries = zip.entries();
+
+            while (zipEntries.hasMoreElements()) {
+
+                String name = zipEntries.nextElement().getName();
+
+                if (name.startsWith("META-INF/") && name.indexOf('/', "META-INF/".length()) == -1 && name.endsWith(".SF")) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Verifies every class in the given jar by reading it through a verifying {@link JarFile}.
+     *
+     * Other entries are skipped: they are not defined from the mapped jar, and resources are read through a
+     * {@code jar:} URL whose {@link JarFile} verifies them as they are read.
+     *
+     * @param file the jar.
+     * @param hash the SHA-256 of the jar.
+     * @throws SecurityException if a class does not match its signed digest.
+     */
+    @NotNull
+    static JarSignatures verify(@NotNull File file, @NotNull String hash) throws IOException {
+
+        long size = file.length();
+        long lastModified = file.lastModified();
+
+        Map<List<CodeSigner>, Integer> setIndices = new HashMap<>();
+        List<CodeSigner[]> signerSets = new ArrayList<>();
+        Map<String, Integer> entries = new HashMap<>();
+        Map<String, byte[]> digests = new HashMap<>();
+
+        MessageDigest digest = createDigest();
+        byte[] buffer = new byte[8192];
+
+        try (JarFile jar = new JarFile(file, true)) {
+
+            Enumeration<JarEntry> jarEntries = jar.entries();
+
+            while (jarEntries.hasMoreElements()) {
+
+                JarEntry entry = jarEntries.nextElement();
+
+                if (entry.isDirectory() || !entry.getName().endsWith(".class")) {
+                    continue;
+                }
+
+                // the signers of an entry are only known once it has been read to the end.
+                try (InputStream in = jar.getInputStream(entry)) {
+
+                    int read;
+
+                    while ((read = in.read(buffer)) != -1) {
+                        digest.update(buffer, 0, read);
+                    }
+                }
+
+                byte[] entryDigest = digest.digest();
+
+                CodeSigner[] signers = entry.getCodeSigners();
+
+                if (signers == null) {
+                    continue;
+                }
+
+                Integer index = setIndices.get(Arrays.asList(signers));
+
+                if (index == null) {
+                    index = signerSets.size();
+                    setIndices.put(Arrays.asList(signers), index);
+                    signerSets.add(signers);
+                }
+
+                entries.put(entry.getName(), index);
+                digests.put(entry.getName(), entryDigest);
+            }
+        }
+
+        return new JarSignatures(size, lastModified, hash, signerSets.toArray(new CodeSigner[0][]), entries, digests);
+    }
+
+    /**
+     * Returns whether the given jar still has the size and modification time it had when it was verified.
+     */
+    boolean matches(@NotNull File file) {
+        return file.length() == size && file.lastModified() == lastModified;
+    }
+
+    @NotNull
+    String getHash() {
+        return hash;
+    }
+
+    /**
+     * Gets the index of the signers of the given class entry.
+     *
+     * @return the index, or -1 if the entry is not signed or not in the jar.
+     */
+    int getSignerSet(@NotNull String path) {
+        Integer index = entries.get(path);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Checks the content of the given class entry against the digest it had when the jar was verified. The position of
+     * the buffer is not changed.
+     *
+     * @throws SecurityException if the entry is signed and its content has changed.
+     */
+    void checkDigest(@NotNull String path, @NotNull ByteBuffer content) {
+
+        byte[] expected = digests.get(path);
+
+        if (expected == null) {
+            return;
+        }
+
+        MessageDigest digest = createDigest();
+        digest.update(content.duplicate());
+
+        if (!MessageDigest.isEqual(expected, digest.digest())) {
+            throw new SecurityException(DIGEST_ALGORITHM + " digest error for " + path);
+        }
+    }
+
+    @NotNull
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform is required to support SHA-256.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @NotNull
+    CodeSigner[] getSigners(int signerSet) {
+        return signerSets[signerSet].clone();
+    }
+
+    int getSignerSetCount() {
+        return signerSets.length;
+    }
+
+    /**
+     * Reads verification results stored by {@link #save(File)}.
+     *
+     * @param file the jar the results belong to.
+     * @param hash the current SHA-256 of the jar, or null to only compare its size and modification time. The digest
+     *             of each class is still checked when it is defined.
+     * @return the results, or null if none are stored or they belong to a different version of the jar.
+     */
+    @Nullable
+    static JarSignatures load(@NotNull File cacheFile, @NotNull File file, @Nullable String hash) throws IOException {
+
+        if (!cacheFile.isFile()) {
+            return null;
+        }
+
+        StoredSignatures stored = JsonObjectMapper.getInstance().getObjectMapper().readValue(cacheFile, StoredSignatures.class);
+
+        if (stored.getVersion() != FORMAT_VERSION || stored.getHash() == null || stored.getSignerSets() == null || stored.getEntries() == null || stored.getDigests() == null) {
+            return null;
+        }
+
+        boolean unchanged = hash != null
+                ? hash.equals(stored.getHash())
+                : stored.getSize() == file.length() && stored.getLastModified() == file.lastModified();
+
+        if (!unchanged) {
+            return null;
+        }
+
+        CodeSigner[][] signerSets = new CodeSigner[stored.getSignerSets().size()][];
+
+        try {
+
+            CertificateFactory certificateFactory = CertificateFactory.getInstance("X.509");
+
+            for (int i = 0; i < signerSets.length; i++) {
+
+                List<StoredSigner> storedSigners = stored.getSignerSets().get(i);
+                CodeSigner[] signers = new CodeSigner[storedSigners.size()];
+
+                for (int j = 0; j < signers.length; j++) {
+
+                    StoredSigner storedSigner = storedSigners.get(j);
+                    Timestamp timestamp = null;
+
+                    if (storedSigner.getTimestampCertPath() != null) {
+                        timestamp = new Timestamp(new Date(storedSigner.getTimestamp()),
+                                decodeCertPath(certificateFactory, storedSigner.getTimestampCertPath()));
+                    }
+
+                    signers[j] = new CodeSigner(decodeCertPath(certificateFactory, storedSigner.getCertPath()), timestamp);
+                }
+
+                signerSets[i] = signers;
+            }
+
+        } catch (CertificateException | IllegalArgumentException e) {
+            throw new IOException("Unable to decode the signers stored in " + cacheFile, e);
+        }
+
+        Map<String, byte[]> digests = new HashMap<>();
+
+        try {
+            stored.getDigests().forEach((path, digest) -> digests.put(path, Base64.getDecoder().decode(digest)));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Unable to decode the digests stored in " + cacheFile, e);
+        }
+
+        // the size and modification time are taken from the jar itself, as it has already matched.
+        return new JarSignatures(file.length(), file.lastModified(), stored.getHash(), signerSets, new HashMap<>(stored.getEntries()), digests);
+    }
+
+    /**
+     * Stores these results so an unchanged jar does not need to be verified again.
+     */
+    void save(@NotNull File cacheFile) throws IOException {
+
+        StoredSignatures stored = new StoredSignatures();
+        stored.setVersion(FORMAT_VERSION);
+        stored.setHash(hash);
+        stored.setSize(size);
+        stored.setLastModified(lastModified);
+        stored.setEntries(new LinkedHashMap<>(entries));
+
+        Map<String, String> storedDigests = new LinkedHashMap<>();
+        digests.forEach((path, digest) -> storedDigests.put(path, Base64.getEncoder().encodeToString(digest)));
+        stored.setDigests(storedDigests);
+
+        List<List<StoredSigner>> storedSets = new ArrayList<>(signerSets.length);
+
+        try {
+
+            for (CodeSigner[] signers : signerSets) {
+
+                List<StoredSigner> storedSigners = new ArrayList<>(signers.length);
+
+                for (CodeSigner signer : signers) {
+
+                    StoredSigner storedSigner = new StoredSigner();
+                    storedSigner.setCertPath(encodeCertPath(signer.getSignerCertPath()));
+
+                    Timestamp timestamp = signer.getTimestamp();
+
+                    if (timestamp != null) {
+                        storedSigner.setTimestamp(timestamp.getTimestamp().getTime());
+                        storedSigner.setTimestampCertPath(encodeCertPath(timestamp.getSignerCertPath()));
+                    }
+
+                    storedSigners.add(storedSigner);
+                }
+
+                storedSets.add(storedSigners);
+            }
+
+        } catch (CertificateException e) {
+            throw new IOException("Unable to encode the signers of " + cacheFile, e);
+        }
+
+        stored.setSignerSets(storedSets);
+
+        File parent = cacheFile.getAbsoluteFile().getParentFile();
+
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Unable to create " + parent);
+        }
+
+        File temp = new File(parent, cacheFile.getName() + ".tmp");
+        JsonObjectMapper.getInstance().getObjectMapper().writeValue(temp, stored);
+
+        try {
+            Files.move(temp.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    @NotNull
+    private static String encodeCertPath(@NotNull CertPath certPath) throws CertificateException {
+        return Base64.getEncoder().encodeToString(certPath.getEncoded(CERT_PATH_ENCODING));
+    }
+
+    @NotNull
+    private static CertPath decodeCertPath(@NotNull CertificateFactory certificateFactory, @NotNull String encoded) throws CertificateException {
+        return certificateFactory.generateCertPath(new ByteArrayInputStream(Base64.getDecoder().decode(encoded)), CERT_PATH_ENCODING);
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    private static class StoredSignatures {
+
+        private int version;
+        private String hash;
+        private long size;
+        private long lastModified;
+        private List<List<StoredSigner>> signerSets;
+        private Map<String, Integer> entries;
+        private Map<String, String> digests;
+
+        public int getVersion() { return version; }
+        public void setVersion(int version) { this.version = version; }
+
+        public String getHash() { return hash; }
+        public void setHash(String hash) { this.hash = hash; }
+
+        public long getSize() { return size; }
+        public void setSize(long size) { this.size = size; }
+
+        public long getLastModified() { return lastModified; }
+        public void setLastModified(long lastModified) { this.lastModified = lastModified; }
+
+        public List<List<StoredSigner>> getSignerSets() { return signerSets; }
+        public void setSignerSets(List<List<StoredSigner>> signerSets) { this.signerSets = signerSets; }
+
+        public Map<String, Integer> getEntries() { return entries; }
+        public void setEntries(Map<String, Integer> entries) { this.entries = entries; }
+
+        public Map<String, String> getDigests() { return digests; }
+        public void setDigests(Map<String, String> digests) { this.digests = digests; }
+
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    private static class StoredSigner {
+
+        private String certPath;
+        private long timestamp;
+        private String timestampCertPath;
+
+        public String getCertPath() { return certPath; }
+        public void setCertPath(String certPath) { this.certPath = certPath; }
+
+        public long getTimestamp() { return timestamp; }
+        public void setTimestamp(long timestamp) { this.timestamp = timestamp; }
+
+        public String getTimestampCertPath() { return timestampCertPath; }
+        public void setTimestampCertPath(String timestampCertPath) { this.timestampCertPath = timestampCertPath; }
+
+    }
+
+}
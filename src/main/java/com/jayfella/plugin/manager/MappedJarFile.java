@@ -0,0 +1,489 @@
+package com.jayfella.plugin.manager;
+
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * A read-only view of the class entries of a jar backed by a memory-mapped file.
+ *
+ * The central directory is parsed once when the jar is opened. Stored entries are returned as slices of the mapping
+ * without copying, and deflated entries are inflated into buffers that are pooled per thread. Buffers returned by
+ * {@link #read(String)} must be handed back with {@link #release(ByteBuffer)} once their content has been consumed.
+ *
+ * Only plain zip archives are supported. Zip64 archives and encrypted entries are rejected with an IOException so
+ * the caller can fall back to {@link java.util.jar.JarFile}. Signatures are not verified.
+ *
+ * The jar stays mapped until it is closed and every buffer read from it has been released. While it is mapped it
+ * must not be modified in place: truncating or overwriting the file faults the mapping, which can crash the JVM rather
+ * than fail the read. A new version has to be written to another file and moved over the jar, which leaves the
+ * mapping with the old file. On Windows a mapped file cannot be replaced or deleted at all, so the plugin has to be
+ * unloaded first.
+ */
+final class MappedJarFile implements Closeable {
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_HEADER_SIGNATURE = 0x06054b50;
+
+    private static final int END_HEADER_SIZE = 22;
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+
+    private static final int METHOD_STORED = 0;
+    private static final int METHOD_DEFLATED = 8;
+
+    private static final ThreadLocal<Inflater> INFLATERS = ThreadLocal.withInitial(() -> new Inflater(true));
+    private static final ThreadLocal<byte[]> INPUT_BUFFERS = new ThreadLocal<>();
+    private static final ThreadLocal<byte[]> OUTPUT_BUFFERS = new ThreadLocal<>();
+
+    // set in the state once the jar has been closed. The rest is the number of reads that are using the mapping.
+    private static final int CLOSED = 1 << 30;
+
+    private static final Consumer<ByteBuffer> UNMAPPER = createUnmapper();
+
+    private final File file;
+    private final Object2ObjectOpenHashMap<String, Entry> entries;
+    private final boolean signed;
+
+    private final AtomicInteger state = new AtomicInteger();
+    private volatile MappedByteBuffer buffer;
+
+    MappedJarFile(@NotNull File file) throws IOException {
+
+        this.file = file;
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new ZipException("Jar is too large to be mapped: " + file);
+            }
+
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        Object2ObjectOpenHashMap<String, Entry> parsed = new Object2ObjectOpenHashMap<>();
+
+        try {
+            this.signed = readCentralDirectory(buffer, parsed);
+        } catch (IOException | RuntimeException e) {
+            // the caller falls back to JarFile, which must not find the file still mapped.
+            close();
+            throw e;
+        }
+
+        parsed.trim();
+        this.entries = parsed;
+    }
+
+    /**
+     * Parses the central directory into the given map, keeping only class entries.
+     *
+     * @return true if the jar contains signature files.
+     */
+    private static boolean readCentralDirectory(ByteBuffer buffer, Object2ObjectOpenHashMap<String, Entry> entries) throws ZipException {
+
+        int end = findEndHeader(buffer);
+
+        int entryCount = buffer.getShort(end + 10) & 0xFFFF;
+        long directorySize = buffer.getInt(end + 12) & 0xFFFFFFFFL;
+        long directoryOffset = buffer.getInt(end + 16) & 0xFFFFFFFFL;
+
+        if (entryCount == 0xFFFF || directorySize == 0xFFFFFFFFL || directoryOffset == 0xFFFFFFFFL) {
+            throw new ZipException("Zip64 archives are not supported.");
+        }
+
+        if (directoryOffset + directorySize > end) {
+            throw new ZipException("Invalid central directory.");
+        }
+
+        boolean signed = false;
+        int position = (int) directoryOffset;
+
+        for (int i = 0; i < entryCount; i++) {
+
+            if (buffer.getInt(position) != CENTRAL_HEADER_SIGNATURE) {
+                throw new ZipException("Invalid central directory header.");
+            }
+
+            int flags = buffer.getShort(position + 8) & 0xFFFF;
+            int method = buffer.getShort(position + 10) & 0xFFFF;
+            long compressedSize = buffer.getInt(position + 20) & 0xFFFFFFFFL;
+            long size = buffer.getInt(position + 24) & 0xFFFFFFFFL;
+            int nameLength = buffer.getShort(position + 28) & 0xFFFF;
+            int extraLength = buffer.getShort(position + 30) & 0xFFFF;
+            int commentLength = buffer.getShort(position + 32) & 0xFFFF;
+            long localHeaderOffset = buffer.getInt(position + 42) & 0xFFFFFFFFL;
+
+            String name = readName(buffer, position + CENTRAL_HEADER_SIZE, nameLength);
+
+            if (name.startsWith("META-INF/") && isSignatureFile(name)) {
+                signed = true;
+            }
+
+            if (name.endsWith(".class")) {
+
+                if ((flags & 1) != 0) {
+                    throw new ZipException("Encrypted entries are not supported: " + name);
+                }
+
+                if (compressedSize == 0xFFFFFFFFL || size == 0xFFFFFFFFL || localHeaderOffset == 0xFFFFFFFFL) {
+                    throw new ZipException("Zip64 entries are not supported: " + name);
+                }
+
+                entries.put(name, new Entry(method, (int) compressedSize, (int) size, (int) localHeaderOffset));
+            }
+
+            position += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+        }
+
+        return signed;
+    }
+
+    private static int findEndHeader(ByteBuffer buffer) throws ZipException {
+
+        int limit = Math.max(0, buffer.limit() - END_HEADER_SIZE - MAX_COMMENT_SIZE);
+
+        for (int position = buffer.limit() - END_HEADER_SIZE; position >= limit; position--) {
+            if (buffer.getInt(position) == END_HEADER_SIGNATURE) {
+                return position;
+            }
+        }
+
+        throw new ZipException("End of central directory not found.");
+    }
+
+    private static String readName(ByteBuffer buffer, int position, int length) {
+        byte[] name = new byte[length];
+        ByteBuffer view = buffer.duplicate();
+        view.position(position);
+        view.get(name);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    private static boolean isSignatureFile(String name) {
+        return name.indexOf('/', "META-INF/".length()) == -1
+                && (name.endsWith(".SF") || name.endsWith(".RSA") || name.endsWith(".DSA") || name.endsWith(".EC"));
+    }
+
+    @NotNull
+    File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns whether the jar contains signature files. The signatures of a signed jar are not verified by this
+     * reader, so callers that need code signers must read its entries through {@link java.util.jar.JarFile}.
+     */
+    boolean isSigned() {
+        return signed;
+    }
+
+    /**
+     * Gets the path of every class entry in the jar.
+     */
+    @NotNull
+    Collection<String> getClassPaths() {
+        return Collections.unmodifiableCollection(entries.keySet());
+    }
+
+    boolean contains(@NotNull String path) {
+        return entries.containsKey(path);
+    }
+
+    /**
+     * Reads the content of the given class entry. The returned buffer is positioned at the start of the content and
+     * limited to its end. It must be passed to {@link #release(ByteBuffer)} when it is no longer needed.
+     *
+     * @return the content of the entry, or null if the jar does not contain it.
+     */
+    @Nullable
+    ByteBuffer read(@NotNull String path) throws IOException {
+
+        Entry entry = entries.get(path);
+
+        if (entry == null) {
+            return null;
+        }
+
+        acquireMapping();
+
+        // a stored entry is a slice of the mapping, which stays in use until the slice is released.
+        boolean sliced = false;
+
+        try {
+
+            MappedByteBuffer mapped = buffer;
+
+            int dataOffset = entry.getDataOffset(mapped);
+
+            ByteBuffer data = mapped.duplicate();
+            data.position(dataOffset);
+            data.limit(dataOffset + entry.compressedSize);
+
+            if (entry.method == METHOD_STORED) {
+                sliced = true;
+                return data.slice();
+            } else if (entry.method != METHOD_DEFLATED) {
+                throw new ZipException("Unsupported compression method " + entry.method + " for " + path);
+            }
+
+            return inflate(path, entry, data);
+
+        } finally {
+            if (!sliced) {
+                releaseMapping();
+            }
+        }
+    }
+
+    private static ByteBuffer inflate(String path, Entry entry, ByteBuffer data) throws ZipException {
+
+        // Inflater only accepts arrays on Java 8, so the compressed data is copied into a pooled input buffer.
+        byte[] input = acquire(INPUT_BUFFERS, entry.compressedSize);
+        byte[] output = acquire(OUTPUT_BUFFERS, entry.size);
+
+        try {
+
+            data.get(input, 0, entry.compressedSize);
+            input[entry.compressedSize] = 0;
+
+            Inflater inflater = INFLATERS.get();
+            inflater.reset();
+            // the extra byte is required by nowrap mode.
+            inflater.setInput(input, 0, entry.compressedSize + 1);
+
+            int length = 0;
+
+            while (length < entry.size) {
+
+                int inflated = inflater.inflate(output, length, entry.size - length);
+
+                if (inflated == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+
+                length += inflated;
+            }
+
+            if (length != entry.size) {
+                throw new ZipException("Invalid entry size for " + path + " (expected " + entry.size + " but got " + length + " bytes)");
+            }
+
+        } catch (DataFormatException e) {
+            release(OUTPUT_BUFFERS, output);
+            throw new ZipException("Invalid compressed data for " + path + ": " + e.getMessage());
+        } catch (IOException | RuntimeException e) {
+            release(OUTPUT_BUFFERS, output);
+            throw e;
+        } finally {
+            release(INPUT_BUFFERS, input);
+        }
+
+        return ByteBuffer.wrap(output, 0, entry.size).slice();
+    }
+
+    /**
+     * Returns a buffer obtained from {@link #read(String)} to the pool of the current thread, or to the mapping if it
+     * is a slice of it.
+     */
+    void release(@Nullable ByteBuffer content) {
+
+        if (content == null) {
+            return;
+        }
+
+        if (content.hasArray()) {
+            release(OUTPUT_BUFFERS, content.array());
+        } else {
+            releaseMapping();
+        }
+    }
+
+    private void acquireMapping() throws IOException {
+
+        while (true) {
+
+            int current = state.get();
+
+            if ((current & CLOSED) != 0) {
+                throw new IOException("Jar has been closed: " + file);
+            }
+
+            if (state.compareAndSet(current, current + 1)) {
+                return;
+            }
+        }
+    }
+
+    private void releaseMapping() {
+        // the last read to finish after the jar has been closed unmaps it.
+        if (state.decrementAndGet() == CLOSED) {
+            unmap();
+        }
+    }
+
+    /**
+     * Takes the pooled buffer of the current thread, or allocates a new one if it is too small or already taken by a
+     * read further up the stack, which happens when defining a class loads another class.
+     */
+    private static byte[] acquire(ThreadLocal<byte[]> pool, int size) {
+
+        // one spare byte so the input buffer can hold the padding byte nowrap mode requires.
+        byte[] buffer = pool.get();
+
+        if (buffer == null || buffer.length < size + 1) {
+            return new byte[Math.max(size + 1, 8192)];
+        }
+
+        pool.set(null);
+        return buffer;
+    }
+
+    private static void release(ThreadLocal<byte[]> pool, byte[] buffer) {
+
+        byte[] pooled = pool.get();
+
+        if (pooled == null || pooled.length < buffer.length) {
+            pool.set(buffer);
+        }
+    }
+
+    /**
+     * Closes the jar. It is unmapped as soon as every buffer read from it has been released, so that the file is no
+     * longer held open, which on Windows also means locked, until the buffer happens to be garbage collected.
+     */
+    @Override
+    public void close() {
+
+        int previous = state.getAndUpdate(current -> current | CLOSED);
+
+        if (previous == 0) {
+            unmap();
+        }
+    }
+
+    private void unmap() {
+
+        MappedByteBuffer mapped = buffer;
+        buffer = null;
+
+        if (mapped != null && UNMAPPER != null) {
+            UNMAPPER.accept(mapped);
+        }
+    }
+
+    /**
+     * Creates a function that unmaps a mapped buffer eagerly, which Java offers no supported way to do. The mapping
+     * must never be accessed again afterwards. If neither of the internal APIs is available the mapping is released
+     * once the buffer is garbage collected, as it would be without it.
+     */
+    @Nullable
+    private static Consumer<ByteBuffer> createUnmapper() {
+
+        try {
+
+            // Java 9 and later.
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            Object unsafe = theUnsafe.get(null);
+
+            return buffer -> invoke(invokeCleaner, unsafe, buffer);
+
+        } catch (NoSuchMethodException e) {
+
+            try {
+
+                // Java 8.
+                Method cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+                Method clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+
+                return buffer -> invoke(clean, invoke(cleaner, buffer));
+
+            } catch (ReflectiveOperationException | RuntimeException ex) {
+                return null;
+            }
+
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static Object invoke(Method method, Object target, Object... args) {
+        try {
+            return method.invoke(target, args);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to unmap a jar", e);
+        }
+    }
+
+    private static final class Entry {
+
+        private final int method;
+        private final int compressedSize;
+        private final int size;
+        private final int localHeaderOffset;
+
+        // resolved from the local header on first read.
+        private volatile int dataOffset = -1;
+
+        Entry(int method, int compressedSize, int size, int localHeaderOffset) {
+            this.method = method;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localHeaderOffset = localHeaderOffset;
+        }
+
+        int getDataOffset(ByteBuffer buffer) throws ZipException {
+
+            int offset = dataOffset;
+
+            if (offset == -1) {
+
+                if (buffer.getInt(localHeaderOffset) != LOCAL_HEADER_SIGNATURE) {
+                    throw new ZipException("Invalid local header.");
+                }
+
+                // the local header has its own name and extra field lengths, which may differ from the central ones.
+                int nameLength = buffer.getShort(localHeaderOffset + 26) & 0xFFFF;
+                int extraLength = buffer.getShort(localHeaderOffset + 28) & 0xFFFF;
+
+                offset = localHeaderOffset + LOCAL_HEADER_SIZE + nameLength + extraLength;
+
+                if (offset + compressedSize > buffer.limit()) {
+                    throw new ZipException("Entry extends past the end of the jar.");
+                }
+
+                dataOffset = offset;
+            }
+
+            return offset;
+        }
+
+    }
+
+}
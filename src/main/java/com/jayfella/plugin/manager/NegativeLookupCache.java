@@ -0,0 +1,172 @@
+package com.jayfella.plugin.manager;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of class names that no plugin provides.
+ *
+ * Names are recorded after a lookup has probed every plugin that could contain them and failed. A later lookup of the
+ * same name is answered without touching any jar. Membership is tested against a Bloom filter first, which rejects
+ * most names that were never recorded, and confirmed against an exact set so a false positive can never hide a class.
+ *
+ * When the cache is full, or when a plugin is added and may now provide a recorded name, the whole cache is replaced by
+ * a new empty generation. Lookups that started before the replacement cannot record into the new generation.
+ */
+public class NegativeLookupCache {
+
+    public static final int DEFAULT_CAPACITY = 16384;
+
+    private final int capacity;
+    private volatile Generation generation;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder probesSaved = new LongAdder();
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public NegativeLookupCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public NegativeLookupCache(int capacity) {
+
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1.");
+        }
+
+        this.capacity = capacity;
+        this.generation = new Generation(0, capacity);
+    }
+
+    /**
+     * Returns a stamp identifying the current generation. Pass it to {@link #recordAbsent(String, int, long)} so a
+     * miss observed before an invalidation is not recorded after it.
+     */
+    long getStamp() {
+        return generation.stamp;
+    }
+
+    /**
+     * Returns whether the given class name is known to be absent from every plugin.
+     */
+    boolean isKnownAbsent(@NotNull String name) {
+
+        Generation current = generation;
+
+        if (!current.filter.mightContain(name)) {
+            return false;
+        }
+
+        Integer probes = current.names.get(name);
+
+        if (probes == null) {
+            return false;
+        }
+
+        hits.increment();
+        probesSaved.add(probes);
+        return true;
+    }
+
+    /**
+     * Records that the given class name is absent from every plugin.
+     *
+     * @param name   the class name.
+     * @param probes the number of jar probes it took to find that out.
+     * @param stamp  the stamp returned by {@link #getStamp()} before the lookup started.
+     */
+    void recordAbsent(@NotNull String name, int probes, long stamp) {
+
+        Generation current = generation;
+
+        if (current.stamp != stamp) {
+            return;
+        }
+
+        if (current.names.size() >= capacity) {
+            replaceGeneration(current);
+            return;
+        }
+
+        current.filter.put(name);
+
+        if (current.names.putIfAbsent(name, probes) == null) {
+            recorded.increment();
+        }
+    }
+
+    /**
+     * Discards every recorded name. Must be called whenever a plugin is added, because it may provide a class that
+     * was previously absent. Removing a plugin never makes an absent class present, so it needs no invalidation.
+     */
+    void invalidate() {
+        invalidations.increment();
+        replaceGeneration(generation);
+    }
+
+    private synchronized void replaceGeneration(Generation expected) {
+        if (generation == expected) {
+            generation = new Generation(expected.stamp + 1, capacity);
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Gets the number of names currently recorded as absent.
+     */
+    public int size() {
+        return generation.names.size();
+    }
+
+    /**
+     * Gets the number of lookups that were answered from this cache.
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Gets the number of jar probes the lookups answered from this cache would otherwise have made.
+     */
+    public long getProbesSaved() {
+        return probesSaved.sum();
+    }
+
+    /**
+     * Gets the number of names that have been recorded as absent.
+     */
+    public long getRecordedCount() {
+        return recorded.sum();
+    }
+
+    /**
+     * Gets the number of times the cache was invalidated because a plugin was added.
+     */
+    public long getInvalidationCount() {
+        return invalidations.sum();
+    }
+
+    private static final class Generation {
+
+        private final long stamp;
+        private final BloomFilter<CharSequence> filter;
+        private final Map<String, Integer> names = new ConcurrentHashMap<>();
+
+        Generation(long stamp, int capacity) {
+            this.stamp = stamp;
+            this.filter = BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8), capacity, 0.01);
+        }
+
+    }
+
+}
@@ -0,0 +1,62 @@
+package com.jayfella.plugin.manager;
+
+/**
+ * Live statistics of the class loader of one plugin, registered by {@link SimplePluginManager#registerMBeans(String)}
+ * as {@code com.jayfella.plugin.manager:type=PluginClassLoader,manager=<name>,plugin=<id>} while the plugin is loaded.
+ */
+public interface PluginClassLoaderMXBean {
+
+    enum State {
+
+        /**
+         * The main class of the plugin is being loaded.
+         */
+        LOADING,
+
+        /**
+         * The plugin has been constructed but is not enabled, either because it has not been enabled yet or because it
+         * has been disabled.
+         */
+        LOADED,
+
+        ENABLED,
+
+        /**
+         * The plugin has been unloaded and its class loader closed.
+         */
+        UNLOADED
+
+    }
+
+    String getPluginId();
+
+    State getState();
+
+    /**
+     * Gets the number of classes this class loader has defined.
+     */
+    long getDefinedClassCount();
+
+    /**
+     * Gets the number of class file bytes read from the jar of the plugin, before any transformer ran.
+     */
+    long getBytesRead();
+
+    /**
+     * Gets the number of classes this plugin looked up in the classes of all plugins and found, including its own.
+     */
+    long getLookupHitCount();
+
+    /**
+     * Gets the number of classes this plugin looked up in the classes of all plugins and did not find, including the
+     * lookups answered by the negative lookup cache.
+     */
+    long getLookupMissCount();
+
+    /**
+     * Gets the total time spent finding classes that this class loader had not cached yet, in nanoseconds. A lookup
+     * that loads other classes while it defines a class includes the time spent on them.
+     */
+    long getFindClassNanos();
+
+}
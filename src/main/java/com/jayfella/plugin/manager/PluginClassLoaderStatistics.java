@@ -0,0 +1,100 @@
+package com.jayfella.plugin.manager;
+
+import com.jayfella.plugin.manager.plugin.Plugin;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The counters of one {@link SimplePluginClassLoader}. They are updated by every thread that loads classes through it,
+ * so each one is a {@link LongAdder} and updating them never contends.
+ */
+final class PluginClassLoaderStatistics implements PluginClassLoaderMXBean {
+
+    private final SimplePluginClassLoader classLoader;
+    private final String pluginId;
+
+    private final LongAdder definedClasses = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder lookupHits = new LongAdder();
+    private final LongAdder lookupMisses = new LongAdder();
+    private final LongAdder findClassNanos = new LongAdder();
+
+    private volatile boolean unloaded;
+
+    PluginClassLoaderStatistics(@NotNull SimplePluginClassLoader classLoader, @NotNull String pluginId) {
+        this.classLoader = classLoader;
+        this.pluginId = pluginId;
+    }
+
+    @Override
+    public String getPluginId() {
+        return pluginId;
+    }
+
+    @Override
+    public State getState() {
+
+        if (unloaded) {
+            return State.UNLOADED;
+        }
+
+        Plugin plugin = classLoader.getPlugin();
+
+        if (plugin == null) {
+            return State.LOADING;
+        }
+
+        return plugin.isEnabled() ? State.ENABLED : State.LOADED;
+    }
+
+    @Override
+    public long getDefinedClassCount() {
+        return definedClasses.sum();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override
+    public long getLookupHitCount() {
+        return lookupHits.sum();
+    }
+
+    @Override
+    public long getLookupMissCount() {
+        return lookupMisses.sum();
+    }
+
+    @Override
+    public long getFindClassNanos() {
+        return findClassNanos.sum();
+    }
+
+    void recordClassDefined() {
+        definedClasses.increment();
+    }
+
+    void recordBytesRead(long bytes) {
+        bytesRead.add(bytes);
+    }
+
+    void recordLookup(boolean found) {
+        if (found) {
+            lookupHits.increment();
+        } else {
+            lookupMisses.increment();
+        }
+    }
+
+    void recordFindClassNanos(long nanos) {
+        findClassNanos.add(nanos);
+    }
+
+    void markUnloaded() {
+        this.unloaded = true;
+    }
+
+}
@@ -0,0 +1,52 @@
+package com.jayfella.plugin.manager;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The read of the plugin.json of a jar. Only create it if {@link FlightRecorderSupport#AVAILABLE}.
+ */
+@Name("com.jayfella.plugin.manager.PluginDescription")
+@Label("Plugin Description Parse")
+@Category("Plugin Manager")
+@Description("The plugin.json of a jar, parsed or read from the description cache")
+@StackTrace(false)
+final class PluginDescriptionEvent extends Event {
+
+    @Label("File")
+    String file;
+
+    @Label("Plugin")
+    @Description("The id of the plugin, or null if the description could not be read")
+    String pluginId;
+
+    @Label("Cached")
+    @Description("Whether the description was read from the description cache")
+    boolean cached;
+
+    @NotNull
+    static PluginDescriptionEvent start() {
+        PluginDescriptionEvent event = new PluginDescriptionEvent();
+        event.begin();
+        return event;
+    }
+
+    void finish(@NotNull String file, @Nullable String pluginId, boolean cached) {
+
+        end();
+
+        if (shouldCommit()) {
+            this.file = file;
+            this.pluginId = pluginId;
+            this.cached = cached;
+            commit();
+        }
+    }
+
+}
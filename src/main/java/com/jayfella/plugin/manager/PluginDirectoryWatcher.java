@@ -0,0 +1,195 @@
+package com.jayfella.plugin.manager;
+
+import org.apache.commons.io.FilenameUtils;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Watches a plugins directory and hands jars that appear in it to the plugin manager.
+ *
+ * Copying a jar usually produces a create event followed by several modify events, so a jar is only handed over once
+ * no event has been seen for it for the debounce period and its size has stopped changing. Jars that become ready
+ * together are handed over as one batch so plugins that depend on each other can be added in a single pass.
+ */
+final class PluginDirectoryWatcher implements Closeable {
+
+    private static final Logger log = Logger.getLogger(PluginDirectoryWatcher.class.getName());
+
+    private final SimplePluginManager pluginManager;
+    private final File directory;
+    private final long debounceNanos;
+
+    private final WatchService watchService;
+    private final Thread thread;
+
+    // jar -> the last time an event was seen for it and its size at that time.
+    private final Map<File, long[]> pending = new LinkedHashMap<>();
+
+    private volatile boolean running = true;
+
+    PluginDirectoryWatcher(@NotNull SimplePluginManager pluginManager, @NotNull File directory, long debounce, @NotNull TimeUnit unit) throws IOException {
+
+        this.pluginManager = pluginManager;
+        this.directory = directory;
+        this.debounceNanos = unit.toNanos(debounce);
+
+        this.watchService = FileSystems.getDefault().newWatchService();
+
+        directory.toPath().register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+
+        this.thread = new Thread(this::run, "Plugin Directory Watcher");
+        this.thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    @NotNull
+    File getDirectory() {
+        return directory;
+    }
+
+    private void run() {
+
+        while (running) {
+
+            try {
+
+                WatchKey key = pending.isEmpty()
+                        ? watchService.take()
+                        : watchService.poll(Math.max(1, TimeUnit.NANOSECONDS.toMillis(debounceNanos) / 4), TimeUnit.MILLISECONDS);
+
+                if (key != null) {
+                    readEvents(key);
+                }
+
+                List<File> ready = takeReady();
+
+                if (!ready.isEmpty()) {
+                    pluginManager.addPlugins(ready);
+                }
+
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                break;
+            } catch (Throwable e) {
+                log.log(Level.WARNING, "Unable to add plugins from " + directory.getPath(), e);
+            }
+        }
+
+    }
+
+    private void readEvents(@NotNull WatchKey key) {
+
+        long now = System.nanoTime();
+
+        for (WatchEvent<?> event : key.pollEvents()) {
+
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+
+                // events were lost, so look at every jar. Jars the manager already knows are skipped cheaply.
+                File[] files = directory.listFiles();
+
+                if (files != null) {
+                    for (File file : files) {
+                        markPending(file, now);
+                    }
+                }
+
+                continue;
+            }
+
+            Path path = (Path) event.context();
+            markPending(new File(directory, path.toString()), now);
+        }
+
+        if (!key.reset()) {
+            log.warning("Stopped watching " + directory.getPath() + " because it is no longer accessible.");
+            running = false;
+        }
+    }
+
+    private void markPending(@NotNull File file, long now) {
+        if (FilenameUtils.isExtension(file.getName(), "jar")) {
+            pending.put(file, new long[] { now, file.length() });
+        }
+    }
+
+    /**
+     * Removes and returns the jars that have been quiet for the debounce period.
+     */
+    @NotNull
+    private List<File> takeReady() {
+
+        long now = System.nanoTime();
+        List<File> ready = new ArrayList<>();
+
+        Iterator<Map.Entry<File, long[]>> iterator = pending.entrySet().iterator();
+
+        while (iterator.hasNext()) {
+
+            Map.Entry<File, long[]> entry = iterator.next();
+            File file = entry.getKey();
+            long[] state = entry.getValue();
+
+            if (now - state[0] < debounceNanos) {
+                continue;
+            }
+
+            if (!file.isFile()) {
+                iterator.remove();
+                continue;
+            }
+
+            long size = file.length();
+
+            if (size != state[1]) {
+                // still being written without the file system telling us.
+                state[0] = now;
+                state[1] = size;
+                continue;
+            }
+
+            iterator.remove();
+            ready.add(file);
+        }
+
+        return ready;
+    }
+
+    @Override
+    public void close() throws IOException {
+
+        running = false;
+        watchService.close();
+
+        if (thread != Thread.currentThread()) {
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+}
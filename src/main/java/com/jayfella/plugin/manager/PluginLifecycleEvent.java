@@ -0,0 +1,49 @@
+package com.jayfella.plugin.manager;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A call of onLoad, onEnable, onDisable or onUnload of a plugin. Only create it if
+ * {@link FlightRecorderSupport#AVAILABLE}.
+ */
+@Name("com.jayfella.plugin.manager.PluginLifecycle")
+@Label("Plugin Lifecycle Callback")
+@Category("Plugin Manager")
+@Description("A call of onLoad, onEnable, onDisable or onUnload of a plugin")
+final class PluginLifecycleEvent extends Event {
+
+    @Label("Plugin")
+    String pluginId;
+
+    @Label("Callback")
+    String callback;
+
+    @Label("Succeeded")
+    @Description("Whether the callback returned without throwing")
+    boolean succeeded;
+
+    @NotNull
+    static PluginLifecycleEvent start() {
+        PluginLifecycleEvent event = new PluginLifecycleEvent();
+        event.begin();
+        return event;
+    }
+
+    void finish(@NotNull String pluginId, @NotNull String callback, boolean succeeded) {
+
+        end();
+
+        if (shouldCommit()) {
+            this.pluginId = pluginId;
+            this.callback = callback;
+            this.succeeded = succeeded;
+            commit();
+        }
+    }
+
+}
@@ -19,4 +19,10 @@ public interface PluginLoader {
     @Nullable
     ClassLoader getClassLoader(@NotNull Plugin plugin);
 
+    /**
+     * Releases everything this loader holds for the given plugin, including its class loader.
+     * The plugin must already be disabled and unloaded.
+     */
+    void unloadPlugin(@NotNull Plugin plugin);
+
 }
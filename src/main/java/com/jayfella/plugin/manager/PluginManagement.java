@@ -0,0 +1,82 @@
+package com.jayfella.plugin.manager;
+
+import org.jetbrains.annotations.NotNull;
+
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Registers the MXBean of a plugin manager and of the class loaders of its plugins with the platform MBean server.
+ * A class loader is registered while its plugin is loaded, so the MBean server never keeps an unloaded plugin alive.
+ */
+final class PluginManagement {
+
+    static final String DOMAIN = "com.jayfella.plugin.manager";
+
+    private static final Logger log = Logger.getLogger(PluginManagement.class.getName());
+
+    private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+    private final String name;
+    private final ObjectName managerName;
+
+    PluginManagement(@NotNull String name, @NotNull PluginManagerMXBean manager) throws JMException {
+        this.name = name;
+        this.managerName = new ObjectName(DOMAIN + ":type=PluginManager,name=" + name);
+
+        server.registerMBean(manager, managerName);
+    }
+
+    void register(@NotNull SimplePluginClassLoader classLoader) {
+
+        String pluginId = classLoader.getStatistics().getPluginId();
+
+        try {
+            server.registerMBean(classLoader.getStatistics(), getObjectName(pluginId));
+        } catch (JMException e) {
+            log.log(Level.WARNING, "Unable to register the MBean of plugin " + pluginId, e);
+        }
+    }
+
+    void unregister(@NotNull SimplePluginClassLoader classLoader) {
+
+        String pluginId = classLoader.getStatistics().getPluginId();
+
+        try {
+            server.unregisterMBean(getObjectName(pluginId));
+        } catch (InstanceNotFoundException e) {
+            // the plugin was loaded before the MBeans were registered, or its registration failed.
+        } catch (JMException e) {
+            log.log(Level.WARNING, "Unable to unregister the MBean of plugin " + pluginId, e);
+        }
+    }
+
+    /**
+     * Unregisters the MBean of the plugin manager and of every class loader that is still registered.
+     */
+    void close() {
+
+        try {
+
+            for (ObjectName objectName : server.queryNames(new ObjectName(DOMAIN + ":type=PluginClassLoader,manager=" + name + ",*"), null)) {
+                server.unregisterMBean(objectName);
+            }
+
+            server.unregisterMBean(managerName);
+
+        } catch (JMException e) {
+            log.log(Level.WARNING, "Unable to unregister the MBeans of plugin manager " + name, e);
+        }
+    }
+
+    @NotNull
+    private ObjectName getObjectName(@NotNull String pluginId) throws JMException {
+        return new ObjectName(DOMAIN + ":type=PluginClassLoader,manager=" + name + ",plugin=" + pluginId);
+    }
+
+}
@@ -20,7 +20,12 @@ public interface PluginManager {
     @NotNull Plugin[] loadPlugins(File directory);
     void enablePlugins();
 
+    @NotNull Plugin[] disablePlugin(@NotNull Plugin plugin);
+    @NotNull Plugin[] unloadPlugin(@NotNull Plugin plugin);
+    @Nullable PluginReloadReport reloadPlugin(String id);
+
     @Nullable Plugin getPlugin(String name);
+    @Nullable Plugin activatePlugin(String id);
     @NotNull Plugin[] getPlugins();
 
     long getLoadedPluginCount();
@@ -30,5 +35,8 @@ public interface PluginManager {
 
     ClassSerializer getClassSerializer();
 
+    @Nullable PluginTimings getPluginTimings(String id);
+    @NotNull PluginTimings[] getPluginTimings();
+
     boolean isTransitiveDependency(@NotNull PluginDescription plugin, @NotNull PluginDescription depend);
 }
@@ -0,0 +1,47 @@
+package com.jayfella.plugin.manager;
+
+/**
+ * Live statistics of a plugin manager, registered by {@link SimplePluginManager#registerMBeans(String)} as
+ * {@code com.jayfella.plugin.manager:type=PluginManager,name=<name>}. No attribute locks the plugin manager, so they can
+ * be read while plugins are being loaded.
+ */
+public interface PluginManagerMXBean {
+
+    long getLoadedPluginCount();
+    long getEnabledPluginCount();
+    long getDisabledPluginCount();
+    long getPluginsNotLoadedCount();
+
+    /**
+     * Gets the number of class loaders of unloaded plugins that have not been garbage collected yet.
+     */
+    int getUncollectedClassLoaderCount();
+
+    /**
+     * Gets the ids of unloaded plugins whose class loader is still reachable after the leak grace period.
+     */
+    String[] getSuspectedClassLoaderLeaks();
+
+    /**
+     * Gets the number of lookups in the classes of all plugins that found a class.
+     */
+    long getLookupHitCount();
+
+    /**
+     * Gets the number of lookups in the classes of all plugins that found nothing.
+     */
+    long getLookupMissCount();
+
+    /**
+     * Gets the number of lookups that were answered by the negative lookup cache without touching a jar.
+     */
+    long getNegativeLookupCacheHitCount();
+
+    long getTransformedClassCount();
+
+    /**
+     * Gets the total time spent transforming classes, in nanoseconds.
+     */
+    long getTransformNanos();
+
+}
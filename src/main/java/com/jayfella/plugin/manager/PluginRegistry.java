@@ -0,0 +1,286 @@
+package com.jayfella.plugin.manager;
+
+import com.jayfella.plugin.manager.plugin.Plugin;
+import com.jayfella.plugin.manager.plugin.description.PluginDescription;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The registered plugins of a plugin manager, in load order.
+ *
+ * Plugins are indexed by id, and the dependencies of every plugin are resolved when it is registered and kept up to
+ * date as its dependencies come and go, so dependency lookups never search the plugin list. The number of enabled
+ * plugins is maintained as plugins are enabled, disabled and removed. A {@link ReachabilityIndex} answers whether one
+ * plugin transitively depends on another.
+ *
+ * Reads never lock: every change builds a new immutable snapshot and publishes it through a volatile field, so a
+ * reader always sees a complete registry. Changes are serialized.
+ */
+final class PluginRegistry {
+
+    private volatile Snapshot snapshot = new Snapshot(new Plugin[0], new HashMap<>(), new IdentityHashMap<>());
+
+    // id -> the registered plugins that depend on a plugin with that id, whether or not it is registered.
+    // Only used while writing, so it is guarded by the registry lock instead of being part of the snapshot.
+    private final Map<String, List<Plugin>> dependents = new HashMap<>();
+
+    private final AtomicInteger enabledCount = new AtomicInteger();
+
+    private final ReachabilityIndex reachability = new ReachabilityIndex();
+
+    void add(@NotNull Plugin plugin) {
+        addAll(Collections.singletonList(plugin));
+    }
+
+    synchronized void addAll(@NotNull Collection<Plugin> added) {
+
+        Snapshot current = snapshot;
+
+        List<Plugin> plugins = new ArrayList<>(Arrays.asList(current.plugins));
+        Map<String, Plugin> pluginsById = new HashMap<>(current.pluginsById);
+        Map<Plugin, Plugin[]> dependencies = new IdentityHashMap<>(current.dependencies);
+
+        List<PluginDescription> indexed = new ArrayList<>();
+
+        for (Plugin plugin : added) {
+
+            if (dependencies.containsKey(plugin)) {
+                continue;
+            }
+
+            plugins.add(plugin);
+
+            String id = plugin.getDescription().getId();
+
+            // the first plugin registered with an id wins, like the linear search used to.
+            if (pluginsById.putIfAbsent(id, plugin) == null) {
+                resolve(dependencies, id, plugin);
+                indexed.add(plugin.getDescription());
+            }
+
+            List<String> dependencyIds = plugin.getDescription().getDependencies();
+            Plugin[] resolved = new Plugin[dependencyIds.size()];
+
+            for (int i = 0; i < resolved.length; i++) {
+                String dependencyId = dependencyIds.get(i);
+                resolved[i] = pluginsById.get(dependencyId);
+                dependents.computeIfAbsent(dependencyId, key -> new ArrayList<>(2)).add(plugin);
+            }
+
+            dependencies.put(plugin, resolved);
+
+            if (plugin.isEnabled()) {
+                enabledCount.incrementAndGet();
+            }
+        }
+
+        reachability.add(indexed);
+        snapshot = new Snapshot(plugins.toArray(new Plugin[0]), pluginsById, dependencies);
+    }
+
+    synchronized boolean remove(@NotNull Plugin plugin) {
+
+        Snapshot current = snapshot;
+
+        if (!current.dependencies.containsKey(plugin)) {
+            return false;
+        }
+
+        List<Plugin> plugins = new ArrayList<>(current.plugins.length);
+
+        for (Plugin candidate : current.plugins) {
+            if (candidate != plugin) {
+                plugins.add(candidate);
+            }
+        }
+
+        Map<String, Plugin> pluginsById = new HashMap<>(current.pluginsById);
+        Map<Plugin, Plugin[]> dependencies = new IdentityHashMap<>(current.dependencies);
+
+        dependencies.remove(plugin);
+
+        for (String dependencyId : plugin.getDescription().getDependencies()) {
+
+            List<Plugin> waiting = dependents.get(dependencyId);
+
+            if (waiting != null) {
+                waiting.removeIf(dependent -> dependent == plugin);
+
+                if (waiting.isEmpty()) {
+                    dependents.remove(dependencyId);
+                }
+            }
+        }
+
+        String id = plugin.getDescription().getId();
+
+        if (pluginsById.get(id) == plugin) {
+
+            pluginsById.remove(id);
+
+            // fall back to the next plugin with the same id, if there is one.
+            Plugin replacement = null;
+
+            for (Plugin candidate : plugins) {
+                if (candidate.getDescription().getId().equals(id)) {
+                    replacement = candidate;
+                    pluginsById.put(id, candidate);
+                    break;
+                }
+            }
+
+            resolve(dependencies, id, replacement);
+
+            reachability.remove(id);
+
+            if (replacement != null) {
+                reachability.add(Collections.singletonList(replacement.getDescription()));
+            }
+        }
+
+        if (plugin.isEnabled()) {
+            enabledCount.decrementAndGet();
+        }
+
+        snapshot = new Snapshot(plugins.toArray(new Plugin[0]), pluginsById, dependencies);
+        return true;
+    }
+
+    /**
+     * Points the resolved dependencies of every plugin that depends on the given id at the given plugin. The arrays
+     * of the current snapshot may be in use, so changed arrays are copied.
+     */
+    private void resolve(@NotNull Map<Plugin, Plugin[]> dependencies, @NotNull String id, @Nullable Plugin plugin) {
+
+        List<Plugin> waiting = dependents.get(id);
+
+        if (waiting == null) {
+            return;
+        }
+
+        for (Plugin dependent : waiting) {
+
+            List<String> dependencyIds = dependent.getDescription().getDependencies();
+            Plugin[] resolved = dependencies.get(dependent).clone();
+
+            for (int i = 0; i < resolved.length; i++) {
+                if (dependencyIds.get(i).equals(id)) {
+                    resolved[i] = plugin;
+                }
+            }
+
+            dependencies.put(dependent, resolved);
+        }
+    }
+
+    /**
+     * Replaces the load order. The given list must contain exactly the registered plugins.
+     */
+    synchronized void setOrder(@NotNull List<Plugin> order) {
+
+        Snapshot current = snapshot;
+
+        if (order.size() != current.plugins.length) {
+            throw new IllegalArgumentException("The order contains " + order.size() + " plugins, but " + current.plugins.length + " are registered.");
+        }
+
+        snapshot = new Snapshot(order.toArray(new Plugin[0]), current.pluginsById, current.dependencies);
+    }
+
+    @Nullable
+    Plugin get(@NotNull String id) {
+        return snapshot.pluginsById.get(id);
+    }
+
+    boolean contains(@NotNull Plugin plugin) {
+        return snapshot.dependencies.containsKey(plugin);
+    }
+
+    /**
+     * Gets the resolved hard dependencies of the given plugin, in the order they are declared.
+     *
+     * @return a copy of the dependencies, with null for each one that is not registered, or null if the plugin is
+     * not registered.
+     */
+    @Nullable
+    Plugin[] getDependencies(@NotNull Plugin plugin) {
+        Plugin[] resolved = snapshot.dependencies.get(plugin);
+        return resolved == null ? null : resolved.clone();
+    }
+
+    /**
+     * Gets whether the given plugin depends on the plugin with the given id, directly or transitively, through hard
+     * or soft dependencies.
+     */
+    boolean isTransitiveDependency(@NotNull PluginDescription plugin, @NotNull String dependencyId) {
+        return reachability.reaches(plugin, dependencyId);
+    }
+
+    /**
+     * Sets whether the given plugin is enabled and keeps the enabled count in step.
+     */
+    void setEnabled(@NotNull Plugin plugin, boolean enabled) {
+
+        // the plugin manager serializes the transitions of a plugin: it is enabled by the one thread that claimed it in
+        // SimplePluginManager#enabling, and only disabled under the lock of the plugin manager once that claim has been
+        // released, so the check and the change cannot interleave with another transition.
+        if (plugin.isEnabled() == enabled) {
+            return;
+        }
+
+        synchronized (this) {
+
+            plugin.setEnabled(enabled);
+
+            if (contains(plugin)) {
+                enabledCount.addAndGet(enabled ? 1 : -1);
+            }
+        }
+    }
+
+    /**
+     * Gets the registered plugins in load order. The list is an immutable snapshot.
+     */
+    @NotNull
+    List<Plugin> getPlugins() {
+        return Collections.unmodifiableList(Arrays.asList(snapshot.plugins));
+    }
+
+    @NotNull
+    Plugin[] toArray() {
+        return snapshot.plugins.clone();
+    }
+
+    int size() {
+        return snapshot.plugins.length;
+    }
+
+    int getEnabledCount() {
+        return enabledCount.get();
+    }
+
+    private static final class Snapshot {
+
+        private final Plugin[] plugins;
+        private final Map<String, Plugin> pluginsById;
+        private final Map<Plugin, Plugin[]> dependencies;
+
+        Snapshot(@NotNull Plugin[] plugins, @NotNull Map<String, Plugin> pluginsById, @NotNull Map<Plugin, Plugin[]> dependencies) {
+            this.plugins = plugins;
+            this.pluginsById = pluginsById;
+            this.dependencies = dependencies;
+        }
+
+    }
+
+}
@@ -0,0 +1,115 @@
+package com.jayfella.plugin.manager;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The outcome of {@link PluginManager#reloadPlugin(String)}: which plugins were reloaded and how long each phase took.
+ */
+public final class PluginReloadReport {
+
+    private final String pluginId;
+    private final List<String> reloaded;
+    private final List<String> failed;
+
+    private final long disableNanos;
+    private final long unloadNanos;
+    private final long loadNanos;
+    private final long enableNanos;
+
+    PluginReloadReport(@NotNull String pluginId, @NotNull List<String> reloaded, @NotNull List<String> failed,
+                       long disableNanos, long unloadNanos, long loadNanos, long enableNanos) {
+
+        this.pluginId = pluginId;
+        this.reloaded = Collections.unmodifiableList(reloaded);
+        this.failed = Collections.unmodifiableList(failed);
+        this.disableNanos = disableNanos;
+        this.unloadNanos = unloadNanos;
+        this.loadNanos = loadNanos;
+        this.enableNanos = enableNanos;
+    }
+
+    /**
+     * Returns a copy of this report with the given time spent enabling, which is measured once the lock of the plugin
+     * manager has been released.
+     */
+    @NotNull
+    PluginReloadReport withEnableNanos(long enableNanos) {
+        return new PluginReloadReport(pluginId, reloaded, failed, disableNanos, unloadNanos, loadNanos, enableNanos);
+    }
+
+    /**
+     * Gets the id of the plugin whose reload was requested.
+     */
+    @NotNull
+    public String getPluginId() {
+        return pluginId;
+    }
+
+    /**
+     * Gets the ids of the plugins that were reloaded successfully, in load order. This includes every plugin that
+     * depends on the requested plugin.
+     */
+    @NotNull
+    public List<String> getReloadedPlugins() {
+        return reloaded;
+    }
+
+    /**
+     * Gets the ids of the plugins that were unloaded but could not be loaded again.
+     */
+    @NotNull
+    public List<String> getFailedPlugins() {
+        return failed;
+    }
+
+    public boolean isSuccessful() {
+        return failed.isEmpty();
+    }
+
+    /**
+     * Time spent calling onDisable, dependents first.
+     */
+    public long getDisableTime(@NotNull TimeUnit unit) {
+        return unit.convert(disableNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Time spent calling onUnload and releasing the old class loaders.
+     */
+    public long getUnloadTime(@NotNull TimeUnit unit) {
+        return unit.convert(unloadNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Time spent creating the new class loaders, constructing the plugins and calling onLoad.
+     */
+    public long getLoadTime(@NotNull TimeUnit unit) {
+        return unit.convert(loadNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Time spent calling onEnable, dependencies first.
+     */
+    public long getEnableTime(@NotNull TimeUnit unit) {
+        return unit.convert(enableNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public long getTotalTime(@NotNull TimeUnit unit) {
+        return unit.convert(disableNanos + unloadNanos + loadNanos + enableNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Reloaded %s and %d dependent(s) in %.2f ms (disable %.2f ms, unload %.2f ms, load %.2f ms, enable %.2f ms)%s",
+                pluginId,
+                Math.max(0, reloaded.size() + failed.size() - 1),
+                (disableNanos + unloadNanos + loadNanos + enableNanos) / 1e6,
+                disableNanos / 1e6, unloadNanos / 1e6, loadNanos / 1e6, enableNanos / 1e6,
+                failed.isEmpty() ? "" : " - failed: " + failed);
+    }
+
+}
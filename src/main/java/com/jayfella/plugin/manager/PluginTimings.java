@@ -0,0 +1,129 @@
+package com.jayfella.plugin.manager;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * How long each step of starting a plugin took, see {@link SimplePluginManager#setTimingsEnabled(boolean)}.
+ * A step that has not happened yet, or was skipped, took no time. All times are measured with {@link System#nanoTime()}.
+ */
+public final class PluginTimings {
+
+    private final String pluginId;
+
+    // each step is measured by one thread and read by others.
+    private volatile long descriptionNanos;
+    private volatile long classLoaderNanos;
+    private volatile long mainClassNanos;
+    private volatile long loadNanos;
+    private volatile long enableNanos;
+
+    // classes are defined by whichever thread asks for them first, including preload threads.
+    private final LongAdder classesDefined = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+
+    PluginTimings(@NotNull String pluginId) {
+        this.pluginId = pluginId;
+    }
+
+    @NotNull
+    public String getPluginId() {
+        return pluginId;
+    }
+
+    /**
+     * Time spent reading and validating plugin.json, including verifying a signed jar.
+     */
+    public long getDescriptionTime(@NotNull TimeUnit unit) {
+        return unit.convert(descriptionNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Time spent opening the jar and creating the class loader of the plugin, up to loading its main class.
+     */
+    public long getClassLoaderTime(@NotNull TimeUnit unit) {
+        return unit.convert(classLoaderNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Time spent loading and initializing the main class and constructing the plugin.
+     */
+    public long getMainClassTime(@NotNull TimeUnit unit) {
+        return unit.convert(mainClassNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Time spent in onLoad.
+     */
+    public long getLoadTime(@NotNull TimeUnit unit) {
+        return unit.convert(loadNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Time spent in onEnable.
+     */
+    public long getEnableTime(@NotNull TimeUnit unit) {
+        return unit.convert(enableNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public long getTotalTime(@NotNull TimeUnit unit) {
+        return unit.convert(getTotalNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    long getTotalNanos() {
+        return descriptionNanos + classLoaderNanos + mainClassNanos + loadNanos + enableNanos;
+    }
+
+    /**
+     * Gets the number of classes the class loader of the plugin has defined.
+     */
+    public long getClassesDefined() {
+        return classesDefined.sum();
+    }
+
+    /**
+     * Gets the number of class file bytes read from the jar of the plugin, before any transformer ran.
+     */
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    void setDescriptionNanos(long nanos) {
+        this.descriptionNanos = nanos;
+    }
+
+    void setClassLoaderNanos(long nanos) {
+        this.classLoaderNanos = nanos;
+    }
+
+    void setMainClassNanos(long nanos) {
+        this.mainClassNanos = nanos;
+    }
+
+    void setLoadNanos(long nanos) {
+        this.loadNanos = nanos;
+    }
+
+    void setEnableNanos(long nanos) {
+        this.enableNanos = nanos;
+    }
+
+    void recordClassDefined() {
+        classesDefined.increment();
+    }
+
+    void recordBytesRead(long bytes) {
+        bytesRead.add(bytes);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %.2f ms (description %.2f ms, class loader %.2f ms, main class %.2f ms, onLoad %.2f ms, onEnable %.2f ms), %d classes, %d KB",
+                pluginId, getTotalNanos() / 1e6,
+                descriptionNanos / 1e6, classLoaderNanos / 1e6, mainClassNanos / 1e6, loadNanos / 1e6, enableNanos / 1e6,
+                getClassesDefined(), getBytesRead() / 1024);
+    }
+
+}
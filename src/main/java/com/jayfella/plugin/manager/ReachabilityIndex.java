@@ -0,0 +1,413 @@
+package com.jayfella.plugin.manager;
+
+import com.jayfella.plugin.manager.plugin.description.PluginDescription;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Which registered plugins each registered plugin depends on, directly or transitively, through hard and soft
+ * dependencies.
+ *
+ * Every plugin is given a bit, and every plugin has a bitset of the plugins it can reach, so a query is a map lookup
+ * and a bit test. The bitsets are kept up to date as plugins are added and removed instead of being rebuilt: adding a
+ * plugin only touches the plugins that can reach it, and removing one only recomputes them.
+ *
+ * Queries never lock. Bitsets are never changed once published; a change copies the bitsets it touches and publishes
+ * a new state. Changes are serialized.
+ */
+final class ReachabilityIndex {
+
+    private volatile State state = new State(Collections.emptyMap(), new BitSet[0]);
+
+    // id -> the ids it depends on, hard and soft, whether or not they are registered.
+    private final Map<String, List<String>> edges = new HashMap<>();
+
+    // id -> the registered ids that depend on it, hard or soft, whether or not it is registered.
+    private final Map<String, Set<String>> dependents = new HashMap<>();
+
+    private final BitSet freeBits = new BitSet();
+
+    /**
+     * Adds the given plugins. A plugin whose id is already indexed is skipped.
+     */
+    synchronized void add(@NotNull List<PluginDescription> descriptions) {
+
+        State current = state;
+
+        Map<String, Integer> bits = new HashMap<>(current.bits);
+        List<String> added = new ArrayList<>();
+
+        for (PluginDescription description : descriptions) {
+
+            String id = description.getId();
+
+            if (bits.containsKey(id)) {
+                continue;
+            }
+
+            int bit = freeBits.nextSetBit(0);
+
+            if (bit == -1) {
+                bit = bits.size();
+            } else {
+                freeBits.clear(bit);
+            }
+
+            bits.put(id, bit);
+            added.add(id);
+
+            List<String> dependencyIds = getDependencyIds(description);
+            edges.put(id, dependencyIds);
+
+            for (String dependencyId : dependencyIds) {
+                dependents.computeIfAbsent(dependencyId, key -> new HashSet<>()).add(id);
+            }
+        }
+
+        BitSet[] reach = copyOf(current.reach, bits.size() + freeBits.cardinality());
+
+        // the new plugins are resolved dependencies first, so each one only combines what its dependencies reach...
+        resolveAdded(added, bits, reach);
+
+        // ...and the plugins that were already indexed only grow by what they can now reach through them. If one of
+        // them is also a dependency of a new plugin, the two form a cycle and the new plugins grow with it.
+        Set<String> ancestors = getAncestors(added, bits);
+
+        if (!ancestors.isEmpty()) {
+            ancestors.addAll(added);
+        }
+
+        boolean changed = !ancestors.isEmpty();
+
+        while (changed) {
+
+            changed = false;
+
+            for (String ancestor : ancestors) {
+
+                int ancestorBit = bits.get(ancestor);
+                BitSet previous = reach[ancestorBit];
+                BitSet reachable = previous == null ? new BitSet() : (BitSet) previous.clone();
+
+                addDependencies(reachable, edges.get(ancestor), bits, reach);
+
+                if (!reachable.equals(previous)) {
+                    reach[ancestorBit] = reachable;
+                    changed = true;
+                }
+            }
+        }
+
+        state = new State(bits, reach);
+    }
+
+    /**
+     * Computes what each of the given new plugins reaches. The plugins are visited with Tarjan's algorithm, which
+     * completes every strongly connected component after the components it depends on, so the reach of a component
+     * is the union of the reach of its dependencies. Soft dependencies can form cycles, and every plugin in a cycle
+     * reaches every other plugin in it, including itself.
+     */
+    private void resolveAdded(@NotNull List<String> added, @NotNull Map<String, Integer> bits, @NotNull BitSet[] reach) {
+
+        Set<String> pending = new HashSet<>(added);
+
+        Map<String, Integer> indices = new HashMap<>();
+        Map<String, Integer> lowLinks = new HashMap<>();
+        Deque<String> components = new ArrayDeque<>();
+        Set<String> onStack = new HashSet<>();
+
+        // an explicit stack instead of recursion, because a chain of plugins can be thousands deep.
+        Deque<String> path = new ArrayDeque<>();
+        Deque<Iterator<String>> pathEdges = new ArrayDeque<>();
+
+        for (String root : added) {
+
+            if (indices.containsKey(root)) {
+                continue;
+            }
+
+            visit(root, indices, lowLinks, components, onStack, path, pathEdges);
+
+            while (!path.isEmpty()) {
+
+                String id = path.peek();
+                Iterator<String> dependencies = pathEdges.peek();
+
+                if (dependencies.hasNext()) {
+
+                    String dependencyId = dependencies.next();
+
+                    if (!pending.contains(dependencyId)) {
+                        continue;
+                    }
+
+                    if (!indices.containsKey(dependencyId)) {
+                        visit(dependencyId, indices, lowLinks, components, onStack, path, pathEdges);
+                    } else if (onStack.contains(dependencyId)) {
+                        lowLinks.put(id, Math.min(lowLinks.get(id), indices.get(dependencyId)));
+                    }
+
+                    continue;
+                }
+
+                path.pop();
+                pathEdges.pop();
+
+                if (lowLinks.get(id).equals(indices.get(id))) {
+
+                    Set<String> component = new HashSet<>();
+                    String member;
+
+                    do {
+                        member = components.pop();
+                        onStack.remove(member);
+                        component.add(member);
+                    } while (!member.equals(id));
+
+                    resolveComponent(component, bits, reach);
+                }
+
+                if (!path.isEmpty()) {
+                    String parent = path.peek();
+                    lowLinks.put(parent, Math.min(lowLinks.get(parent), lowLinks.get(id)));
+                }
+            }
+        }
+    }
+
+    private void visit(@NotNull String id, @NotNull Map<String, Integer> indices, @NotNull Map<String, Integer> lowLinks,
+                       @NotNull Deque<String> components, @NotNull Set<String> onStack,
+                       @NotNull Deque<String> path, @NotNull Deque<Iterator<String>> pathEdges) {
+
+        int index = indices.size();
+        indices.put(id, index);
+        lowLinks.put(id, index);
+
+        components.push(id);
+        onStack.add(id);
+
+        path.push(id);
+        pathEdges.push(edges.get(id).iterator());
+    }
+
+    private void resolveComponent(@NotNull Set<String> component, @NotNull Map<String, Integer> bits, @NotNull BitSet[] reach) {
+
+        BitSet reachable = new BitSet();
+        boolean cyclic = component.size() > 1;
+
+        for (String id : component) {
+            for (String dependencyId : edges.get(id)) {
+                if (component.contains(dependencyId)) {
+                    cyclic = true;
+                } else {
+                    addDependency(reachable, dependencyId, bits, reach);
+                }
+            }
+        }
+
+        if (cyclic) {
+            for (String id : component) {
+                reachable.set(bits.get(id));
+            }
+        }
+
+        for (String id : component) {
+            reach[bits.get(id)] = (BitSet) reachable.clone();
+        }
+    }
+
+    private static void addDependencies(@NotNull BitSet reachable, @NotNull List<String> dependencyIds, @NotNull Map<String, Integer> bits, @NotNull BitSet[] reach) {
+        for (String dependencyId : dependencyIds) {
+            addDependency(reachable, dependencyId, bits, reach);
+        }
+    }
+
+    private static void addDependency(@NotNull BitSet reachable, @NotNull String dependencyId, @NotNull Map<String, Integer> bits, @NotNull BitSet[] reach) {
+
+        Integer dependencyBit = bits.get(dependencyId);
+
+        if (dependencyBit != null) {
+            reachable.set(dependencyBit);
+
+            if (reach[dependencyBit] != null) {
+                reachable.or(reach[dependencyBit]);
+            }
+        }
+    }
+
+    /**
+     * Removes the given plugin and recomputes what the plugins that reached it can still reach.
+     */
+    synchronized void remove(@NotNull String id) {
+
+        State current = state;
+        Integer bit = current.bits.get(id);
+
+        if (bit == null) {
+            return;
+        }
+
+        Map<String, Integer> bits = new HashMap<>(current.bits);
+        bits.remove(id);
+
+        Set<String> ancestors = getAncestors(Collections.singletonList(id), bits);
+
+        for (String dependencyId : edges.remove(id)) {
+
+            Set<String> waiting = dependents.get(dependencyId);
+
+            if (waiting != null) {
+                waiting.remove(id);
+
+                if (waiting.isEmpty()) {
+                    dependents.remove(dependencyId);
+                }
+            }
+        }
+
+        BitSet[] reach = current.reach.clone();
+        reach[bit] = null;
+        freeBits.set(bit);
+
+        for (String ancestor : ancestors) {
+            reach[bits.get(ancestor)] = new BitSet();
+        }
+
+        // soft dependencies may form cycles, so recompute until nothing changes instead of relying on an order.
+        boolean changed = true;
+
+        while (changed) {
+
+            changed = false;
+
+            for (String ancestor : ancestors) {
+
+                BitSet reachable = reach[bits.get(ancestor)];
+                BitSet previous = (BitSet) reachable.clone();
+
+                addDependencies(reachable, edges.get(ancestor), bits, reach);
+
+                changed |= !reachable.equals(previous);
+            }
+        }
+
+        state = new State(bits, reach);
+    }
+
+    /**
+     * Gets every indexed plugin, other than the given ones, that reaches one of the given ids through one or more
+     * dependencies. The nearest plugins come first.
+     */
+    @NotNull
+    private Set<String> getAncestors(@NotNull Collection<String> ids, @NotNull Map<String, Integer> bits) {
+
+        Set<String> ancestors = new LinkedHashSet<>();
+        Deque<String> queue = new ArrayDeque<>(ids);
+
+        while (!queue.isEmpty()) {
+
+            Set<String> waiting = dependents.get(queue.poll());
+
+            if (waiting == null) {
+                continue;
+            }
+
+            for (String dependent : waiting) {
+                if (bits.containsKey(dependent) && ancestors.add(dependent)) {
+                    queue.add(dependent);
+                }
+            }
+        }
+
+        // removeAll would search the given collection once per ancestor.
+        for (String id : ids) {
+            ancestors.remove(id);
+        }
+
+        return ancestors;
+    }
+
+    /**
+     * Gets whether the given plugin depends on the plugin with the given id, directly or transitively, through hard
+     * or soft dependencies. A plugin that is not indexed yet, such as one whose class loader is still being
+     * constructed, is resolved through its declared dependencies.
+     */
+    boolean reaches(@NotNull PluginDescription plugin, @NotNull String dependencyId) {
+
+        State current = state;
+        Integer bit = current.bits.get(plugin.getId());
+
+        if (bit != null) {
+            return reaches(current, bit, dependencyId);
+        }
+
+        for (String id : getDependencyIds(plugin)) {
+
+            if (id.equals(dependencyId)) {
+                return true;
+            }
+
+            Integer dependencyBit = current.bits.get(id);
+
+            if (dependencyBit != null && reaches(current, dependencyBit, dependencyId)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean reaches(@NotNull State state, int bit, @NotNull String dependencyId) {
+        Integer dependencyBit = state.bits.get(dependencyId);
+        return dependencyBit != null && state.reach[bit].get(dependencyBit);
+    }
+
+    @NotNull
+    private static List<String> getDependencyIds(@NotNull PluginDescription description) {
+
+        List<String> ids = new ArrayList<>();
+
+        if (description.getDependencies() != null) {
+            ids.addAll(description.getDependencies());
+        }
+
+        if (description.getSoftDependencies() != null) {
+            ids.addAll(description.getSoftDependencies());
+        }
+
+        return ids;
+    }
+
+    @NotNull
+    private static BitSet[] copyOf(@NotNull BitSet[] reach, int length) {
+        BitSet[] copy = new BitSet[Math.max(length, reach.length)];
+        System.arraycopy(reach, 0, copy, 0, reach.length);
+        return copy;
+    }
+
+    private static final class State {
+
+        private final Map<String, Integer> bits;
+        private final BitSet[] reach;
+
+        State(@NotNull Map<String, Integer> bits, @NotNull BitSet[] reach) {
+            this.bits = bits;
+            this.reach = reach;
+        }
+
+    }
+
+}
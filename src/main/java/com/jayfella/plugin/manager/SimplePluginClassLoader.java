@@ -5,7 +5,9 @@ import com.jayfella.plugin.manager.exception.InvalidPluginException;
 import com.jayfella.plugin.manager.plugin.Plugin;
 import com.jayfella.plugin.manager.plugin.SimplePlugin;
 import com.jayfella.plugin.manager.plugin.description.PluginDescription;
+import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
 import java.io.IOException;
@@ -14,13 +16,19 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
 import java.security.CodeSigner;
 import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
@@ -33,14 +41,38 @@ public class SimplePluginClassLoader extends URLClassLoader {
     private final PluginDescription description;
     private final PluginManager pluginManager;
 
+    // null when classes are read from the mapped jar.
     private final JarFile jar;
+    private final MappedJarFile mappedJar;
     private final Manifest manifest;
     private final URL url;
+    private final CodeSource unsignedSource;
+
+    // the verified signers of the classes in a signed jar, and a code source for each distinct set of them.
+    private final JarSignatures signatures;
+    private final CodeSource[] signedSources;
 
     private final Plugin plugin;
 
+    private final String[] packageNames;
+
+    private final ClassPreloadProfile preloadProfile;
+
+    // null unless plugin timings are enabled.
+    private final PluginTimings timings;
+    private final PluginClassLoaderStatistics statistics;
+
     private final Set<String> seenIllegalAccess = Collections.newSetFromMap(new ConcurrentHashMap<>());
 
+    // the class loaders that have cached one of our classes, and so have to forget them when we are unloaded.
+    private final Set<SimplePluginClassLoader> borrowers = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    // the class loaders we have cached one of the classes of, and so have to stop borrowing from when we are unloaded.
+    private final Set<SimplePluginClassLoader> providers = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    // set before the classes of this class loader are purged when it is unloaded, so it no longer publishes any.
+    private volatile boolean closed;
+
     static {
         ClassLoader.registerAsParallelCapable();
     }
@@ -48,13 +80,85 @@ public class SimplePluginClassLoader extends URLClassLoader {
     SimplePluginClassLoader(@NotNull PluginManager pluginManager, @NotNull final SimplePluginLoader loader, @NotNull final File file, @NotNull final PluginDescription description, File dataFolder) throws IOException, InvalidPluginException {
         super(new URL[] { file.toURI().toURL() },  loader.getClass().getClassLoader());
 
+        long start = System.nanoTime();
+
+        this.timings = pluginManager instanceof SimplePluginManager
+                ? ((SimplePluginManager) pluginManager).getTimingsFor(description.getId())
+                : null;
+
         this.pluginManager = pluginManager;
         this.loader = loader;
         this.description = description;
+        this.statistics = new PluginClassLoaderStatistics(this, description.getId());
 
-        this.jar = new JarFile(file);
-        this.manifest = jar.getManifest();
         this.url = file.toURI().toURL();
+        this.unsignedSource = new CodeSource(url, (CodeSigner[]) null);
+
+        MappedJarFile mapped = openMappedJar(pluginManager, file);
+        JarSignatures verified = null;
+
+        // a signed jar can only be mapped if it has been verified up front, otherwise JarFile has to verify each class.
+        if (mapped != null && mapped.isSigned()) {
+
+            verified = pluginManager instanceof SimplePluginManager
+                    ? ((SimplePluginManager) pluginManager).getJarSignatures(file)
+                    : null;
+
+            if (verified == null || !verified.matches(file)) {
+                mapped.close();
+                mapped = null;
+                verified = null;
+            }
+        }
+
+        this.mappedJar = mapped;
+
+        // the JarFile is only kept open if classes have to be read through it. Open zip files are not free: on Java 8
+        // opening a zip file searches every zip file that is already open.
+        JarFile jarFile = new JarFile(file);
+        this.manifest = jarFile.getManifest();
+
+        if (mappedJar != null) {
+            jarFile.close();
+            jarFile = null;
+        }
+
+        this.jar = jarFile;
+        this.signatures = verified;
+        this.signedSources = createSignedSources(url, verified);
+        this.packageNames = mappedJar != null
+                ? readPackageNames(mappedJar.getClassPaths())
+                : readPackageNames(jar);
+
+        // start preloading before the main class is initialized so the two overlap.
+        ExecutorService preloadExecutor = pluginManager instanceof SimplePluginManager
+                ? ((SimplePluginManager) pluginManager).getPreloadExecutor()
+                : null;
+
+        this.preloadProfile = preloadExecutor != null && dataFolder != null
+                ? ClassPreloadProfile.start(file, dataFolder, this, preloadExecutor)
+                : null;
+
+        long mainClassStart = System.nanoTime();
+
+        if (timings != null) {
+            timings.setClassLoaderNanos(mainClassStart - start);
+        }
+
+        try {
+            plugin = createPlugin(pluginManager, loader, description, file, dataFolder);
+        } finally {
+            if (timings != null) {
+                timings.setMainClassNanos(System.nanoTime() - mainClassStart);
+            }
+        }
+    }
+
+    /**
+     * Loads and initializes the main class of the plugin and constructs the plugin.
+     */
+    @NotNull
+    private SimplePlugin createPlugin(@NotNull PluginManager pluginManager, @NotNull SimplePluginLoader loader, @NotNull PluginDescription description, @NotNull File file, File dataFolder) throws InvalidPluginException {
 
         Class<?> jarClass;
 
@@ -75,9 +179,10 @@ public class SimplePluginClassLoader extends URLClassLoader {
 
         try {
             Constructor<? extends SimplePlugin> pluginConstructor = pluginClass.getConstructor();
-            plugin = pluginConstructor.newInstance();
+            SimplePlugin plugin = pluginConstructor.newInstance();
 
             plugin.initialize(pluginManager, loader, this, description, file, dataFolder);
+            return plugin;
 
         } catch (NoSuchMethodException | IllegalAccessException e) {
             throw new InvalidPluginException("No public constructor.", e);
@@ -86,6 +191,71 @@ public class SimplePluginClassLoader extends URLClassLoader {
         }
     }
 
+    /**
+     * Maps the given jar so classes can be read without going through {@link JarFile}.
+     *
+     * @return the mapped jar, or null if the jar cannot be mapped.
+     */
+    private static MappedJarFile openMappedJar(@NotNull PluginManager pluginManager, @NotNull File file) {
+
+        try {
+            return new MappedJarFile(file);
+        } catch (IOException e) {
+            pluginManager.getLogger().log(Level.FINE, "Unable to map " + file + ", classes will be read through JarFile.", e);
+        }
+
+        return null;
+    }
+
+    private static CodeSource[] createSignedSources(@NotNull URL url, JarSignatures signatures) {
+
+        if (signatures == null) {
+            return null;
+        }
+
+        CodeSource[] sources = new CodeSource[signatures.getSignerSetCount()];
+
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = new CodeSource(url, signatures.getSigners(i));
+        }
+
+        return sources;
+    }
+
+    /**
+     * Reads the names of every package that contains a class in the given jar from its central directory.
+     */
+    @NotNull
+    private static String[] readPackageNames(@NotNull JarFile jar) {
+
+        List<String> paths = new ArrayList<>();
+        Enumeration<JarEntry> entries = jar.entries();
+
+        while (entries.hasMoreElements()) {
+            paths.add(entries.nextElement().getName());
+        }
+
+        return readPackageNames(paths);
+    }
+
+    @NotNull
+    private static String[] readPackageNames(@NotNull Collection<String> paths) {
+
+        ObjectOpenHashSet<String> packageNames = new ObjectOpenHashSet<>();
+
+        for (String path : paths) {
+
+            if (!path.endsWith(".class") || path.startsWith("META-INF/")) {
+                continue;
+            }
+
+            int slash = path.lastIndexOf('/');
+            packageNames.add(slash == -1 ? "" : path.substring(0, slash).replace('/', '.'));
+        }
+
+        return packageNames.toArray(new String[0]);
+    }
+
     @Override
     public URL getResource(String name) {
         return findResource(name);
@@ -105,101 +275,466 @@ public class SimplePluginClassLoader extends URLClassLoader {
 
         Class<?> result = classes.get(name);
 
-        if (result == null) {
-            if (checkGlobal) {
+        if (result != null) {
+            return result;
+        }
+
+        // only lookups that miss the cache are timed, a hit is a single map read.
+        long start = System.nanoTime();
+        ClassLookupEvent event = FlightRecorderSupport.AVAILABLE ? ClassLookupEvent.start() : null;
+
+        try {
+            result = lookupClass(name, checkGlobal);
+            return result;
+        } finally {
+            statistics.recordFindClassNanos(System.nanoTime() - start);
+
+            if (event != null) {
+                event.finish(this, description.getId(), name, checkGlobal, result);
+            }
+        }
+    }
+
+    /**
+     * Finds a class this class loader has not cached: in the classes of all plugins if checkGlobal is set, then in
+     * the jar of this plugin.
+     */
+    @NotNull
+    private Class<?> lookupClass(@NotNull String name, boolean checkGlobal) throws ClassNotFoundException {
+
+        NegativeLookupCache negativeLookupCache = loader.getNegativeLookupCache();
+        long stamp = negativeLookupCache.getStamp();
+
+        // our own jar is checked first: the cache is only invalidated once this plugin has been indexed, which is after
+        // its main class has been loaded, so it may still list a class another plugin looked for before then.
+        if (checkGlobal && !containsClass(name) && negativeLookupCache.isKnownAbsent(name)) {
+            statistics.recordLookup(false);
+            throw new ClassNotFoundException(name);
+        }
+
+        Class<?> result = null;
+
+        if (checkGlobal) {
+            result = loader.getClassByName(name);
+
+            // the class may belong to a lazy plugin that has not been activated yet.
+            if (result == null
+                    && pluginManager instanceof SimplePluginManager
+                    && ((SimplePluginManager) pluginManager).activateProviderOf(name)) {
+
                 result = loader.getClassByName(name);
+            }
 
-                if (result != null) {
-                    PluginDescription provider = ((SimplePluginClassLoader) result.getClassLoader()).description;
+            statistics.recordLookup(result != null);
 
-                    if (provider != description
-                            && !seenIllegalAccess.contains(provider.getId())
-                            && !pluginManager.isTransitiveDependency(description, provider)) {
+            if (result != null) {
+                PluginDescription provider = ((SimplePluginClassLoader) result.getClassLoader()).description;
 
-                        seenIllegalAccess.add(provider.getId());
-                        if (plugin != null) {
-                            plugin.getLogger().log(Level.WARNING, "Loaded class {0} from {1} which is not a depend, softdepend or loadbefore of this plugin.", new Object[]{name, provider.getFullName()});
-                        } else {
-                            // In case the bad access occurs on construction
-                            pluginManager.getLogger().log(Level.WARNING, "[{0}] Loaded class {1} from {2} which is not a depend, softdepend or loadbefore of this plugin.", new Object[]{description.getId(), name, provider.getFullName()});
-                        }
+                if (provider != description
+                        && !seenIllegalAccess.contains(provider.getId())
+                        && !pluginManager.isTransitiveDependency(description, provider)) {
+
+                    seenIllegalAccess.add(provider.getId());
+                    if (plugin != null) {
+                        plugin.getLogger().log(Level.WARNING, "Loaded class {0} from {1} which is not a depend, softdepend or loadbefore of this plugin.", new Object[]{name, provider.getFullName()});
+                    } else {
+                        // In case the bad access occurs on construction
+                        pluginManager.getLogger().log(Level.WARNING, "[{0}] Loaded class {1} from {2} which is not a depend, softdepend or loadbefore of this plugin.", new Object[]{description.getId(), name, provider.getFullName()});
                     }
                 }
             }
+        }
 
-            if (result == null) {
-                String path = name.replace('.', '/').concat(".class");
-                JarEntry entry = jar.getJarEntry(path);
+        if (result == null) {
+            // only defining the class needs the lock; the global lookup above takes the locks of the loaders it probes.
+            synchronized (getClassLoadingLock(name)) {
+                result = defineLocalClass(name, checkGlobal, negativeLookupCache, stamp);
+            }
+        } else {
+            ClassLoader provider = result.getClassLoader();
 
-                if (entry != null) {
-                    byte[] classBytes;
+            if (provider != this && provider instanceof SimplePluginClassLoader) {
+                SimplePluginClassLoader providerLoader = (SimplePluginClassLoader) provider;
 
-                    try (InputStream is = jar.getInputStream(entry)) {
-                        classBytes = ByteStreams.toByteArray(is);
-                    } catch (IOException ex) {
-                        throw new ClassNotFoundException(name, ex);
-                    }
+                providerLoader.borrowers.add(this);
+                providers.add(providerLoader);
+                classes.putIfAbsent(name, result);
 
-                    classBytes = pluginManager.getClassSerializer().processClass(description, path, classBytes);
-
-                    int dot = name.lastIndexOf('.');
-                    if (dot != -1) {
-                        String pkgName = name.substring(0, dot);
-
-                        //noinspection deprecation
-                        if (getPackage(pkgName) == null) {
-                            try {
-                                if (manifest != null) {
-                                    definePackage(pkgName, manifest, url);
-                                } else {
-                                    definePackage(pkgName, null, null, null, null, null, null, null);
-                                }
-                            } catch (IllegalArgumentException ex) {
-                                //noinspection deprecation
-                                if (getPackage(pkgName) == null) {
-                                    throw new IllegalStateException("Cannot find package " + pkgName);
-                                }
-                            }
-                        }
-                    }
+                // the provider may have been unlinked while we looked the class up, and would then never be forgotten.
+                if (providerLoader.closed) {
+                    forgetClassesOf(providerLoader);
+                    providers.remove(providerLoader);
+                }
+            } else {
+                classes.putIfAbsent(name, result);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Gets whether the jar of this plugin contains the given class. This is a lookup in the index of the jar, the class
+     * is not read. A closed class loader contains no classes.
+     */
+    boolean containsClass(@NotNull String name) {
+
+        if (closed) {
+            return false;
+        }
+
+        String path = name.replace('.', '/').concat(".class");
+
+        if (mappedJar != null) {
+            return mappedJar.contains(path);
+        }
+
+        try {
+            return jar.getJarEntry(path) != null;
+        } catch (IllegalStateException e) {
+            // the jar was closed since we checked.
+            return false;
+        }
+    }
 
-                    CodeSigner[] signers = entry.getCodeSigners();
-                    CodeSource source = new CodeSource(url, signers);
+    /**
+     * Reads the class file of the given class from where this class loader would load it, its parent, its own jar or
+     * another plugin, without defining it.
+     *
+     * @return the class file, or null if none of them contains the class.
+     */
+    @Nullable
+    byte[] findClassFile(@NotNull String name) throws IOException {
+
+        String path = name.replace('.', '/').concat(".class");
+        ClassLoader parent = getParent();
+
+        try (InputStream is = parent != null ? parent.getResourceAsStream(path) : ClassLoader.getSystemResourceAsStream(path)) {
+            if (is != null) {
+                return ByteStreams.toByteArray(is);
+            }
+        }
 
-                    result = defineClass(name, classBytes, 0, classBytes.length, source);
+        byte[] classFile = readClassFile(name);
+        return classFile != null ? classFile : loader.findClassFile(name);
+    }
+
+    /**
+     * Reads the class file of the given class from the jar of this plugin without defining it.
+     *
+     * @return the class file, or null if the jar does not contain the class or this class loader has been closed.
+     */
+    @Nullable
+    byte[] readClassFile(@NotNull String name) throws IOException {
+
+        if (!containsClass(name)) {
+            return null;
+        }
+
+        String path = name.replace('.', '/').concat(".class");
+
+        if (mappedJar == null) {
+            try (InputStream is = jar.getInputStream(jar.getJarEntry(path))) {
+                return ByteStreams.toByteArray(is);
+            }
+        }
+
+        ByteBuffer classBytes = mappedJar.read(path);
+
+        if (classBytes == null) {
+            return null;
+        }
+
+        try {
+            byte[] classFile = new byte[classBytes.remaining()];
+            classBytes.duplicate().get(classFile);
+            return classFile;
+        } finally {
+            mappedJar.release(classBytes);
+        }
+    }
+
+    /**
+     * Defines the given class from the jar of this plugin. The caller holds the class loading lock of the name, so
+     * two threads can never both define it.
+     */
+    @NotNull
+    private Class<?> defineLocalClass(@NotNull String name, boolean checkGlobal, @NotNull NegativeLookupCache negativeLookupCache, long stamp) throws ClassNotFoundException {
+
+        // another thread may have defined the class while we waited for the lock.
+        Class<?> result = classes.get(name);
+
+        if (result == null) {
+            result = findLoadedClass(name);
+        }
+
+        if (result != null) {
+            return result;
+        }
+
+        // a lookup that found this class loader before it was unloaded must not define a class nothing will purge.
+        if (closed) {
+            throw new ClassNotFoundException(name);
+        }
+
+        String path = name.replace('.', '/').concat(".class");
+
+        if (mappedJar != null) {
+            result = defineMappedClass(name, path);
+        } else {
+            JarEntry entry = jar.getJarEntry(path);
+
+            if (entry != null) {
+                byte[] classBytes;
+
+                try (InputStream is = jar.getInputStream(entry)) {
+                    classBytes = ByteStreams.toByteArray(is);
+                } catch (IOException ex) {
+                    throw new ClassNotFoundException(name, ex);
                 }
 
-                if (result == null) {
-                    result = super.findClass(name);
+                statistics.recordBytesRead(classBytes.length);
+
+                if (timings != null) {
+                    timings.recordBytesRead(classBytes.length);
                 }
 
-                if (result != null) {
-                    loader.setClass(name, result);
+                classBytes = pluginManager.getClassSerializer().processClass(description, path, classBytes, this);
+
+                definePackageOf(name);
+
+                CodeSigner[] signers = entry.getCodeSigners();
+                CodeSource source = new CodeSource(url, signers);
+
+                result = defineClass(name, classBytes, 0, classBytes.length, source);
+            }
+        }
+
+        if (result != null && preloadProfile != null) {
+            preloadProfile.record(name);
+        }
+
+        if (result == null) {
+            try {
+                result = super.findClass(name);
+            } catch (ClassNotFoundException ex) {
+
+                if (checkGlobal) {
+                    // every plugin that could provide the class has been probed, plus our own jar twice.
+                    negativeLookupCache.recordAbsent(name, loader.getPackageOwnerCount(name) + 2, stamp);
                 }
 
-                classes.put(name, result);
+                throw ex;
             }
         }
 
+        statistics.recordClassDefined();
+
+        if (timings != null) {
+            timings.recordClassDefined();
+        }
+
+        loader.setClass(name, result);
+        classes.put(name, result);
+
         return result;
     }
 
+    /**
+     * Defines the given class from the memory-mapped jar without copying its bytes more than necessary.
+     *
+     * @return the class, or null if the jar does not contain it.
+     */
+    private Class<?> defineMappedClass(@NotNull String name, @NotNull String path) throws ClassNotFoundException {
+
+        ByteBuffer classBytes;
+
+        try {
+            classBytes = mappedJar.read(path);
+        } catch (IOException ex) {
+            throw new ClassNotFoundException(name, ex);
+        }
+
+        if (classBytes == null) {
+            return null;
+        }
+
+        statistics.recordBytesRead(classBytes.remaining());
+
+        if (timings != null) {
+            timings.recordBytesRead(classBytes.remaining());
+        }
+
+        try {
+
+            // since it was verified the jar has only been compared by size and modification time.
+            if (signatures != null) {
+                signatures.checkDigest(path, classBytes);
+            }
+
+            ByteBuffer processed = pluginManager.getClassSerializer().processClass(description, path, classBytes, this);
+
+            definePackageOf(name);
+
+            return defineClass(name, processed, getCodeSource(path));
+        } finally {
+            mappedJar.release(classBytes);
+        }
+    }
+
+    /**
+     * Gets the code source of the given class entry of the mapped jar.
+     */
+    private CodeSource getCodeSource(@NotNull String path) {
+
+        if (signatures == null) {
+            return unsignedSource;
+        }
+
+        int signerSet = signatures.getSignerSet(path);
+        return signerSet == -1 ? unsignedSource : signedSources[signerSet];
+    }
+
+    private void definePackageOf(@NotNull String name) {
+
+        int dot = name.lastIndexOf('.');
+        if (dot != -1) {
+            String pkgName = name.substring(0, dot);
+
+            //noinspection deprecation
+            if (getPackage(pkgName) == null) {
+                try {
+                    if (manifest != null) {
+                        definePackage(pkgName, manifest, url);
+                    } else {
+                        definePackage(pkgName, null, null, null, null, null, null, null);
+                    }
+                } catch (IllegalArgumentException ex) {
+                    //noinspection deprecation
+                    if (getPackage(pkgName) == null) {
+                        throw new IllegalStateException("Cannot find package " + pkgName);
+                    }
+                }
+            }
+        }
+    }
+
     @Override
     public void close() throws IOException {
+
+        closed = true;
+        finishPreloadProfile();
+        classes.clear();
+        statistics.markUnloaded();
+
         try {
             super.close();
         } finally {
-            jar.close();
+            if (mappedJar != null) {
+                mappedJar.close();
+            }
+
+            if (jar != null) {
+                jar.close();
+            }
         }
     }
 
+    /**
+     * Stops this class loader from defining classes or publishing them to other plugins. Called before its classes
+     * are purged when its plugin is unloaded, so a lookup that is still in progress cannot publish one afterwards.
+     */
+    void markClosed() {
+        closed = true;
+    }
+
+    /**
+     * Gets whether this class loader has been closed, or is being closed because its plugin is unloaded.
+     */
+    boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Stops recording the classes this plugin loads during startup and stores them, if a profile is being recorded.
+     */
+    void finishPreloadProfile() {
+        if (preloadProfile != null) {
+            preloadProfile.finish();
+        }
+    }
+
+    /**
+     * Gets the name of every package that contains a class in the jar of this class loader.
+     */
+    @NotNull
+    String[] getPackageNames() {
+        return packageNames;
+    }
+
+    /**
+     * Drops every class of the given class loader that this class loader has resolved from it, so an unloaded plugin
+     * is not kept alive by the plugins that looked up its classes.
+     */
+    void forgetClassesOf(@NotNull ClassLoader classLoader) {
+        classes.values().removeIf(clazz -> clazz.getClassLoader() == classLoader);
+    }
+
     @NotNull
     Set<String> getClasses() {
         return classes.keySet();
     }
 
+    /**
+     * Gets the classes this class loader has defined itself, as opposed to the ones it has resolved from other
+     * plugins.
+     */
+    @NotNull
+    Map<String, Class<?>> getDefinedClasses() {
+
+        Map<String, Class<?>> defined = new HashMap<>();
+
+        classes.forEach((name, clazz) -> {
+            if (clazz.getClassLoader() == this) {
+                defined.put(name, clazz);
+            }
+        });
+
+        return defined;
+    }
+
+    /**
+     * Unlinks this class loader from the plugins it has borrowed classes from and from the plugins that have borrowed
+     * classes from it. Plugins that cached one of its classes forget them, and the plugins it cached classes of no
+     * longer list it as a borrower, so neither side keeps this class loader alive once its plugin is unloaded.
+     */
+    void unlinkBorrowedClasses() {
+
+        for (SimplePluginClassLoader provider : providers) {
+            provider.borrowers.remove(this);
+        }
+
+        providers.clear();
+
+        for (SimplePluginClassLoader borrower : borrowers) {
+            borrower.forgetClassesOf(this);
+            borrower.providers.remove(this);
+        }
+
+        borrowers.clear();
+    }
+
     public Plugin getPlugin() {
         return plugin;
     }
 
+    /**
+     * Gets the live statistics of this class loader. They are also registered as an MXBean while MBeans are
+     * registered, see {@link SimplePluginManager#registerMBeans(String)}.
+     */
+    @NotNull
+    public PluginClassLoaderMXBean getStatistics() {
+        return statistics;
+    }
+
 }
@@ -8,17 +8,35 @@ import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class SimplePluginLoader implements PluginLoader {
 
+    private static final Logger log = Logger.getLogger(SimplePluginLoader.class.getName());
+
     private static final String TYPE = "SimplePlugin";
 
     private final Map<String, Class<?>> classes = new ConcurrentHashMap<>();
-    private final List<SimplePluginClassLoader> loaders = new ArrayList<>();
+    private final List<SimplePluginClassLoader> loaders = new CopyOnWriteArrayList<>();
+
+    // package name -> the class loaders whose jar contains classes in that package.
+    // each entry is replaced atomically, so indexing a plugin costs as much as its own packages, not the whole index.
+    // a persistent fastutil map would have to be copied whole for every plugin, which is quadratic over a startup. Only
+    // packages are indexed: the jar of each owner already indexes its class entries, so an owner of a split package
+    // that lacks the class costs a hash lookup in that index, not a read of its jar.
+    private final Map<String, SimplePluginClassLoader[]> packageOwners = new ConcurrentHashMap<>();
+
+    private final NegativeLookupCache negativeLookupCache = new NegativeLookupCache();
+
+    private final LongAdder lookupHits = new LongAdder();
+    private final LongAdder lookupMisses = new LongAdder();
 
     public SimplePluginLoader() {
 
@@ -54,31 +72,191 @@ public class SimplePluginLoader implements PluginLoader {
         }
 
         loaders.add(classLoader);
+        indexPackages(classLoader);
+
+        if (pluginManager instanceof SimplePluginManager) {
+            ((SimplePluginManager) pluginManager).registerMBean(classLoader);
+        }
+
         return classLoader.getPlugin();
     }
 
+    /**
+     * Adds the packages of the given class loader to the package index.
+     * Every entry is an immutable array that is replaced as a whole, so lookups never see one half updated and never
+     * need to lock.
+     */
+    private void indexPackages(@NotNull SimplePluginClassLoader classLoader) {
+
+        for (String packageName : classLoader.getPackageNames()) {
+            packageOwners.merge(packageName, new SimplePluginClassLoader[] { classLoader }, (owners, added) -> {
+                // split packages are rare, so a small array is cheaper than a nested collection.
+                SimplePluginClassLoader[] merged = Arrays.copyOf(owners, owners.length + 1);
+                merged[owners.length] = classLoader;
+                return merged;
+            });
+        }
+
+        // the new plugin may provide classes that were previously absent.
+        negativeLookupCache.invalidate();
+    }
+
+    /**
+     * Removes the packages of the given class loader from the package index.
+     */
+    private void unindexPackages(@NotNull SimplePluginClassLoader classLoader) {
+
+        for (String packageName : classLoader.getPackageNames()) {
+            packageOwners.computeIfPresent(packageName, (key, owners) -> {
+
+                SimplePluginClassLoader[] remaining = Arrays.stream(owners)
+                        .filter(owner -> owner != classLoader)
+                        .toArray(SimplePluginClassLoader[]::new);
+
+                return remaining.length == 0 ? null : remaining;
+            });
+        }
+    }
+
+    @Override
+    public void unloadPlugin(@NotNull Plugin plugin) {
+
+        SimplePluginClassLoader classLoader = (SimplePluginClassLoader) getClassLoader(plugin);
+
+        if (classLoader == null) {
+            return;
+        }
+
+        // closed first, so a lookup that found the class loader before it was unindexed cannot publish a class after
+        // the purge below.
+        classLoader.markClosed();
+        loaders.remove(classLoader);
+        unindexPackages(classLoader);
+
+        if (plugin.getPluginManager() instanceof SimplePluginManager) {
+            ((SimplePluginManager) plugin.getPluginManager()).unregisterMBean(classLoader);
+        }
+
+        // every cache that could still hand out one of its classes has to let go of them, and so does every plugin it
+        // borrowed classes from. Only the classes it defined itself are in the global cache, and only the class loaders
+        // that looked one of them up have cached any.
+        classLoader.getDefinedClasses().forEach(classes::remove);
+        classLoader.unlinkBorrowedClasses();
+
+        try {
+            classLoader.close();
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Unable to close the class loader of " + plugin.getDescription().getFullName(), e);
+        }
+    }
+
     @Nullable
     Class<?> getClassByName(final String name) {
         Class<?> cachedClass = classes.get(name);
 
         if (cachedClass != null) {
+            lookupHits.increment();
             return cachedClass;
-        } else {
-            for (SimplePluginClassLoader loader : loaders) {
+        }
+
+        // only the plugins that contain the package of the class can provide it.
+        SimplePluginClassLoader[] owners = packageOwners.get(getPackageName(name));
+
+        if (owners != null) {
+            for (SimplePluginClassLoader loader : owners) {
+
+                if (!loader.containsClass(name)) {
+                    continue;
+                }
+
                 try {
                     cachedClass = loader.findClass(name, false);
                 } catch (ClassNotFoundException cnfe) {}
                 if (cachedClass != null) {
+                    lookupHits.increment();
                     return cachedClass;
                 }
             }
         }
+
+        lookupMisses.increment();
         return null;
     }
 
+    /**
+     * Reads the class file of the given class from the jar of the plugin that provides it, without defining it.
+     *
+     * @return the class file, or null if no plugin of this loader provides the class.
+     */
+    @Nullable
+    byte[] findClassFile(@NotNull String name) throws IOException {
+
+        SimplePluginClassLoader[] owners = packageOwners.get(getPackageName(name));
+
+        if (owners != null) {
+            for (SimplePluginClassLoader loader : owners) {
+
+                byte[] classFile = loader.readClassFile(name);
+
+                if (classFile != null) {
+                    return classFile;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Gets the number of lookups in the classes of all plugins of this loader that found a class.
+     */
+    public long getLookupHitCount() {
+        return lookupHits.sum();
+    }
+
+    /**
+     * Gets the number of lookups in the classes of all plugins of this loader that found nothing.
+     */
+    public long getLookupMissCount() {
+        return lookupMisses.sum();
+    }
+
+    /**
+     * Gets the number of plugins whose jar contains the package of the given class name.
+     * This is the number of jar indexes {@link #getClassByName(String)} checks when the class has not been loaded yet.
+     */
+    int getPackageOwnerCount(@NotNull String name) {
+        SimplePluginClassLoader[] owners = packageOwners.get(getPackageName(name));
+        return owners == null ? 0 : owners.length;
+    }
+
+    /**
+     * Gets the cache of class names that no plugin of this loader provides.
+     */
+    @NotNull
+    public NegativeLookupCache getNegativeLookupCache() {
+        return negativeLookupCache;
+    }
+
+    /**
+     * Returns the package of the given binary class name, or an empty string for the default package.
+     */
+    @NotNull
+    static String getPackageName(@NotNull String className) {
+        int dot = className.lastIndexOf('.');
+        return dot == -1 ? "" : className.substring(0, dot);
+    }
+
     void setClass(@NotNull final String name, @NotNull final Class<?> clazz) {
-        if (!classes.containsKey(name)) {
-            classes.put(name, clazz);
+        if (classes.putIfAbsent(name, clazz) == null) {
+
+            // the class loader may have been closed, and its classes purged, while it defined the class.
+            ClassLoader classLoader = clazz.getClassLoader();
+
+            if (classLoader instanceof SimplePluginClassLoader && ((SimplePluginClassLoader) classLoader).isClosed()) {
+                classes.remove(name, clazz);
+                return;
+            }
 
             /*
             if (ConfigurationSerializable.class.isAssignableFrom(clazz)) {
@@ -1,5 +1,8 @@
 package com.jayfella.plugin.manager;
 
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import com.jayfella.plugin.manager.cache.PluginDescriptionCache;
 import com.jayfella.plugin.manager.exception.DependencyNotFoundException;
 import com.jayfella.plugin.manager.exception.InvalidPluginDescriptionException;
 import com.jayfella.plugin.manager.exception.InvalidPluginException;
@@ -11,188 +14,1761 @@ import org.apache.commons.io.FilenameUtils;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import javax.management.JMException;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Constructor;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
 
 public class SimplePluginManager implements PluginManager {
 
     private static final Logger log = Logger.getLogger("Plugin Manager");
 
-    private final Map<String, PluginLoader> pluginLoaders = new HashMap<>();
-    private final List<Plugin> plugins = new ArrayList<>();
-    private long pluginsNotLoadedCount = 0;
+    // replaced as a whole when an interface is registered, so lookups never lock.
+    private volatile Map<String, PluginLoader> pluginLoaders = Collections.emptyMap();
+    private final PluginRegistry plugins = new PluginRegistry();
+    private final AtomicLong pluginsNotLoadedCount = new AtomicLong();
+
+    // lazy plugins that have not been activated yet, by id.
+    private final Map<String, PluginStub> stubs = new LinkedHashMap<>();
+    // package name -> the lazy plugin that is activated when a class in that package or below it is looked up.
+    private final Map<String, PluginStub> stubPackages = new ConcurrentHashMap<>();
+    private final Set<String> activating = new HashSet<>();
+    private volatile boolean pluginsEnabled = false;
+
+    // A plugin is never enabled while the lock of this plugin manager is held, because its onEnable may need the lock
+    // from another thread. Plugins activated, added or reloaded under the lock are queued here and enabled once it has
+    // been released, see enablePending. Both are guarded by the lock.
+    private final List<Plugin> pendingEnables = new ArrayList<>();
+    // plugin -> the thread that is enabling it. Other threads wait on the lock until it has finished.
+    private final Map<Plugin, Thread> enabling = new IdentityHashMap<>();
+
+    private final ClassLoaderLeakDetector leakDetector = new ClassLoaderLeakDetector();
+
+    // plugins that were rejected because a dependency is missing, by id. They are retried when plugins are added.
+    private final Map<String, PluginStub> rejected = new LinkedHashMap<>();
+
+    private PluginDirectoryWatcher watcher;
+    private long watchDebounceNanos = TimeUnit.SECONDS.toNanos(1);
+
+    private ExecutorService discoveryExecutor;
+    private ExecutorService enableExecutor;
+    private ExecutorService preloadExecutor;
+
+    private boolean descriptionCacheEnabled = false;
+    private boolean descriptionCacheHashContent = false;
+    private PluginDescriptionCache descriptionCache;
 
     private final ClassSerializer classSerializer = new ClassSerializer();
 
-    public SimplePluginManager() {
+    // absolute jar -> the verified signers of its classes. Only signed jars are present.
+    private final Map<File, JarSignatures> jarSignatures = new ConcurrentHashMap<>();
+    private volatile boolean signatureCacheEnabled = false;
+
+    // plugin id -> how long starting it took. Only filled while timings are enabled.
+    private final Map<String, PluginTimings> timings = new ConcurrentHashMap<>();
+    private volatile boolean timingsEnabled = false;
+
+    // the number of plugins listed by the timings summary at the end of enablePlugins.
+    private static final int TIMINGS_SUMMARY_SIZE = 10;
+
+    // null unless MBeans are registered.
+    private volatile PluginManagement management;
+
+    public SimplePluginManager() {
+    }
+
+    @Override
+    public void registerInterface(@NotNull Class<? extends PluginLoader> loader) {
+
+        PluginLoader instance;
+
+        if (PluginLoader.class.isAssignableFrom(loader)) {
+            Constructor<? extends PluginLoader> constructor;
+
+            try {
+                constructor = loader.getConstructor();
+                instance = constructor.newInstance();
+            } catch (NoSuchMethodException ex) {
+                String className = loader.getName();
+
+                throw new IllegalArgumentException(String.format("Class %s does not have a public %s(PluginSystem) constructor", className, className), ex);
+            } catch (Exception ex) {
+                throw new IllegalArgumentException(String.format("Unexpected exception %s while attempting to construct a new instance of %s", ex.getClass().getName(), loader.getName()), ex);
+            }
+        } else {
+            throw new IllegalArgumentException(String.format("Class %s does not implement interface PluginLoader", loader.getName()));
+        }
+
+        synchronized (this) {
+            Map<String, PluginLoader> loaders = new HashMap<>(pluginLoaders);
+            loaders.put(instance.getTypeName(), instance);
+            pluginLoaders = Collections.unmodifiableMap(loaders);
+        }
+
+        log.info("Registered Interface: " + loader.getSimpleName());
+    }
+
+    @Override
+    public @NotNull Logger getLogger() {
+        return log;
+    }
+
+    /**
+     * Loads the given plugin file. A lazy plugin is registered as a stub and is only constructed when it is first
+     * needed, so null is returned for it.
+     *
+     * @return the plugin, or null if the file is not a plugin archive or the plugin is lazy.
+     */
+    @Override
+    @Nullable
+    public Plugin loadPlugin(@Nullable File file) throws InvalidPluginException, InvalidPluginDescriptionException, NullPointerException {
+
+        PluginDescription description = readPluginDescription(file);
+
+        if (description == null) {
+            return null;
+        }
+
+        return loadPlugin(file, description);
+    }
+
+    /**
+     * Reads and validates the description of the given plugin file, and verifies the jar if it is signed.
+     * The state this method touches, the description cache, the verified signatures, the plugin registry and the
+     * timings, is thread safe, so it can be called from the discovery executor.
+     *
+     * @return the description of the plugin, or null if the file is not a plugin archive.
+     */
+    @Nullable
+    private PluginDescription readPluginDescription(@Nullable File file) throws InvalidPluginException, InvalidPluginDescriptionException, NullPointerException {
+
+        if (file == null) {
+            throw new NullPointerException("File cannot be null.");
+        } else if (!file.exists()) {
+            throw new InvalidPluginException(new FileNotFoundException("Plugin " + file.getPath() + " does not exist."));
+        }
+
+        boolean isJar = FilenameUtils.isExtension(file.getName(), "jar");
+
+        if (!isJar) {
+            return null;
+        }
+
+        long start = System.nanoTime();
+
+        // Get the description so we can determine what type of plugin it is.
+        // This will allow us to determine which pluginLoader we need.
+
+        PluginDescription description = getPluginDescription(file);
+
+        description.validate();
+
+        // a jar that has not changed since its description was cached is known to be signed or not without opening
+        // it, and its stored signatures can be trusted without hashing it.
+        PluginDescriptionCache cache = descriptionCacheEnabled ? descriptionCache : null;
+        Boolean cachedSigned = cache != null ? cache.isSigned(file) : null;
+
+        // verify signed jars here, on the discovery executor when there is one, so class loading never has to.
+        try {
+
+            boolean signed = cachedSigned != null ? cachedSigned : JarSignatures.isSigned(file);
+
+            if (cachedSigned == null && cache != null) {
+                cache.setSigned(file, signed);
+            }
+
+            if (signed && getJarSignatures(file, cachedSigned != null) == null) {
+                throw new InvalidPluginException("The signatures of " + file.getPath() + " could not be verified.");
+            }
+
+        } catch (IOException e) {
+            throw new InvalidPluginException(e);
+        }
+
+        // a jar whose plugin is already loaded is rejected later on, and must not replace the timings of that plugin.
+        if (timingsEnabled && findPlugin(description.getId()) == null) {
+            PluginTimings pluginTimings = new PluginTimings(description.getId());
+            pluginTimings.setDescriptionNanos(System.nanoTime() - start);
+            timings.put(description.getId(), pluginTimings);
+        }
+
+        return description;
+    }
+
+    /**
+     * Sets whether the time each plugin takes to start is measured, see {@link #getPluginTimings(String)}. When
+     * enabled, {@link #enablePlugins()} logs the slowest plugins once they are all enabled. Only plugins that are read
+     * after this call are measured. The time of each class transformer is measured separately, see
+     * {@link ClassSerializer#setTransformerTimingsEnabled(boolean)}.
+     *
+     * @param enabled whether plugin timings are measured.
+     */
+    public void setTimingsEnabled(boolean enabled) {
+        this.timingsEnabled = enabled;
+    }
+
+    public boolean isTimingsEnabled() {
+        return timingsEnabled;
+    }
+
+    /**
+     * Gets the timings of the plugin with the given id. The timings of a plugin that failed to start are kept until
+     * it is loaded again, so they show how far it got.
+     *
+     * @return the timings, or null if the plugin was not measured.
+     */
+    @Override
+    public @Nullable PluginTimings getPluginTimings(String id) {
+        return id == null ? null : timings.get(id);
+    }
+
+    /**
+     * Gets the timings of every loaded plugin that was measured, in load order.
+     */
+    @Override
+    public @NotNull PluginTimings[] getPluginTimings() {
+
+        List<PluginTimings> loaded = new ArrayList<>();
+
+        for (Plugin plugin : plugins.getPlugins()) {
+
+            PluginTimings pluginTimings = timings.get(plugin.getDescription().getId());
+
+            if (pluginTimings != null) {
+                loaded.add(pluginTimings);
+            }
+        }
+
+        return loaded.toArray(new PluginTimings[0]);
+    }
+
+    /**
+     * Gets the timings to record the start of the given plugin in.
+     *
+     * @return the timings, or null if timings are not enabled.
+     */
+    @Nullable
+    PluginTimings getTimingsFor(@NotNull String id) {
+        return timingsEnabled ? timings.computeIfAbsent(id, PluginTimings::new) : null;
+    }
+
+    /**
+     * Logs the plugins that took the longest to start, slowest first. Every plugin is listed at {@link Level#FINE}.
+     */
+    private void logTimingsSummary() {
+
+        PluginTimings[] sorted = getPluginTimings();
+
+        if (sorted.length == 0) {
+            return;
+        }
+
+        Arrays.sort(sorted, Comparator.comparingLong(PluginTimings::getTotalNanos).reversed());
+
+        long totalNanos = 0;
+        long classesDefined = 0;
+        long bytesRead = 0;
+
+        for (PluginTimings pluginTimings : sorted) {
+            totalNanos += pluginTimings.getTotalNanos();
+            classesDefined += pluginTimings.getClassesDefined();
+            bytesRead += pluginTimings.getBytesRead();
+        }
+
+        int listed = log.isLoggable(Level.FINE) ? sorted.length : Math.min(TIMINGS_SUMMARY_SIZE, sorted.length);
+
+        StringBuilder message = new StringBuilder(String.format("Started %d plugins in %.2f ms of plugin time (%d classes, %d KB). %s:",
+                sorted.length, totalNanos / 1e6, classesDefined, bytesRead / 1024,
+                listed == sorted.length ? "Slowest first" : "Slowest " + listed));
+
+        for (int i = 0; i < listed; i++) {
+            message.append(System.lineSeparator()).append("    ").append(sorted[i]);
+        }
+
+        log.info(message.toString());
+    }
+
+    /**
+     * Sets whether the verified signatures of signed jars are stored on disk between runs. When enabled, the result of
+     * verifying a jar is stored in a {@code <plugins>.signatures} directory next to the plugins directory, and an
+     * unchanged jar is not verified again on the next start. The stored results are only trusted while the SHA-256 of
+     * the jar matches, but anyone who can write that directory can vouch for a jar, so it must be protected like the
+     * plugins directory itself.
+     *
+     * @param enabled whether verified signatures are stored.
+     */
+    public void setSignatureCacheEnabled(boolean enabled) {
+        this.signatureCacheEnabled = enabled;
+    }
+
+    public boolean isSignatureCacheEnabled() {
+        return signatureCacheEnabled;
+    }
+
+    /**
+     * Gets the verified signers of every class in the given signed jar, verifying it if it has not been verified
+     * since it last changed.
+     *
+     * @return the signatures, or null if they could not be verified.
+     */
+    @Nullable
+    JarSignatures getJarSignatures(@NotNull File file) {
+        return getJarSignatures(file, false);
+    }
+
+    /**
+     * Gets the verified signers of every class in the given signed jar.
+     *
+     * @param unchanged whether the jar is known to be unchanged since it was last read, in which case the stored
+     *                  signatures are trusted while its size and modification time match, instead of hashing it. The
+     *                  class loader still checks each class against its digest.
+     * @return the signatures, or null if they could not be verified.
+     */
+    @Nullable
+    private JarSignatures getJarSignatures(@NotNull File file, boolean unchanged) {
+
+        File key = file.getAbsoluteFile();
+        JarSignatures signatures = jarSignatures.get(key);
+
+        if (signatures != null && signatures.matches(file)) {
+            return signatures;
+        }
+
+        // ./plugins/a.jar is stored in ./plugins.signatures/a.jar.json
+        File directory = key.getParentFile();
+        File cacheFile = new File(new File(directory.getParentFile(), directory.getName() + ".signatures"), key.getName() + ".json");
+
+        try {
+
+            if (unchanged && signatureCacheEnabled) {
+                try {
+                    signatures = JarSignatures.load(cacheFile, file, null);
+                } catch (IOException e) {
+                    log.log(Level.FINE, "Ignoring stored signatures " + cacheFile.getPath(), e);
+                }
+
+                if (signatures != null) {
+                    jarSignatures.put(key, signatures);
+                    return signatures;
+                }
+            }
+
+            String hash = Files.asByteSource(file).hash(Hashing.sha256()).toString();
+
+            if (signatureCacheEnabled) {
+                try {
+                    signatures = JarSignatures.load(cacheFile, file, hash);
+                } catch (IOException e) {
+                    log.log(Level.FINE, "Ignoring stored signatures " + cacheFile.getPath(), e);
+                }
+            }
+
+            if (signatures == null) {
+
+                long start = System.nanoTime();
+                signatures = JarSignatures.verify(file, hash);
+
+                log.fine(String.format("Verified %s in %d ms", file.getName(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+
+                if (signatureCacheEnabled) {
+                    try {
+                        signatures.save(cacheFile);
+                    } catch (IOException e) {
+                        log.log(Level.WARNING, "Unable to store the signatures of " + file.getPath(), e);
+                    }
+                }
+            }
+
+        } catch (IOException | SecurityException e) {
+            log.log(Level.WARNING, "Unable to verify the signatures of " + file.getPath(), e);
+            jarSignatures.remove(key);
+            return null;
+        }
+
+        jarSignatures.put(key, signatures);
+        return signatures;
+    }
+
+    @Nullable
+    private Plugin loadPlugin(@NotNull File file, @NotNull PluginDescription description) throws InvalidPluginException, InvalidPluginDescriptionException {
+
+        PluginLoader pluginLoader = getPluginLoader(description);
+
+        if (description.isLazy()) {
+            registerStub(new PluginStub(file, description, pluginLoader));
+            return null;
+        }
+
+        return pluginLoader.loadPlugin(this, file, description);
+    }
+
+    @NotNull
+    private PluginLoader getPluginLoader(@NotNull PluginDescription description) throws InvalidPluginDescriptionException {
+
+        PluginLoader pluginLoader = pluginLoaders.get(description.getType());
+
+        if (description.getType() == null || description.getType().trim().isEmpty()) {
+            throw new InvalidPluginDescriptionException("No 'type' property set in plugin.json");
+        }
+
+        if (pluginLoader == null) {
+            throw new InvalidPluginDescriptionException("Unknown type '" + description.getType() + "' in plugin.json");
+        }
+
+        return pluginLoader;
+    }
+
+    private synchronized void registerStub(@NotNull PluginStub stub) {
+
+        PluginDescription description = stub.description;
+
+        stubs.put(description.getId(), stub);
+
+        List<String> packageNames = description.getActivationPackages();
+
+        if (packageNames == null || packageNames.isEmpty()) {
+            packageNames = Collections.singletonList(SimplePluginLoader.getPackageName(description.getMain()));
+        }
+
+        for (String packageName : packageNames) {
+
+            // a plugin in the default package would be activated by every lookup that misses.
+            if (!packageName.isEmpty()) {
+                stubPackages.put(packageName, stub);
+            }
+        }
+
+        // classes that were absent so far may be provided by this plugin once it is activated.
+        if (stub.pluginLoader instanceof SimplePluginLoader) {
+            ((SimplePluginLoader) stub.pluginLoader).getNegativeLookupCache().invalidate();
+        }
+
+        log.info("Registered lazy plugin " + description.getId());
+    }
+
+    private void removeStub(@NotNull PluginStub stub) {
+
+        stubs.remove(stub.description.getId());
+        stubPackages.values().removeIf(value -> value == stub);
+    }
+
+    /**
+     * Activates the given lazy plugin: its dependencies are activated first, then its class loader and instance are
+     * created and it is loaded. If plugins have already been enabled, it is enabled as well, once the lock of this
+     * plugin manager has been released.
+     *
+     * @param id the id of the plugin.
+     * @return the plugin, or null if no such plugin exists or it could not be activated.
+     */
+    @Override
+    @Nullable
+    public Plugin activatePlugin(String id) {
+
+        Plugin plugin;
+
+        synchronized (this) {
+
+            plugin = findPlugin(id);
+
+            if (plugin == null) {
+                PluginStub stub = stubs.get(id);
+                plugin = stub == null ? null : activate(stub);
+            }
+        }
+
+        enablePending();
+        return plugin;
+    }
+
+    /**
+     * Activates the lazy plugin that provides the package of the given class, if any.
+     *
+     * @return true if a plugin was activated.
+     */
+    boolean activateProviderOf(@NotNull String className) {
+
+        if (stubPackages.isEmpty()) {
+            return false;
+        }
+
+        String packageName = SimplePluginLoader.getPackageName(className);
+
+        while (!packageName.isEmpty()) {
+
+            PluginStub stub = stubPackages.get(packageName);
+
+            if (stub != null) {
+
+                boolean activated;
+
+                synchronized (this) {
+                    // another thread may have activated it while we were waiting.
+                    activated = stubs.get(stub.description.getId()) == stub && activate(stub) != null;
+                }
+
+                enablePending();
+                return activated;
+            }
+
+            int dot = packageName.lastIndexOf('.');
+            packageName = dot == -1 ? "" : packageName.substring(0, dot);
+        }
+
+        return false;
+    }
+
+    /**
+     * Activates the lazy plugins that asked to be activated together with the given plugin.
+     */
+    private void activateTriggeredBy(@NotNull String id) {
+
+        synchronized (this) {
+
+            for (PluginStub stub : new ArrayList<>(stubs.values())) {
+
+                List<String> activateWith = stub.description.getActivateWith();
+
+                if (activateWith != null && activateWith.contains(id) && stubs.get(stub.description.getId()) == stub) {
+                    activate(stub);
+                }
+            }
+        }
+
+        enablePending();
+    }
+
+    @Nullable
+    private Plugin activate(@NotNull PluginStub stub) {
+
+        PluginDescription description = stub.description;
+        String id = description.getId();
+
+        // the stub is removed first so lookups made while the plugin is constructed do not activate it again.
+        removeStub(stub);
+        activating.add(id);
+
+        try {
+
+            for (String dependency : description.getDependencies()) {
+
+                if (activating.contains(dependency)) {
+                    log.warning("Unable to activate plugin '" + id + "' - it depends on '" + dependency + "', which depends on it.");
+                    pluginsNotLoadedCount.incrementAndGet();
+                    return null;
+                }
+
+                if (activatePlugin(dependency) == null) {
+                    log.warning("Plugin '" + id + "' has been unloaded because it depends on a plugin that does not exist or could not be activated: [ " + dependency + " ]");
+                    pluginsNotLoadedCount.incrementAndGet();
+                    return null;
+                }
+            }
+
+            Plugin plugin;
+
+            try {
+
+                plugin = stub.pluginLoader.loadPlugin(this, stub.file, description);
+
+                if (plugin == null) {
+                    return null;
+                }
+
+                log.info("Activating " + id);
+                callOnLoad(plugin);
+
+            } catch (Throwable e) {
+                log.log(Level.WARNING, "Unable to activate plugin '" + stub.file.getPath() + "' - " + e.getMessage(), e);
+                pluginsNotLoadedCount.incrementAndGet();
+                return null;
+            }
+
+            // its dependencies are already registered, so appending keeps the plugins in load order.
+            plugins.add(plugin);
+
+            if (pluginsEnabled) {
+
+                for (Plugin dependency : plugin.getDependencies()) {
+                    if (dependency != null) {
+                        pendingEnables.add(dependency);
+                    }
+                }
+
+                pendingEnables.add(plugin);
+            }
+
+            return plugin;
+
+        } finally {
+            activating.remove(id);
+        }
+    }
+
+    /**
+     * Gets the ids of the lazy plugins that have not been activated yet.
+     */
+    @NotNull
+    public synchronized String[] getInactivePlugins() {
+        return stubs.keySet().toArray(new String[0]);
+    }
+
+    @Nullable
+    private Plugin loadPlugin(@NotNull File file, @NotNull Future<PluginDescription> pendingDescription) throws InvalidPluginException, InvalidPluginDescriptionException {
+
+        PluginDescription description;
+
+        try {
+            description = pendingDescription.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InvalidPluginException("Interrupted while reading the description of " + file.getPath(), e);
+        } catch (ExecutionException e) {
+
+            // re-throw the original exception so the parallel path reports failures exactly like the serial path.
+            Throwable cause = e.getCause();
+
+            if (cause instanceof InvalidPluginDescriptionException) {
+                throw (InvalidPluginDescriptionException) cause;
+            } else if (cause instanceof InvalidPluginException) {
+                throw (InvalidPluginException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+
+            throw new InvalidPluginException(cause);
+        }
+
+        if (description == null) {
+            return null;
+        }
+
+        return loadPlugin(file, description);
+    }
+
+    /**
+     * Sets the executor used to open and parse plugin descriptions in parallel during {@link #loadPlugins(File)}.
+     * Descriptions are read concurrently, but plugins are still constructed and registered on the calling thread
+     * in the same order as the serial path. The executor is not shut down by the plugin manager.
+     *
+     * @param executor the executor to read descriptions with, or null to read them on the calling thread.
+     */
+    public void setDiscoveryExecutor(@Nullable ExecutorService executor) {
+        this.discoveryExecutor = executor;
+    }
+
+    @Nullable
+    public ExecutorService getDiscoveryExecutor() {
+        return discoveryExecutor;
+    }
+
+    /**
+     * Sets whether plugin descriptions are cached on disk between runs.
+     * When enabled, {@link #loadPlugins(File)} stores the descriptions of the directory in a cache file next to it
+     * and only opens jars that have been added or changed since the cache was written.
+     *
+     * @param enabled whether the description cache is used.
+     */
+    public void setDescriptionCacheEnabled(boolean enabled) {
+        this.descriptionCacheEnabled = enabled;
+
+        if (!enabled) {
+            descriptionCache = null;
+        }
+    }
+
+    public boolean isDescriptionCacheEnabled() {
+        return descriptionCacheEnabled;
+    }
+
+    /**
+     * Sets whether the description cache hashes the content of each jar in addition to comparing its size and
+     * last-modified time, see {@link PluginDescriptionCache#setHashContent(boolean)}. Hashing detects a jar that was
+     * replaced without changing its size or timestamp, at the cost of reading every jar on every start.
+     *
+     * @param hashContent whether the content of each jar is hashed.
+     */
+    public void setDescriptionCacheHashContent(boolean hashContent) {
+        this.descriptionCacheHashContent = hashContent;
+
+        PluginDescriptionCache cache = descriptionCache;
+
+        if (cache != null) {
+            cache.setHashContent(hashContent);
+        }
+    }
+
+    public boolean isDescriptionCacheHashContent() {
+        return descriptionCacheHashContent;
+    }
+
+    /**
+     * Discards the description cache of the given plugins directory and rebuilds it by reading every jar.
+     * Jars that do not contain a valid description are skipped.
+     *
+     * @param directory the plugins directory.
+     * @throws IOException if the cache could not be written.
+     */
+    public void rebuildDescriptionCache(@NotNull File directory) throws IOException {
+
+        PluginDescriptionCache cache = getDescriptionCache(directory);
+        cache.clear();
+
+        File[] pluginFiles = directory.listFiles();
+
+        if (pluginFiles != null) {
+            for (File pluginFile : pluginFiles) {
+
+                if (!FilenameUtils.isExtension(pluginFile.getName(), "jar")) {
+                    continue;
+                }
+
+                try {
+                    cache.put(pluginFile, parsePluginDescription(pluginFile));
+                } catch (InvalidPluginDescriptionException e) {
+                    log.warning("Unable to cache the description of '" + pluginFile.getPath() + "' - " + e.getMessage());
+                }
+            }
+        }
+
+        cache.save();
+    }
+
+    @NotNull
+    private PluginDescriptionCache getDescriptionCache(@NotNull File directory) {
+
+        PluginDescriptionCache cache = PluginDescriptionCache.forDirectory(directory);
+
+        if (descriptionCache == null || !descriptionCache.getCacheFile().equals(cache.getCacheFile())) {
+            cache.setHashContent(descriptionCacheHashContent);
+            cache.load();
+            descriptionCache = cache;
+        }
+
+        return descriptionCache;
+    }
+
+    @Override
+    public Plugin[] loadPlugins(File directory) {
+
+        Plugin[] loaded = loadPluginsIn(directory);
+
+        // plugins that were activated by the plugins we loaded, if plugins have been enabled.
+        enablePending();
+        return loaded;
+    }
+
+    private synchronized Plugin[] loadPluginsIn(File directory) {
+
+        List<Plugin> loadedPlugins = new ArrayList<>();
+
+        File[] pluginFiles = directory.listFiles();
+
+        if (descriptionCacheEnabled) {
+            getDescriptionCache(directory);
+        }
+
+        // Read the descriptions ahead of time if we have been given an executor.
+        // The results are consumed in directory order below, so the outcome is identical to the serial path.
+        List<Future<PluginDescription>> descriptions = null;
+        ExecutorService executor = discoveryExecutor;
+
+        if (executor != null) {
+
+            descriptions = new ArrayList<>(pluginFiles.length);
+
+            for (File pluginFile : pluginFiles) {
+                descriptions.add(executor.submit(() -> readPluginDescription(pluginFile)));
+            }
+
+        }
+
+        for (int i = 0; i < pluginFiles.length; i++) {
+
+            File pluginFile = pluginFiles[i];
+
+            try {
+
+                Plugin plugin = descriptions == null
+                        ? loadPlugin(pluginFile)
+                        : loadPlugin(pluginFile, descriptions.get(i));
+
+                if (plugin != null) {
+
+                    log.info("Loading " + plugin.getDescription().getId());
+                    callOnLoad(plugin);
+
+                    loadedPlugins.add(plugin);
+                }
+
+            } catch (Throwable e) {
+                log.log(Level.WARNING, "Unable to load plugin '" + pluginFile.getPath() + "' - " + (e.getCause() != null ? e.getCause().getMessage() : e.getMessage()), e);
+                pluginsNotLoadedCount.incrementAndGet();
+            }
+
+        }
+
+        if (descriptionCacheEnabled) {
+
+            descriptionCache.retain(Arrays.asList(pluginFiles));
+
+            try {
+                descriptionCache.save();
+            } catch (IOException e) {
+                log.log(Level.WARNING, "Unable to write plugin description cache '" + descriptionCache.getCacheFile().getPath() + "'", e);
+            }
+        }
+
+        // At this point the plugin has passed all checks and is considered a valid plugin.
+        // It may still be removed if it depends on plugins that do not exist.
+        plugins.addAll(loadedPlugins);
+
+        // a lazy plugin that an eager plugin depends on is needed right away.
+        for (Plugin plugin : loadedPlugins) {
+            for (String dependency : plugin.getDescription().getDependencies()) {
+                activatePlugin(dependency);
+            }
+        }
+
+        for (Plugin plugin : plugins.toArray()) {
+
+            // check for softDependencies
+            // this only gives the user a log warning that functionality may be limited.
+            checkSoftDependencies(plugin);
+
+            // Check for dependencies that don't exist.
+            try {
+                checkDependencies(plugin);
+            } catch (DependencyNotFoundException e) {
+                log.warning(e.getMessage());
+                plugins.remove(plugin);
+                reject(plugin);
+            }
+        }
+
+        // Check for cyclic dependencies
+        // This can potentially terminate the application if cyclic dependencies exist.
+        // The user must resolve the issue or remove the offending plugin.
+        plugins.setOrder(PluginSorter.sort(plugins.getPlugins()));
+
+        return loadedPlugins.toArray(new Plugin[0]);
+    }
+
+    /**
+     * Remembers a plugin whose dependencies are missing so it can be added once they appear, and releases its class
+     * loader in the meantime.
+     */
+    private void reject(@NotNull Plugin plugin) {
+
+        rejected.put(plugin.getDescription().getId(), new PluginStub(plugin.getFile(), plugin.getDescription(), plugin.getPluginLoader()));
+
+        try {
+            runCallback(plugin, "onUnload", plugin::onUnload);
+            plugin.getPluginLoader().unloadPlugin(plugin);
+        } catch (Throwable ex) {
+            log.log(Level.WARNING, "Error occurred while releasing rejected plugin " + plugin.getDescription().getFullName(), ex);
+        }
+    }
+
+    /**
+     * Adds the given plugin files to the running plugin manager without rescanning or re-sorting the plugins that are
+     * already loaded. Plugins that were rejected earlier because of missing dependencies are retried along with them.
+     * Each plugin is loaded once all of its dependencies are present, so it is appended after them and the load order
+     * stays valid. If plugins have already been enabled, the new plugins are enabled too. Plugins whose dependencies
+     * are still missing are kept for the next call.
+     *
+     * @param files the plugin files to add. Files of plugins that are already known are skipped.
+     * @return the plugins that were loaded, in the order they were loaded.
+     */
+    public @NotNull Plugin[] addPlugins(@NotNull Collection<File> files) {
+
+        Plugin[] added = addPluginFiles(files);
+
+        enablePending();
+        return added;
+    }
+
+    private synchronized @NotNull Plugin[] addPluginFiles(@NotNull Collection<File> files) {
+
+        Map<String, PluginStub> candidates = new LinkedHashMap<>(rejected);
+        rejected.clear();
+
+        for (File file : files) {
+
+            if (isKnownFile(file) || candidates.values().stream().anyMatch(candidate -> candidate.file.equals(file))) {
+                continue;
+            }
+
+            try {
+
+                PluginDescription description = readPluginDescription(file);
+
+                if (description == null) {
+                    continue;
+                }
+
+                String id = description.getId();
+
+                if (findPlugin(id) != null || stubs.containsKey(id) || candidates.containsKey(id)) {
+                    log.warning("Ignoring '" + file.getPath() + "' because a plugin with the id '" + id + "' is already loaded.");
+                    continue;
+                }
+
+                candidates.put(id, new PluginStub(file, description, getPluginLoader(description)));
+
+            } catch (Throwable e) {
+                log.log(Level.WARNING, "Unable to load plugin '" + file.getPath() + "' - " + e.getMessage(), e);
+                pluginsNotLoadedCount.incrementAndGet();
+            }
+        }
+
+        List<Plugin> added = new ArrayList<>();
+
+        PluginStub next;
+
+        // prefer plugins whose soft dependencies are not waiting to be added, but do not let a soft cycle block them.
+        while ((next = findSatisfied(candidates, true)) != null || (next = findSatisfied(candidates, false)) != null) {
+
+            candidates.remove(next.description.getId());
+
+            Plugin plugin = addPlugin(next);
+
+            if (plugin != null) {
+                added.add(plugin);
+            }
+        }
+
+        for (PluginStub candidate : candidates.values()) {
+
+            List<String> missing = new ArrayList<>();
+
+            for (String dependency : candidate.description.getDependencies()) {
+                if (findPlugin(dependency) == null && !stubs.containsKey(dependency)) {
+                    missing.add(dependency);
+                }
+            }
+
+            log.warning("Plugin '" + candidate.description.getId() + "' is waiting for plugins that do not exist: [ " + String.join(", ", missing) + " ]");
+            rejected.put(candidate.description.getId(), candidate);
+        }
+
+        return added.toArray(new Plugin[0]);
+    }
+
+    private boolean isKnownFile(@NotNull File file) {
+
+        for (Plugin plugin : plugins.getPlugins()) {
+            if (plugin.getFile().equals(file)) {
+                return true;
+            }
+        }
+
+        for (PluginStub stub : stubs.values()) {
+            if (stub.file.equals(file)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Finds a candidate whose dependencies have all been loaded or registered as lazy plugins.
+     *
+     * @param waitForSoftDependencies whether a candidate must also wait for soft dependencies that are candidates.
+     */
+    @Nullable
+    private PluginStub findSatisfied(@NotNull Map<String, PluginStub> candidates, boolean waitForSoftDependencies) {
+
+        for (PluginStub candidate : candidates.values()) {
+
+            boolean satisfied = candidate.description.getDependencies().stream()
+                    .allMatch(dependency -> findPlugin(dependency) != null || stubs.containsKey(dependency));
+
+            if (satisfied && waitForSoftDependencies) {
+                satisfied = candidate.description.getSoftDependencies().stream()
+                        .noneMatch(candidates::containsKey);
+            }
+
+            if (satisfied) {
+                return candidate;
+            }
+        }
+
+        return null;
+    }
+
+    @Nullable
+    private Plugin addPlugin(@NotNull PluginStub candidate) {
+
+        PluginDescription description = candidate.description;
+
+        if (description.isLazy()) {
+            registerStub(candidate);
+            return null;
+        }
+
+        for (String dependency : description.getDependencies()) {
+            activatePlugin(dependency);
+        }
+
+        Plugin plugin = constructPlugin(candidate);
+
+        if (plugin == null) {
+            return null;
+        }
+
+        plugins.add(plugin);
+
+        if (pluginsEnabled) {
+            pendingEnables.add(plugin);
+        }
+
+        return plugin;
+    }
+
+    /**
+     * Creates the class loader and instance of the given plugin and calls onLoad. The plugin is not registered.
+     *
+     * @return the plugin, or null if it could not be loaded.
+     */
+    @Nullable
+    private Plugin constructPlugin(@NotNull PluginStub candidate) {
+
+        try {
+
+            Plugin plugin = candidate.pluginLoader.loadPlugin(this, candidate.file, candidate.description);
+
+            if (plugin != null) {
+                log.info("Loading " + candidate.description.getId());
+                callOnLoad(plugin);
+            }
+
+            return plugin;
+
+        } catch (Throwable e) {
+            log.log(Level.WARNING, "Unable to load plugin '" + candidate.file.getPath() + "' - " + e.getMessage(), e);
+            pluginsNotLoadedCount.incrementAndGet();
+            return null;
+        }
+    }
+
+    private void callOnLoad(@NotNull Plugin plugin) {
+
+        PluginTimings pluginTimings = getTimingsFor(plugin.getDescription().getId());
+        long start = System.nanoTime();
+
+        runCallback(plugin, "onLoad", plugin::onLoad);
+
+        if (pluginTimings != null) {
+            pluginTimings.setLoadNanos(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Calls a lifecycle callback of the given plugin, recording it as a flight recorder event if one is being recorded.
+     * Anything the callback throws is passed on.
+     */
+    private static void runCallback(@NotNull Plugin plugin, @NotNull String callback, @NotNull Runnable call) {
+
+        PluginLifecycleEvent event = FlightRecorderSupport.AVAILABLE ? PluginLifecycleEvent.start() : null;
+        boolean succeeded = false;
+
+        try {
+            call.run();
+            succeeded = true;
+        } finally {
+            if (event != null) {
+                event.finish(plugin.getDescription().getId(), callback, succeeded);
+            }
+        }
+    }
+
+    /**
+     * Gets the ids of the plugins that are waiting for dependencies that do not exist yet.
+     */
+    @NotNull
+    public synchronized String[] getRejectedPlugins() {
+        return rejected.keySet().toArray(new String[0]);
+    }
+
+    /**
+     * Sets how long a new jar in a watched directory must stay unchanged before it is added.
+     * Only applies to directories watched after this call.
+     */
+    public void setWatchDebounce(long duration, @NotNull TimeUnit unit) {
+        this.watchDebounceNanos = unit.toNanos(duration);
+    }
+
+    public long getWatchDebounce(@NotNull TimeUnit unit) {
+        return unit.convert(watchDebounceNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Starts watching the given plugins directory. Jars that are copied into it are added with
+     * {@link #addPlugins(Collection)} once they have finished being written. Replaced and deleted jars are ignored.
+     * Only one directory is watched at a time.
+     *
+     * @param directory the plugins directory.
+     * @throws IOException if the directory cannot be watched.
+     */
+    public void startWatching(@NotNull File directory) throws IOException {
+
+        stopWatching();
+
+        synchronized (this) {
+            watcher = new PluginDirectoryWatcher(this, directory, watchDebounceNanos, TimeUnit.NANOSECONDS);
+            watcher.start();
+        }
+
+        log.info("Watching " + directory.getPath() + " for new plugins");
+    }
+
+    /**
+     * Stops watching the plugins directory, if one is being watched.
+     */
+    public void stopWatching() {
+
+        PluginDirectoryWatcher current;
+
+        synchronized (this) {
+            current = watcher;
+            watcher = null;
+        }
+
+        if (current == null) {
+            return;
+        }
+
+        // not synchronized, the watcher thread may be waiting for us to add plugins.
+        try {
+            current.close();
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Unable to stop watching " + current.getDirectory().getPath(), e);
+        }
+    }
+
+    public synchronized boolean isWatching() {
+        return watcher != null;
+    }
+
+    /**
+     * Sets the executor used to enable plugins in parallel during {@link #enablePlugins()}.
+     * Each plugin is enabled as soon as all of its dependencies have been enabled, so plugins that do not depend on
+     * each other are enabled concurrently. The executor is not shut down by the plugin manager and should be bounded.
+     *
+     * @param executor the executor to enable plugins with, or null to enable them one at a time on the calling thread.
+     */
+    public void setEnableExecutor(@Nullable ExecutorService executor) {
+        this.enableExecutor = executor;
+    }
+
+    @Nullable
+    public ExecutorService getEnableExecutor() {
+        return enableExecutor;
+    }
+
+    /**
+     * Sets the executor used to preload plugin classes. When set, the classes each plugin defines until
+     * {@link #enablePlugins()} returns are recorded in a profile next to its data folder. On later starts that profile
+     * is replayed on the executor as soon as the plugin's class loader is created, so classes are already defined when
+     * the plugin asks for them. A profile is discarded when its jar changes. The executor is not shut down by the plugin
+     * manager.
+     *
+     * @param executor the executor to preload classes on, or null to neither record nor replay profiles.
+     */
+    public void setPreloadExecutor(@Nullable ExecutorService executor) {
+        this.preloadExecutor = executor;
+    }
+
+    @Nullable
+    public ExecutorService getPreloadExecutor() {
+        return preloadExecutor;
+    }
+
+    @Override
+    public void enablePlugins() {
+
+        ExecutorService executor = enableExecutor;
+
+        // lazy plugins activated from now on are enabled as soon as they are activated.
+        pluginsEnabled = true;
+
+        if (executor != null) {
+            enablePlugins(executor);
+        } else {
+            for (Plugin plugin : getPlugins()) {
+                enablePlugin(plugin);
+            }
+        }
+
+        // lazy plugins that were activated while plugins were being enabled.
+        enablePending();
+
+        // startup is over, so store the classes each plugin needed to get here.
+        for (Plugin plugin : getPlugins()) {
+            plugin.getPluginClassLoader().finishPreloadProfile();
+        }
+
+        if (timingsEnabled) {
+            logTimingsSummary();
+        }
+
+    }
+
+    private void enablePlugins(@NotNull ExecutorService executor) {
+
+        final List<Plugin> pending = new ArrayList<>();
+
+        for (Plugin plugin : getPlugins()) {
+            if (!plugin.isEnabled()) {
+                pending.add(plugin);
+            }
+        }
+
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        ParallelEnabler enabler = new ParallelEnabler(executor, pending);
+        enabler.start();
+
+        try {
+            enabler.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warning("Interrupted while waiting for plugins to be enabled.");
+        }
+
+    }
+
+    /**
+     * Enables the plugins that were queued while the lock of this plugin manager was held, in the order they were
+     * queued. Does nothing if the calling thread holds the lock, so the outermost call enables them once it has
+     * released it.
+     */
+    private void enablePending() {
+
+        if (Thread.holdsLock(this)) {
+            return;
+        }
+
+        while (true) {
+
+            List<Plugin> queued;
+
+            synchronized (this) {
+
+                if (pendingEnables.isEmpty()) {
+                    return;
+                }
+
+                queued = new ArrayList<>(pendingEnables);
+                pendingEnables.clear();
+            }
+
+            for (Plugin plugin : queued) {
+                enablePlugin(plugin);
+                plugin.getPluginClassLoader().finishPreloadProfile();
+            }
+        }
+    }
+
+    /**
+     * Enables the given plugin. The lock of this plugin manager is only held to claim the plugin, not while it is
+     * enabled, so onEnable can use this plugin manager even while another thread is waiting for the plugin.
+     */
+    private void enablePlugin(@NotNull Plugin plugin) {
+
+        // a lazy plugin may enable its dependencies while the enable executor is enabling them too.
+        synchronized (this) {
+
+            awaitEnabled(Collections.singletonList(plugin));
+
+            // the plugin may have been unloaded while it was queued, or be enabling on this thread already.
+            if (plugin.isEnabled() || enabling.containsKey(plugin) || !plugins.contains(plugin)) {
+                return;
+            }
+
+            enabling.put(plugin, Thread.currentThread());
+        }
+
+        try {
+
+            log.info("Enabling " + plugin.getDescription().getId());
+
+            PluginTimings pluginTimings = getTimingsFor(plugin.getDescription().getId());
+            long start = System.nanoTime();
+
+            runCallback(plugin, "onEnable", plugin::onEnable);
+
+            if (pluginTimings != null) {
+                pluginTimings.setEnableNanos(System.nanoTime() - start);
+            }
+
+            plugins.setEnabled(plugin, true);
+
+        } catch (Throwable ex) {
+            log.warning("Error occurred (in the plugin loader) while enabling " + plugin.getDescription().getFullName() + " (Is it up to date?)");
+            ex.printStackTrace();
+            return;
+        } finally {
+            synchronized (this) {
+                enabling.remove(plugin);
+                notifyAll();
+            }
+        }
+
+        activateTriggeredBy(plugin.getDescription().getId());
+    }
+
+    /**
+     * Waits until no other thread is enabling any of the given plugins. The caller holds the lock of this plugin
+     * manager, which is released while waiting, so the state it guards may have changed when this returns.
+     */
+    private void awaitEnabled(@NotNull Collection<Plugin> waitFor) {
+
+        boolean interrupted = false;
+
+        while (waitFor.stream().anyMatch(this::isEnablingElsewhere)) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
     }
 
-    @Override
-    public void registerInterface(@NotNull Class<? extends PluginLoader> loader) {
+    private boolean isEnablingElsewhere(@NotNull Plugin plugin) {
+        Thread thread = enabling.get(plugin);
+        return thread != null && thread != Thread.currentThread();
+    }
 
-        PluginLoader instance;
+    /**
+     * Gets the given plugin and its dependents, see {@link #getDependents(Plugin)}, once no other thread is enabling
+     * any of them. The caller holds the lock of this plugin manager, so none of them can start enabling until it is
+     * released.
+     *
+     * @return the plugin and its dependents, or null if the plugin was unloaded while waiting.
+     */
+    @Nullable
+    private List<Plugin> awaitDependents(@NotNull Plugin plugin) {
 
-        if (PluginLoader.class.isAssignableFrom(loader)) {
-            Constructor<? extends PluginLoader> constructor;
+        while (plugins.contains(plugin)) {
 
-            try {
-                constructor = loader.getConstructor();
-                instance = constructor.newInstance();
-            } catch (NoSuchMethodException ex) {
-                String className = loader.getName();
+            List<Plugin> dependents = getDependents(plugin);
 
-                throw new IllegalArgumentException(String.format("Class %s does not have a public %s(PluginSystem) constructor", className, className), ex);
-            } catch (Exception ex) {
-                throw new IllegalArgumentException(String.format("Unexpected exception %s while attempting to construct a new instance of %s", ex.getClass().getName(), loader.getName()), ex);
+            if (dependents.stream().noneMatch(this::isEnablingElsewhere)) {
+                return dependents;
             }
-        } else {
-            throw new IllegalArgumentException(String.format("Class %s does not implement interface PluginLoader", loader.getName()));
+
+            awaitEnabled(dependents);
         }
 
-        pluginLoaders.put(instance.getTypeName(), instance);
-        log.info("Registered Interface: " + loader.getSimpleName());
+        return null;
     }
 
+    /**
+     * Disables the given plugin and every plugin that depends on it, dependents first.
+     *
+     * @return the plugins that were disabled, in the order they were disabled.
+     */
     @Override
-    public @NotNull Logger getLogger() {
-        return log;
+    public @NotNull Plugin[] disablePlugin(@NotNull Plugin plugin) {
+
+        Plugin[] disabled = disableWithDependents(plugin);
+
+        // plugins that were activated while disabling.
+        enablePending();
+        return disabled;
     }
 
-    @Override
-    @Nullable
-    public Plugin loadPlugin(@Nullable File file) throws InvalidPluginException, InvalidPluginDescriptionException, NullPointerException {
+    private synchronized @NotNull Plugin[] disableWithDependents(@NotNull Plugin plugin) {
 
-        if (file == null) {
-            throw new NullPointerException("File cannot be null.");
-        } else if (!file.exists()) {
-            throw new InvalidPluginException(new FileNotFoundException("Plugin " + file.getPath() + " does not exist."));
+        List<Plugin> disabling = awaitDependents(plugin);
+
+        if (disabling == null) {
+            return new Plugin[0];
         }
 
-        Plugin plugin = null;
+        Collections.reverse(disabling);
 
-        boolean isJar = FilenameUtils.isExtension(file.getName(), "jar");
+        List<Plugin> disabled = new ArrayList<>(disabling.size());
+
+        for (Plugin dependent : disabling) {
+            if (disablePluginOnly(dependent)) {
+                disabled.add(dependent);
+            }
+        }
 
-        if (isJar) {
+        return disabled.toArray(new Plugin[0]);
+    }
 
-            // Get the description so we can determine what type of plugin it is.
-            // This will allow us to determine which pluginLoader we need.
+    /**
+     * Disables and unloads the given plugin and every plugin that depends on it, dependents first. Their class loaders
+     * are closed and every cache that references them is purged. The class loaders are then tracked until they are
+     * garbage collected, see {@link #getSuspectedClassLoaderLeaks()}.
+     *
+     * @return the plugins that were unloaded, in the order they were unloaded.
+     */
+    @Override
+    public @NotNull Plugin[] unloadPlugin(@NotNull Plugin plugin) {
 
-            PluginDescription description;
-            PluginLoader pluginLoader;
+        Plugin[] unloaded = unloadWithDependents(plugin);
 
-            description = getPluginDescription(file);
+        // plugins that were activated while unloading.
+        enablePending();
+        return unloaded;
+    }
 
-            description.validate();
+    private synchronized @NotNull Plugin[] unloadWithDependents(@NotNull Plugin plugin) {
 
-            if (description != null) {
+        List<Plugin> unloading = awaitDependents(plugin);
 
-                pluginLoader = pluginLoaders.get(description.getType());
+        if (unloading == null) {
+            return new Plugin[0];
+        }
 
-                if (description.getType() == null || description.getType().trim().isEmpty()) {
-                    throw new InvalidPluginDescriptionException("No 'type' property set in plugin.json");
-                }
+        Collections.reverse(unloading);
 
-                if (pluginLoader == null) {
-                    throw new InvalidPluginDescriptionException("Unknown type '" + description.getType() + "' in plugin.json");
-                }
+        for (Plugin dependent : unloading) {
+            disablePluginOnly(dependent);
+        }
 
-                plugin = pluginLoader.loadPlugin(this, file, description);
+        for (Plugin dependent : unloading) {
+            unloadPluginOnly(dependent);
+        }
 
-                // plugin.onLoad();
+        // jackson caches the types it has seen, which would otherwise keep plugin classes alive.
+        JsonObjectMapper.getInstance().getObjectMapper().getTypeFactory().clearCache();
 
-            }
+        return unloading.toArray(new Plugin[0]);
+    }
+
+    private void unloadPluginOnly(@NotNull Plugin plugin) {
+
+        log.info("Unloading " + plugin.getDescription().getId());
+
+        try {
+            runCallback(plugin, "onUnload", plugin::onUnload);
+        } catch (Throwable ex) {
+            log.log(Level.WARNING, "Error occurred while unloading " + plugin.getDescription().getFullName(), ex);
         }
 
-        return plugin;
+        plugins.remove(plugin);
+        timings.remove(plugin.getDescription().getId());
+
+        ClassLoader classLoader = plugin.getPluginClassLoader();
+
+        try {
+            plugin.getPluginLoader().unloadPlugin(plugin);
+        } catch (Throwable ex) {
+            log.log(Level.WARNING, "Error occurred while releasing the class loader of " + plugin.getDescription().getFullName(), ex);
+        }
+
+        leakDetector.track(plugin.getDescription().getId(), classLoader);
     }
 
+    /**
+     * Reloads the given plugin from its jar, together with every plugin that depends on it. Their classes are linked
+     * against the old classes of the plugin, so they need new class loaders as well. Plugins outside that subgraph
+     * are not touched.
+     *
+     * The affected plugins are disabled and unloaded dependents first, then loaded and enabled again dependencies
+     * first. The description of the requested plugin is read again, so a new version may change its dependencies.
+     * A dependent that can no longer be loaded is kept with the rejected plugins, see {@link #addPlugins(Collection)}.
+     *
+     * @param id the id of the plugin to reload.
+     * @return how the reload went, or null if no such plugin is loaded.
+     */
     @Override
-    public Plugin[] loadPlugins(File directory) {
+    public @Nullable PluginReloadReport reloadPlugin(String id) {
 
-        List<Plugin> loadedPlugins = new ArrayList<>();
+        PluginReloadReport report = reload(id);
 
-        for (File pluginFile : directory.listFiles()) {
+        if (report == null) {
+            return null;
+        }
 
-            try {
+        long start = System.nanoTime();
+        enablePending();
 
-                Plugin plugin = loadPlugin(pluginFile);
+        report = report.withEnableNanos(System.nanoTime() - start);
 
-                if (plugin != null) {
+        log.info(report.toString());
+        return report;
+    }
 
-                    log.info("Loading " + plugin.getDescription().getId());
-                    plugin.onLoad();
+    /**
+     * Reloads the given plugin and its dependents, see {@link #reloadPlugin(String)}. If plugins have been enabled, the
+     * reloaded plugins are queued to be enabled once the lock has been released.
+     *
+     * @return the report, without the time spent enabling, or null if no such plugin is loaded.
+     */
+    private synchronized @Nullable PluginReloadReport reload(String id) {
 
-                    loadedPlugins.add(plugin);
+        Plugin plugin = findPlugin(id);
+        List<Plugin> affected = plugin == null ? null : awaitDependents(plugin);
+
+        if (affected == null) {
+            return null;
+        }
+
+        List<Plugin> reversed = new ArrayList<>(affected);
+        Collections.reverse(reversed);
+
+        long start = System.nanoTime();
+
+        for (Plugin dependent : reversed) {
+            disablePluginOnly(dependent);
+        }
+
+        long disabled = System.nanoTime();
+
+        List<PluginStub> reloading = new ArrayList<>(affected.size());
+
+        for (Plugin dependent : affected) {
+            reloading.add(new PluginStub(dependent.getFile(), dependent.getDescription(), dependent.getPluginLoader()));
+        }
+
+        for (Plugin dependent : reversed) {
+            unloadPluginOnly(dependent);
+        }
+
+        JsonObjectMapper.getInstance().getObjectMapper().getTypeFactory().clearCache();
+
+        // the lists no longer hold the old plugins, so nothing here keeps their class loaders alive.
+        affected.clear();
+        reversed.clear();
+
+        long unloaded = System.nanoTime();
+
+        List<Plugin> loaded = new ArrayList<>(reloading.size());
+        List<String> failed = new ArrayList<>();
+
+        for (int i = 0; i < reloading.size(); i++) {
+
+            PluginStub stub = reloading.get(i);
+
+            if (i == 0) {
+                try {
+                    // only the requested plugin has a new jar.
+                    PluginDescription description = readPluginDescription(stub.file);
+                    stub = new PluginStub(stub.file, description, getPluginLoader(description));
+                } catch (Throwable e) {
+                    log.log(Level.WARNING, "Unable to reload plugin '" + stub.file.getPath() + "' - " + e.getMessage(), e);
+                    pluginsNotLoadedCount.incrementAndGet();
+                    failed.add(stub.description.getId());
+                    continue;
                 }
+            }
 
-            } catch (Throwable e) {
-                log.log(Level.WARNING, "Unable to load plugin '" + pluginFile.getPath() + "' - " + e.getCause().getMessage(), e);
-                pluginsNotLoadedCount++;
+            boolean satisfied = stub.description.getDependencies().stream()
+                    .allMatch(dependency -> findPlugin(dependency) != null || activatePlugin(dependency) != null);
+
+            if (!satisfied) {
+                log.warning("Plugin '" + stub.description.getId() + "' could not be reloaded because one of its dependencies failed to reload.");
+                rejected.put(stub.description.getId(), stub);
+                failed.add(stub.description.getId());
+                continue;
+            }
+
+            Plugin reloaded = constructPlugin(stub);
+
+            if (reloaded == null) {
+                failed.add(stub.description.getId());
+                continue;
             }
 
+            plugins.add(reloaded);
+            loaded.add(reloaded);
         }
 
-        // At this point the plugin has passed all checks and is considered a valid plugin.
-        // It may still be removed if it depends on plugins that do not exist.
-        plugins.addAll(loadedPlugins);
+        long constructed = System.nanoTime();
+
+        if (pluginsEnabled) {
+            pendingEnables.addAll(loaded);
+        }
 
-        plugins.removeIf(plugin -> {
+        List<String> reloadedIds = new ArrayList<>(loaded.size());
 
-            // check for softDependencies
-            // this only gives the user a log warning that functionality may be limited.
-            checkSoftDependencies(plugin);
+        for (Plugin reloaded : loaded) {
+            reloadedIds.add(reloaded.getDescription().getId());
+        }
 
-            // Check for dependencies that don't exist.
-            try {
-                checkDependencies(plugin);
-            } catch (DependencyNotFoundException e) {
-                log.warning(e.getMessage());
-                return true;
+        return new PluginReloadReport(id, reloadedIds, failed,
+                disabled - start, unloaded - disabled, constructed - unloaded, 0);
+    }
+
+    /**
+     * Gets the given plugin followed by every plugin that depends on it directly or transitively, hard or soft, in
+     * load order.
+     */
+    @NotNull
+    private List<Plugin> getDependents(@NotNull Plugin plugin) {
+
+        Set<String> affected = new HashSet<>();
+        affected.add(plugin.getDescription().getId());
+
+        List<Plugin> dependents = new ArrayList<>();
+        dependents.add(plugin);
+
+        // plugins are kept in load order, so every dependency of a candidate has been visited before it.
+        for (Plugin candidate : plugins.getPlugins()) {
+
+            if (candidate == plugin) {
+                continue;
+            }
+
+            PluginDescription description = candidate.getDescription();
+
+            boolean dependent = description.getDependencies().stream().anyMatch(affected::contains)
+                    || description.getSoftDependencies().stream().anyMatch(affected::contains);
+
+            if (dependent) {
+                affected.add(description.getId());
+                dependents.add(candidate);
             }
+        }
+
+        return dependents;
+    }
 
+    /**
+     * Disables the given plugin. The caller holds the lock of this plugin manager and has waited for the plugin to
+     * finish enabling, see {@link #awaitDependents(Plugin)}.
+     */
+    private boolean disablePluginOnly(@NotNull Plugin plugin) {
+
+        if (!plugin.isEnabled()) {
             return false;
-        });
+        }
 
-        // Check for cyclic dependencies
-        // This can potentially terminate the application if cyclic dependencies exist.
-        // The user must resolve the issue or remove the offending plugin.
-        PluginSorter.sort(plugins);
+        log.info("Disabling " + plugin.getDescription().getId());
 
-        return loadedPlugins.toArray(new Plugin[0]);
+        try {
+            runCallback(plugin, "onDisable", plugin::onDisable);
+        } catch (Throwable ex) {
+            log.log(Level.WARNING, "Error occurred while disabling " + plugin.getDescription().getFullName(), ex);
+        }
+
+        // a plugin that fails to disable cleanly is still considered disabled.
+        plugins.setEnabled(plugin, false);
+        return true;
     }
 
-    @Override
-    public void enablePlugins() {
+    /**
+     * Sets how long the class loader of an unloaded plugin may stay reachable before it is reported as a leak.
+     */
+    public void setClassLoaderLeakGracePeriod(long duration, @NotNull TimeUnit unit) {
+        leakDetector.setGracePeriod(duration, unit);
+    }
 
-        for (Plugin plugin : plugins) {
+    public long getClassLoaderLeakGracePeriod(@NotNull TimeUnit unit) {
+        return leakDetector.getGracePeriod(unit);
+    }
 
-            if (!plugin.isEnabled()) {
-                try {
+    /**
+     * Gets the ids of unloaded plugins whose class loader is still reachable after the leak grace period. Collection
+     * only happens when the garbage collector runs, so a class loader is only a suspect, not a confirmed leak, until
+     * a full collection has run since it was unloaded.
+     */
+    @NotNull
+    public String[] getSuspectedClassLoaderLeaks() {
+        return leakDetector.getSuspectedLeaks();
+    }
 
-                    log.info("Enabling " + plugin.getDescription().getId());
-                    plugin.onEnable();
-                    plugin.setEnabled(true);
+    /**
+     * Gets the number of class loaders of unloaded plugins that have not been garbage collected yet.
+     */
+    public int getUncollectedClassLoaderCount() {
+        return leakDetector.getPendingCount();
+    }
 
-                } catch (Throwable ex) {
-                    log.warning("Error occurred (in the plugin loader) while enabling " + plugin.getDescription().getFullName() + " (Is it up to date?)");
-                    ex.printStackTrace();
-                }
+    /**
+     * Registers an MXBean for this plugin manager, see {@link PluginManagerMXBean}, and one for the class loader of
+     * each plugin while it is loaded, see {@link PluginClassLoaderMXBean}, with the platform MBean server. If MBeans
+     * are already registered under another name they are unregistered first.
+     *
+     * @param name the name that tells this plugin manager apart from others in the same JVM. It must be a valid
+     *             {@link javax.management.ObjectName} value.
+     * @throws JMException if the MBean of the plugin manager cannot be registered.
+     */
+    public synchronized void registerMBeans(@NotNull String name) throws JMException {
 
-            }
+        unregisterMBeans();
+
+        PluginManagement registered = new PluginManagement(name, new ManagementView());
+
+        for (Plugin plugin : plugins.getPlugins()) {
+            registered.register(plugin.getPluginClassLoader());
+        }
+
+        management = registered;
+    }
+
+    /**
+     * Unregisters the MBeans registered by {@link #registerMBeans(String)}, if any.
+     */
+    public synchronized void unregisterMBeans() {
+
+        PluginManagement registered = management;
+
+        if (registered != null) {
+            management = null;
+            registered.close();
+        }
+    }
+
+    void registerMBean(@NotNull SimplePluginClassLoader classLoader) {
+
+        PluginManagement registered = management;
 
+        if (registered != null) {
+            registered.register(classLoader);
         }
+    }
+
+    void unregisterMBean(@NotNull SimplePluginClassLoader classLoader) {
 
+        PluginManagement registered = management;
+
+        if (registered != null) {
+            registered.unregister(classLoader);
+        }
     }
 
     private void checkSoftDependencies(Plugin plugin) {
@@ -201,9 +1777,7 @@ public class SimplePluginManager implements PluginManager {
 
         for (String strDep : plugin.getDescription().getDependencies()) {
 
-            Plugin dependency = getPlugin(strDep);
-
-            if (dependency == null) {
+            if (findPlugin(strDep) == null && !isInactivePlugin(strDep)) {
                 dependenciesNotFound.add(strDep);
             }
 
@@ -234,9 +1808,7 @@ public class SimplePluginManager implements PluginManager {
 
         for (String strDep : plugin.getDescription().getDependencies()) {
 
-            Plugin dependency = getPlugin(strDep);
-
-            if (dependency == null) {
+            if (findPlugin(strDep) == null && !isInactivePlugin(strDep)) {
                 dependenciesNotFound.add(strDep);
             }
 
@@ -261,17 +1833,44 @@ public class SimplePluginManager implements PluginManager {
 
     }
 
+    /**
+     * Gets the plugin with the given id, activating it if it is a lazy plugin that has not been activated yet.
+     */
     @Override
     public @Nullable Plugin getPlugin(String name) {
-        return plugins.stream()
-                .filter(plugin -> plugin.getDescription().getId().equals(name))
-                .findFirst()
-                .orElse(null);
+
+        Plugin plugin = findPlugin(name);
+
+        if (plugin == null && isInactivePlugin(name)) {
+            plugin = activatePlugin(name);
+        }
+
+        return plugin;
+    }
+
+    @Nullable
+    private Plugin findPlugin(String name) {
+        return name == null ? null : plugins.get(name);
+    }
+
+    /**
+     * Gets the hard dependencies of the given plugin as they were resolved when it was registered, in the order they
+     * are declared. An entry is null if that dependency is not loaded.
+     *
+     * @return the dependencies, or null if the plugin is not registered with this plugin manager.
+     */
+    @Nullable
+    public Plugin[] getResolvedDependencies(@NotNull Plugin plugin) {
+        return plugins.getDependencies(plugin);
+    }
+
+    private synchronized boolean isInactivePlugin(String name) {
+        return stubs.containsKey(name);
     }
 
     @Override
     public @NotNull Plugin[] getPlugins() {
-        return plugins.toArray(new Plugin[0]);
+        return plugins.toArray();
     }
 
     @Override
@@ -281,21 +1880,17 @@ public class SimplePluginManager implements PluginManager {
 
     @Override
     public long getEnabledPluginCount() {
-        return plugins.stream()
-                .filter(Plugin::isEnabled)
-                .count();
+        return plugins.getEnabledCount();
     }
 
     @Override
     public long getDisabledPluginCount() {
-        return plugins.stream()
-                .filter(plugin -> !plugin.isEnabled())
-                .count();
+        return plugins.size() - plugins.getEnabledCount();
     }
 
     @Override
     public long getPluginsNotLoadedCount() {
-        return pluginsNotLoadedCount;
+        return pluginsNotLoadedCount.get();
     }
 
     @Override
@@ -303,33 +1898,52 @@ public class SimplePluginManager implements PluginManager {
         return classSerializer;
     }
 
+    /**
+     * Gets whether the given plugin depends on the other, directly or through other plugins, with hard or soft
+     * dependencies. This is a bit test against an index that is maintained as plugins are added and removed.
+     */
     @Override
     public boolean isTransitiveDependency(@NotNull PluginDescription plugin, @NotNull PluginDescription depend) {
-
-        // Preconditions.checkArgument(plugin != null, "plugin");
-        // Preconditions.checkArgument(depend != null, "depend");
-
-//        Validate.notNull(plugin, "plugin is null");
-//        Validate.notNull(depend, "depend is null");
-//
-//        if (dependencyGraph.nodes().contains(plugin.getName())) {
-//            if (Graphs.reachableNodes(dependencyGraph, plugin.getName()).contains(depend.getName())) {
-//                return true;
-//            }
-//            for (String provided : depend.getProvides()) {
-//                if (Graphs.reachableNodes(dependencyGraph, plugin.getName()).contains(provided)) {
-//                    return true;
-//                }
-//            }
-//        }
-//        return false;
-
-        // @TODO: provide the transitive dependency check.
-        return true;
+        return plugins.isTransitiveDependency(plugin, depend.getId());
     }
 
     private PluginDescription getPluginDescription(@NotNull File file) throws InvalidPluginDescriptionException {
 
+        PluginDescriptionEvent event = FlightRecorderSupport.AVAILABLE ? PluginDescriptionEvent.start() : null;
+        PluginDescription description = null;
+        boolean cached = false;
+
+        try {
+
+            PluginDescriptionCache cache = descriptionCacheEnabled ? descriptionCache : null;
+
+            if (cache != null) {
+
+                description = cache.get(file);
+
+                if (description != null) {
+                    cached = true;
+                    return description;
+                }
+            }
+
+            description = parsePluginDescription(file);
+
+            if (cache != null) {
+                cache.put(file, description);
+            }
+
+            return description;
+
+        } finally {
+            if (event != null) {
+                event.finish(file.getPath(), description == null ? null : description.getId(), cached);
+            }
+        }
+    }
+
+    private PluginDescription parsePluginDescription(@NotNull File file) throws InvalidPluginDescriptionException {
+
         JarFile jarFile = null;
         InputStream inputStream = null;
 
@@ -377,4 +1991,172 @@ public class SimplePluginManager implements PluginManager {
 
     }
 
+    /**
+     * Enables a set of plugins on an executor. Each plugin is submitted once all of its dependencies in the set have
+     * finished enabling, whether or not they succeeded. This mirrors the serial path, where a plugin that fails to
+     * enable does not stop the plugins after it.
+     */
+    private final class ParallelEnabler {
+
+        private final ExecutorService executor;
+        private final List<Plugin> pending;
+
+        private final AtomicInteger[] remaining;
+        private final List<List<Integer>> dependents;
+        private final CountDownLatch finished;
+
+        ParallelEnabler(@NotNull ExecutorService executor, @NotNull List<Plugin> pending) {
+
+            this.executor = executor;
+            this.pending = pending;
+            this.remaining = new AtomicInteger[pending.size()];
+            this.dependents = new ArrayList<>(pending.size());
+            this.finished = new CountDownLatch(pending.size());
+
+            Map<Plugin, Integer> indices = new IdentityHashMap<>();
+
+            for (int i = 0; i < pending.size(); i++) {
+                indices.put(pending.get(i), i);
+                remaining[i] = new AtomicInteger();
+                dependents.add(new ArrayList<>());
+            }
+
+            // Count the dependencies of each plugin that still have to be enabled, and record who is waiting on whom.
+            for (int i = 0; i < pending.size(); i++) {
+                for (Plugin dependency : pending.get(i).getDependencies()) {
+
+                    Integer dependencyIndex = dependency == null ? null : indices.get(dependency);
+
+                    if (dependencyIndex != null) {
+                        remaining[i].incrementAndGet();
+                        dependents.get(dependencyIndex).add(i);
+                    }
+                }
+            }
+        }
+
+        void start() {
+            for (int i = 0; i < pending.size(); i++) {
+                if (remaining[i].get() == 0) {
+                    submit(i);
+                }
+            }
+        }
+
+        void await() throws InterruptedException {
+            finished.await();
+        }
+
+        private void submit(int index) {
+
+            Runnable task = () -> {
+                try {
+                    enablePlugin(pending.get(index));
+                } finally {
+
+                    for (int dependent : dependents.get(index)) {
+                        if (remaining[dependent].decrementAndGet() == 0) {
+                            submit(dependent);
+                        }
+                    }
+
+                    finished.countDown();
+                }
+            };
+
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                task.run();
+            }
+        }
+
+    }
+
+    /**
+     * The statistics of this plugin manager as they are exposed over JMX. Every attribute is read without taking the
+     * lock of the plugin manager.
+     */
+    private final class ManagementView implements PluginManagerMXBean {
+
+        @Override
+        public long getLoadedPluginCount() {
+            return SimplePluginManager.this.getLoadedPluginCount();
+        }
+
+        @Override
+        public long getEnabledPluginCount() {
+            return SimplePluginManager.this.getEnabledPluginCount();
+        }
+
+        @Override
+        public long getDisabledPluginCount() {
+            return SimplePluginManager.this.getDisabledPluginCount();
+        }
+
+        @Override
+        public long getPluginsNotLoadedCount() {
+            return SimplePluginManager.this.getPluginsNotLoadedCount();
+        }
+
+        @Override
+        public int getUncollectedClassLoaderCount() {
+            return SimplePluginManager.this.getUncollectedClassLoaderCount();
+        }
+
+        @Override
+        public String[] getSuspectedClassLoaderLeaks() {
+            return SimplePluginManager.this.getSuspectedClassLoaderLeaks();
+        }
+
+        @Override
+        public long getLookupHitCount() {
+            return getSimplePluginLoaders().mapToLong(SimplePluginLoader::getLookupHitCount).sum();
+        }
+
+        @Override
+        public long getLookupMissCount() {
+            return getSimplePluginLoaders().mapToLong(SimplePluginLoader::getLookupMissCount).sum();
+        }
+
+        @Override
+        public long getNegativeLookupCacheHitCount() {
+            return getSimplePluginLoaders().mapToLong(loader -> loader.getNegativeLookupCache().getHitCount()).sum();
+        }
+
+        @Override
+        public long getTransformedClassCount() {
+            return classSerializer.getTransformedCount();
+        }
+
+        @Override
+        public long getTransformNanos() {
+            return classSerializer.getTransformNanos();
+        }
+
+        private Stream<SimplePluginLoader> getSimplePluginLoaders() {
+            return pluginLoaders.values().stream()
+                    .filter(SimplePluginLoader.class::isInstance)
+                    .map(SimplePluginLoader.class::cast);
+        }
+
+    }
+
+    /**
+     * A lazy plugin that has been discovered but not constructed. Only its description is kept in memory.
+     */
+    private static final class PluginStub {
+
+        private final File file;
+        private final PluginDescription description;
+        private final PluginLoader pluginLoader;
+
+        PluginStub(@NotNull File file, @NotNull PluginDescription description, @NotNull PluginLoader pluginLoader) {
+            this.file = file;
+            this.description = description;
+            this.pluginLoader = pluginLoader;
+        }
+
+    }
+
 }
@@ -0,0 +1,366 @@
+package com.jayfella.plugin.manager.cache;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.jayfella.plugin.manager.transformer.ClassTransformer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * A persistent, content-addressed cache of transformed class files.
+ *
+ * Each entry is keyed by a SHA-256 of the original class bytes combined with the name, version and writer flags of
+ * every transformer in the chain that produced it, so an entry can never be returned for different input or for a
+ * different set of transformers. Bump the version of a transformer whenever its output changes. Entries are stored
+ * one per file, fanned out over sub-directories by key prefix.
+ *
+ * Every entry carries a SHA-256 of its key and its class bytes, which is checked whenever it is read. An entry that was
+ * truncated, corrupted, or copied under another key is dropped and counts as a miss. The checksum is not a signature:
+ * whoever can write to the cache directory can write an entry that passes it, and the classes of every plugin are
+ * defined from it. The directory must therefore only be writable by the users the plugins are trusted by, in the same
+ * way as the plugins directory itself.
+ *
+ * The cache may be shared by several processes. Entries are written to a temporary file and atomically moved into
+ * place, so readers never see a partial entry, and a reader that loses an entry to eviction simply misses. Reading an
+ * entry refreshes its modification time, and when the cache grows beyond its size limit the least recently used
+ * entries are evicted by whichever process holds the eviction lock.
+ */
+public class BytecodeCache {
+
+    private static final Logger log = Logger.getLogger(BytecodeCache.class.getName());
+
+    // bump when the layout of the key or the entries changes.
+    private static final String FORMAT = "bytecode-cache-2";
+
+    // an entry is the magic number, the checksum of the key and the class bytes, then the class bytes.
+    private static final int ENTRY_MAGIC = 0x42434332;
+    private static final int CHECKSUM_BYTES = 32;
+    private static final int HEADER_BYTES = 4 + CHECKSUM_BYTES;
+
+    private static final String ENTRY_SUFFIX = ".class";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String LOCK_FILE = ".lock";
+
+    private static final int CLASS_MAGIC = 0xCAFEBABE;
+    private static final long STALE_TEMP_FILE_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private final File directory;
+    private final long maxBytes;
+
+    private final AtomicLong size = new AtomicLong();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder corrupt = new LongAdder();
+
+    /**
+     * @param directory the directory to store entries in. It is created if it does not exist.
+     * @param maxBytes  the size the entries may grow to before the least recently used are evicted.
+     */
+    public BytecodeCache(@NotNull File directory, long maxBytes) throws IOException {
+
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("The maximum size must be positive.");
+        }
+
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+
+        Files.createDirectories(directory.toPath());
+        size.set(scanSize());
+    }
+
+    @NotNull
+    public File getDirectory() {
+        return directory;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Computes the key of the given class transformed by the given chain of transformers. The plugin id and class name
+     * are part of the key because transformers receive them and may produce different output for the same bytes.
+     */
+    @NotNull
+    public String createKey(@NotNull String pluginId, @NotNull String className, @NotNull ByteBuffer classBytes, @NotNull List<ClassTransformer> chain) {
+
+        Hasher hasher = Hashing.sha256().newHasher();
+        hasher.putString(FORMAT, StandardCharsets.UTF_8).putByte((byte) 0);
+        hasher.putString(pluginId, StandardCharsets.UTF_8).putByte((byte) 0);
+        hasher.putString(className, StandardCharsets.UTF_8).putByte((byte) 0);
+
+        for (ClassTransformer transformer : chain) {
+            hasher.putString(transformer.getName(), StandardCharsets.UTF_8).putByte((byte) 0);
+            hasher.putString(transformer.getVersion(), StandardCharsets.UTF_8).putByte((byte) 0);
+            hasher.putInt(transformer.getWriterFlags());
+        }
+
+        hasher.putBytes(classBytes.duplicate());
+        return hasher.hash().toString();
+    }
+
+    /**
+     * Returns the transformed class stored under the given key, or null if there is none or it fails its checksum.
+     */
+    @Nullable
+    public byte[] get(@NotNull String key) {
+
+        Path path = getEntryFile(key).toPath();
+
+        try {
+
+            byte[] bytes = Files.readAllBytes(path);
+            byte[] classBytes = readEntry(key, bytes);
+
+            if (classBytes == null) {
+                // corrupt, or never written by us. Drop it so it is rewritten.
+                log.fine("Dropping corrupt bytecode cache entry " + path);
+                Files.deleteIfExists(path);
+                corrupt.increment();
+                misses.increment();
+                return null;
+            }
+
+            // refresh the entry for least recently used eviction. Losing this race to another process is harmless.
+            path.toFile().setLastModified(System.currentTimeMillis());
+
+            hits.increment();
+            return classBytes;
+
+        } catch (NoSuchFileException e) {
+            misses.increment();
+            return null;
+        } catch (IOException e) {
+            log.log(Level.FINE, "Unable to read bytecode cache entry " + path, e);
+            misses.increment();
+            return null;
+        }
+    }
+
+    /**
+     * Stores the transformed class under the given key.
+     */
+    public void put(@NotNull String key, @NotNull byte[] classBytes) {
+
+        File entryFile = getEntryFile(key);
+        Path tempFile = null;
+
+        try {
+
+            Files.createDirectories(entryFile.getParentFile().toPath());
+
+            byte[] entry = createEntry(key, classBytes);
+
+            tempFile = Files.createTempFile(entryFile.getParentFile().toPath(), key, TEMP_SUFFIX);
+            Files.write(tempFile, entry);
+
+            try {
+                Files.move(tempFile, entryFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, entryFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            writes.increment();
+
+            if (size.addAndGet(entry.length) > maxBytes) {
+                evict();
+            }
+
+        } catch (IOException e) {
+            log.log(Level.FINE, "Unable to write bytecode cache entry " + entryFile, e);
+
+            if (tempFile != null) {
+                tempFile.toFile().delete();
+            }
+        }
+    }
+
+    /**
+     * Evicts the least recently used entries until the cache is below its size limit. Only one thread of one process
+     * evicts at a time. Everyone else carries on and leaves the work to it.
+     */
+    public void evict() {
+
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+
+        try (RandomAccessFile lockFile = new RandomAccessFile(new File(directory, LOCK_FILE), "rw");
+             FileChannel channel = lockFile.getChannel();
+             FileLock lock = channel.tryLock()) {
+
+            if (lock == null) {
+                return;
+            }
+
+            // another process may have added or removed entries, so start from what is really on disk.
+            List<File> entries = new ArrayList<>();
+            long total = 0;
+            long now = System.currentTimeMillis();
+
+            try (Stream<Path> files = Files.walk(directory.toPath(), 2)) {
+                for (Path path : (Iterable<Path>) files::iterator) {
+
+                    File file = path.toFile();
+
+                    if (file.getName().endsWith(ENTRY_SUFFIX)) {
+                        entries.add(file);
+                        total += file.length();
+                    } else if (file.getName().endsWith(TEMP_SUFFIX) && now - file.lastModified() > STALE_TEMP_FILE_MILLIS) {
+                        // left behind by a process that died while writing.
+                        file.delete();
+                    }
+                }
+            }
+
+            // evict down to 90% of the limit so that eviction does not run again on the very next write.
+            long target = maxBytes - maxBytes / 10;
+
+            if (total > target) {
+
+                entries.sort((a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+
+                for (File entry : entries) {
+
+                    if (total <= target) {
+                        break;
+                    }
+
+                    long length = entry.length();
+
+                    if (entry.delete()) {
+                        total -= length;
+                        evictions.increment();
+                    }
+                }
+            }
+
+            size.set(total);
+
+        } catch (OverlappingFileLockException e) {
+            // another cache instance in this process is evicting the same directory.
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Unable to evict entries from the bytecode cache " + directory, e);
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private static byte[] createEntry(String key, byte[] classBytes) {
+
+        ByteBuffer entry = ByteBuffer.allocate(HEADER_BYTES + classBytes.length);
+        entry.putInt(ENTRY_MAGIC);
+        entry.put(checksum(key, ByteBuffer.wrap(classBytes)));
+        entry.put(classBytes);
+
+        return entry.array();
+    }
+
+    /**
+     * Returns the class bytes of the given entry, or null if it is not a valid entry for the given key.
+     */
+    @Nullable
+    private static byte[] readEntry(String key, byte[] entry) {
+
+        if (entry.length < HEADER_BYTES + 4) {
+            return null;
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(entry);
+
+        if (buffer.getInt() != ENTRY_MAGIC) {
+            return null;
+        }
+
+        byte[] expected = new byte[CHECKSUM_BYTES];
+        buffer.get(expected);
+
+        if (buffer.getInt(HEADER_BYTES) != CLASS_MAGIC || !MessageDigest.isEqual(expected, checksum(key, buffer))) {
+            return null;
+        }
+
+        return Arrays.copyOfRange(entry, HEADER_BYTES, entry.length);
+    }
+
+    private static byte[] checksum(String key, ByteBuffer classBytes) {
+        return Hashing.sha256().newHasher()
+                .putString(key, StandardCharsets.UTF_8).putByte((byte) 0)
+                .putBytes(classBytes.duplicate())
+                .hash()
+                .asBytes();
+    }
+
+    private File getEntryFile(String key) {
+        return new File(new File(directory, key.substring(0, 2)), key + ENTRY_SUFFIX);
+    }
+
+    private long scanSize() throws IOException {
+        try (Stream<Path> files = Files.walk(directory.toPath(), 2)) {
+            return files
+                    .filter(path -> path.getFileName().toString().endsWith(ENTRY_SUFFIX))
+                    .mapToLong(path -> path.toFile().length())
+                    .sum();
+        }
+    }
+
+    /**
+     * Gets the approximate size of the entries in bytes.
+     */
+    public long getSize() {
+        return size.get();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getWriteCount() {
+        return writes.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Gets the number of entries that failed their checksum and were dropped. They are also counted as misses.
+     */
+    public long getCorruptCount() {
+        return corrupt.sum();
+    }
+
+}
@@ -0,0 +1,301 @@
+package com.jayfella.plugin.manager.cache;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import com.jayfella.plugin.manager.json.JsonObjectMapper;
+import com.jayfella.plugin.manager.plugin.description.PluginDescription;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * An on-disk cache of parsed plugin descriptions.
+ *
+ * Each entry is keyed by the absolute path of a plugin jar and records the size and last-modified time of the jar
+ * when it was read, plus an optional SHA-256 of its content. An entry is only returned while the jar still matches,
+ * so a changed jar is transparently re-read. The cache is safe to query from multiple threads.
+ */
+public class PluginDescriptionCache {
+
+    private static final Logger log = Logger.getLogger(PluginDescriptionCache.class.getName());
+
+    private static final int FORMAT_VERSION = 1;
+    private static final String FILE_SUFFIX = ".descriptions.json";
+
+    private final File cacheFile;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private volatile boolean hashContent = false;
+    private volatile boolean dirty = false;
+
+    public PluginDescriptionCache(@NotNull File cacheFile) {
+        this.cacheFile = cacheFile;
+    }
+
+    /**
+     * Returns the cache for the given plugins directory. The cache file is stored next to the directory,
+     * so {@code ./plugins} is cached in {@code ./plugins.descriptions.json}.
+     */
+    @NotNull
+    public static PluginDescriptionCache forDirectory(@NotNull File directory) {
+        File absolute = directory.getAbsoluteFile();
+        return new PluginDescriptionCache(new File(absolute.getParentFile(), absolute.getName() + FILE_SUFFIX));
+    }
+
+    @NotNull
+    public File getCacheFile() {
+        return cacheFile;
+    }
+
+    public boolean isHashContent() {
+        return hashContent;
+    }
+
+    /**
+     * Sets whether the content of each jar is hashed in addition to comparing its size and last-modified time.
+     * Hashing detects a jar that was replaced without changing its size or timestamp at the cost of reading it.
+     */
+    public void setHashContent(boolean hashContent) {
+        this.hashContent = hashContent;
+    }
+
+    /**
+     * Loads the cache from disk. A missing, unreadable or outdated cache file results in an empty cache.
+     */
+    public void load() {
+
+        entries.clear();
+        dirty = false;
+
+        if (!cacheFile.isFile()) {
+            return;
+        }
+
+        try {
+
+            CacheFile file = JsonObjectMapper.getInstance().getObjectMapper().readValue(cacheFile, CacheFile.class);
+
+            if (file.getVersion() != FORMAT_VERSION || file.getEntries() == null) {
+                dirty = true;
+                return;
+            }
+
+            for (Entry entry : file.getEntries()) {
+                if (entry.getPath() != null && entry.getDescription() != null) {
+                    entries.put(entry.getPath(), entry);
+                }
+            }
+
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Unable to read plugin description cache '" + cacheFile.getPath() + "'. It will be rebuilt.", e);
+            entries.clear();
+            dirty = true;
+        }
+
+    }
+
+    /**
+     * Writes the cache to disk if it has changed since it was loaded or last saved.
+     * The file is written to a temporary file first and moved into place so a reader never sees a partial cache.
+     */
+    public void save() throws IOException {
+
+        if (!dirty) {
+            return;
+        }
+
+        CacheFile file = new CacheFile();
+        file.setVersion(FORMAT_VERSION);
+        file.setEntries(new ArrayList<>(entries.values()));
+
+        File tempFile = new File(cacheFile.getParentFile(), cacheFile.getName() + ".tmp");
+        JsonObjectMapper.getInstance().getObjectMapper().writeValue(tempFile, file);
+
+        try {
+            java.nio.file.Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            java.nio.file.Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        dirty = false;
+    }
+
+    /**
+     * Returns the cached description of the given jar, or null if the jar is not cached or has changed since it was.
+     * Stale entries are removed.
+     */
+    @Nullable
+    public PluginDescription get(@NotNull File jar) {
+
+        String path = jar.getAbsolutePath();
+        Entry entry = entries.get(path);
+
+        if (entry == null) {
+            return null;
+        }
+
+        if (entry.getSize() != jar.length() || entry.getLastModified() != jar.lastModified() || !hashMatches(entry, jar)) {
+            entries.remove(path, entry);
+            dirty = true;
+            return null;
+        }
+
+        return entry.getDescription();
+    }
+
+    /**
+     * Returns whether the given jar contained signature files when it was cached, or null if that is not known. Only
+     * the size and last-modified time of the jar are compared; call {@link #get(File)} first to check its content.
+     */
+    @Nullable
+    public Boolean isSigned(@NotNull File jar) {
+
+        Entry entry = entries.get(jar.getAbsolutePath());
+
+        if (entry == null || entry.getSize() != jar.length() || entry.getLastModified() != jar.lastModified()) {
+            return null;
+        }
+
+        return entry.getSigned();
+    }
+
+    /**
+     * Records whether the given cached jar contains signature files, so an unchanged jar does not have to be opened
+     * to find out on the next start. Nothing is recorded if the jar is not cached.
+     */
+    public void setSigned(@NotNull File jar, boolean signed) {
+
+        Entry entry = entries.get(jar.getAbsolutePath());
+
+        if (entry != null && !Boolean.valueOf(signed).equals(entry.getSigned())) {
+            entry.setSigned(signed);
+            dirty = true;
+        }
+    }
+
+    /**
+     * Stores the description of the given jar.
+     */
+    public void put(@NotNull File jar, @NotNull PluginDescription description) {
+
+        Entry entry = new Entry();
+        entry.setPath(jar.getAbsolutePath());
+        entry.setSize(jar.length());
+        entry.setLastModified(jar.lastModified());
+        entry.setDescription(description);
+
+        if (hashContent) {
+            entry.setHash(hash(jar));
+        }
+
+        entries.put(entry.getPath(), entry);
+        dirty = true;
+    }
+
+    /**
+     * Removes every entry whose jar is not in the given collection.
+     */
+    public void retain(@NotNull Collection<File> jars) {
+
+        Set<String> paths = new HashSet<>();
+
+        for (File jar : jars) {
+            paths.add(jar.getAbsolutePath());
+        }
+
+        if (entries.keySet().retainAll(paths)) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * Removes every entry from the cache.
+     */
+    public void clear() {
+        entries.clear();
+        dirty = true;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private boolean hashMatches(Entry entry, File jar) {
+
+        if (!hashContent) {
+            return true;
+        }
+
+        // entries that were written without a hash are re-read once so they gain one.
+        return entry.getHash() != null && entry.getHash().equals(hash(jar));
+    }
+
+    @Nullable
+    private static String hash(File jar) {
+        try {
+            return Files.asByteSource(jar).hash(Hashing.sha256()).toString();
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Unable to hash " + jar.getPath(), e);
+            return null;
+        }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    private static class CacheFile {
+
+        private int version;
+        private List<Entry> entries;
+
+        public int getVersion() { return version; }
+        public void setVersion(int version) { this.version = version; }
+
+        public List<Entry> getEntries() { return entries; }
+        public void setEntries(List<Entry> entries) { this.entries = entries; }
+
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    private static class Entry {
+
+        private String path;
+        private long size;
+        private long lastModified;
+        private String hash;
+        private Boolean signed;
+        private PluginDescription description;
+
+        public String getPath() { return path; }
+        public void setPath(String path) { this.path = path; }
+
+        public long getSize() { return size; }
+        public void setSize(long size) { this.size = size; }
+
+        public long getLastModified() { return lastModified; }
+        public void setLastModified(long lastModified) { this.lastModified = lastModified; }
+
+        public String getHash() { return hash; }
+        public void setHash(String hash) { this.hash = hash; }
+
+        public Boolean getSigned() { return signed; }
+        public void setSigned(Boolean signed) { this.signed = signed; }
+
+        public PluginDescription getDescription() { return description; }
+        public void setDescription(PluginDescription description) { this.description = description; }
+
+    }
+
+}
@@ -4,8 +4,6 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 
 public class JsonObjectMapper {
 
-    private static JsonObjectMapper INSTANCE;
-
     private final ObjectMapper objectMapper;
 
     private JsonObjectMapper() {
@@ -13,15 +11,16 @@ public class JsonObjectMapper {
     }
 
     public static JsonObjectMapper getInstance() {
-        if (INSTANCE == null) {
-            INSTANCE = new JsonObjectMapper();
-        }
-
-        return INSTANCE;
+        return Holder.INSTANCE;
     }
 
     public ObjectMapper getObjectMapper() {
         return objectMapper;
     }
 
+    // the JVM initializes the holder once, on first use, and safely publishes the instance to every thread.
+    private static final class Holder {
+        private static final JsonObjectMapper INSTANCE = new JsonObjectMapper();
+    }
+
 }
@@ -10,6 +10,8 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
+import java.util.Arrays;
+import java.util.Objects;
 import java.util.logging.Logger;
 
 public abstract class SimplePlugin extends BasePlugin {
@@ -23,7 +25,7 @@ public abstract class SimplePlugin extends BasePlugin {
 
     private PluginLogger logger;
 
-    private boolean enabled = false;
+    private volatile boolean enabled = false;
 
     @Override
     public void initialize(@NotNull PluginManager pluginManager, @NotNull PluginLoader pluginLoader, @NotNull SimplePluginClassLoader pluginClassLoader, @NotNull PluginDescription description, @NotNull File file, @Nullable File dataFolder) {
@@ -80,6 +82,13 @@ public abstract class SimplePlugin extends BasePlugin {
     @Override
     public Plugin[] getDependencies() {
 
+        Plugin[] resolved = pluginManager.getResolvedDependencies(this);
+
+        // a missing entry may be a lazy plugin, which getPlugin activates.
+        if (resolved != null && Arrays.stream(resolved).allMatch(Objects::nonNull)) {
+            return resolved;
+        }
+
         Plugin[] dependencies = new Plugin[description.getDependencies().size()];
 
         for (int i = 0; i < dependencies.length; i++) {
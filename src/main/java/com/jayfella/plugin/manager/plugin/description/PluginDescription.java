@@ -36,6 +36,15 @@ public class PluginDescription {
 
     private boolean visible = true;
 
+    /**
+     * A lazy plugin is only registered when it is loaded. Its class loader and instance are created the first time
+     * it is needed: when it is requested by id, when another plugin depends on it or looks up one of its classes, or
+     * when a plugin listed in activateWith is enabled.
+     */
+    private boolean lazy = false;
+    private List<String> activateWith = new ArrayList<>();
+    private List<String> activationPackages = new ArrayList<>();
+
     public PluginDescription() {
 
     }
@@ -75,6 +84,19 @@ public class PluginDescription {
     public boolean isVisible() { return visible; }
     public void setVisible(boolean visible) { this.visible = visible; }
 
+    public boolean isLazy() { return lazy; }
+    public void setLazy(boolean lazy) { this.lazy = lazy; }
+
+    public List<String> getActivateWith() { return activateWith; }
+    protected void setActivateWith(List<String> activateWith) { this.activateWith = activateWith; }
+
+    /**
+     * The packages whose classes activate this plugin when another plugin looks them up, including their
+     * sub-packages. If none are given, the package of the main class is used.
+     */
+    public List<String> getActivationPackages() { return activationPackages; }
+    protected void setActivationPackages(List<String> activationPackages) { this.activationPackages = activationPackages; }
+
     @NotNull
     @JsonIgnore
     public String getFullName() {
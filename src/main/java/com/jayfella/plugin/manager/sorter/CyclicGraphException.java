@@ -33,18 +33,35 @@ public class CyclicGraphException extends RuntimeException {
 
     private static final long serialVersionUID = -8398890567263627095L;
 
+    private final List<DirectedGraph.DataNode<?>[]> components;
     private final List<DirectedGraph.DataNode<?>[]> cycles;
 
     public CyclicGraphException(List<DirectedGraph.DataNode<?>[]> cycles, String msg) {
+        this(cycles, cycles, msg);
+    }
+
+    public CyclicGraphException(List<DirectedGraph.DataNode<?>[]> components, List<DirectedGraph.DataNode<?>[]> cycles, String msg) {
         super(msg);
+        this.components = components;
         this.cycles = cycles;
     }
 
     /**
-     * Gets a list of all cycles found in the graph.
+     * Gets a list of all cycles found in the graph. There is one shortest
+     * cycle for every strongly connected component returned by
+     * {@link #getComponents()}, in the same order. Each node in a cycle
+     * has an edge to the next, and the last node has an edge to the first.
      */
     public List<DirectedGraph.DataNode<?>[]> getCycles() {
         return this.cycles;
     }
 
+    /**
+     * Gets a list of all strongly connected components in the graph that
+     * contain a cycle.
+     */
+    public List<DirectedGraph.DataNode<?>[]> getComponents() {
+        return this.components;
+    }
+
 }
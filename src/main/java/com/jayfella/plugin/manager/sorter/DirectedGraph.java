@@ -31,7 +31,7 @@ import java.util.*;
  */
 public class DirectedGraph<D> {
 
-    private final Map<D, DataNode<D>> nodes = new HashMap<>();
+    private final Map<D, DataNode<D>> nodes = new LinkedHashMap<>();
 
     public DirectedGraph() {
     }
@@ -82,7 +82,7 @@ public class DirectedGraph<D> {
     }
 
     /**
-     * Gets all nodes in the graph.
+     * Gets all nodes in the graph, in the order they were added.
      */
     public Collection<DataNode<D>> getNodes() {
         return this.nodes.values();
@@ -0,0 +1,147 @@
+package com.jayfella.plugin.manager.sorter;
+
+import com.jayfella.plugin.manager.sorter.DirectedGraph.DataNode;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+import java.util.Collection;
+
+/**
+ * An immutable, int-indexed snapshot of a {@link DirectedGraph}.
+ *
+ * Nodes are numbered {@code 0..n-1} in the iteration order of the source graph and the edges are stored in
+ * compressed sparse row form, so the edges of node {@code i} are
+ * {@code getEdgeTarget(getEdgeStart(i)) .. getEdgeTarget(getEdgeEnd(i) - 1)}. Graph algorithms can therefore run
+ * over plain int arrays without hashing or allocating per node.
+ */
+public final class IndexedGraph<D> {
+
+    private final DataNode<D>[] nodes;
+    private final int[] edgeOffsets;
+    private final int[] edgeTargets;
+
+    private IndexedGraph(DataNode<D>[] nodes, int[] edgeOffsets, int[] edgeTargets) {
+        this.nodes = nodes;
+        this.edgeOffsets = edgeOffsets;
+        this.edgeTargets = edgeTargets;
+    }
+
+    /**
+     * Creates an indexed snapshot of the given graph. Later changes to the graph are not reflected.
+     */
+    public static <D> IndexedGraph<D> of(DirectedGraph<D> graph) {
+
+        Collection<DataNode<D>> graphNodes = graph.getNodes();
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        DataNode<D>[] nodes = graphNodes.toArray(new DataNode[0]);
+
+        Object2IntOpenHashMap<DataNode<D>> indices = new Object2IntOpenHashMap<>(nodes.length);
+
+        for (int i = 0; i < nodes.length; i++) {
+            indices.put(nodes[i], i);
+        }
+
+        int[] edgeOffsets = new int[nodes.length + 1];
+
+        for (int i = 0; i < nodes.length; i++) {
+            edgeOffsets[i + 1] = edgeOffsets[i] + nodes[i].getEdgeCount();
+        }
+
+        int[] edgeTargets = new int[edgeOffsets[nodes.length]];
+        int edge = 0;
+
+        for (DataNode<D> node : nodes) {
+            for (DataNode<D> adj : node.getAdjacent()) {
+                edgeTargets[edge++] = indices.getInt(adj);
+            }
+        }
+
+        return new IndexedGraph<>(nodes, edgeOffsets, edgeTargets);
+    }
+
+    /**
+     * Gets the count of nodes in the graph.
+     */
+    public int getNodeCount() {
+        return nodes.length;
+    }
+
+    /**
+     * Gets the count of edges in the graph.
+     */
+    public int getEdgeCount() {
+        return edgeTargets.length;
+    }
+
+    /**
+     * Gets the node with the given index.
+     */
+    public DataNode<D> getNode(int index) {
+        return nodes[index];
+    }
+
+    /**
+     * Gets the data of the node with the given index.
+     */
+    public D getData(int index) {
+        return nodes[index].getData();
+    }
+
+    /**
+     * Gets the count of edges originating from the node with the given index.
+     */
+    public int getEdgeCount(int index) {
+        return edgeOffsets[index + 1] - edgeOffsets[index];
+    }
+
+    /**
+     * Gets the position of the first edge of the node with the given index.
+     */
+    public int getEdgeStart(int index) {
+        return edgeOffsets[index];
+    }
+
+    /**
+     * Gets the position after the last edge of the node with the given index.
+     */
+    public int getEdgeEnd(int index) {
+        return edgeOffsets[index + 1];
+    }
+
+    /**
+     * Gets the index of the node the edge at the given position points to.
+     */
+    public int getEdgeTarget(int edge) {
+        return edgeTargets[edge];
+    }
+
+    /**
+     * Returns the reverse of this graph. The reverse has the same nodes, with the same indices, but the direction
+     * of each edge is reversed. Edges of each node remain ordered by the index of their target.
+     */
+    public IndexedGraph<D> reverse() {
+
+        int[] reverseOffsets = new int[nodes.length + 1];
+
+        for (int target : edgeTargets) {
+            reverseOffsets[target + 1]++;
+        }
+
+        for (int i = 0; i < nodes.length; i++) {
+            reverseOffsets[i + 1] += reverseOffsets[i];
+        }
+
+        int[] reverseTargets = new int[edgeTargets.length];
+        int[] next = new int[nodes.length];
+        System.arraycopy(reverseOffsets, 0, next, 0, nodes.length);
+
+        for (int from = 0; from < nodes.length; from++) {
+            for (int edge = edgeOffsets[from]; edge < edgeOffsets[from + 1]; edge++) {
+                reverseTargets[next[edgeTargets[edge]]++] = from;
+            }
+        }
+
+        return new IndexedGraph<>(nodes, reverseOffsets, reverseTargets);
+    }
+
+}
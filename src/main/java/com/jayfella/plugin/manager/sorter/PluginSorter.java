@@ -50,9 +50,14 @@ public final class PluginSorter {
             StringBuilder msg = new StringBuilder();
             msg.append("\nPlugin dependencies are cyclical!\n");
             msg.append("Dependency loops are:\n");
-            for (DataNode<?>[] cycle : e.getCycles()) {
+            for (int i = 0; i < e.getCycles().size(); i++) {
                 msg.append("[");
-                for (DataNode<?> node : cycle) {
+                for (DataNode<?> node : e.getCycles().get(i)) {
+                    msg.append(node.getData().toString()).append(" -> ");
+                }
+                msg.append(e.getCycles().get(i)[0].getData().toString());
+                msg.append("] in [");
+                for (DataNode<?> node : e.getComponents().get(i)) {
                     msg.append(node.getData().toString()).append(" ");
                 }
                 msg.append("]\n");
@@ -24,12 +24,11 @@
  */
 package com.jayfella.plugin.manager.sorter;
 
-import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
 import com.jayfella.plugin.manager.sorter.DirectedGraph.DataNode;
 
-import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Deque;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 
 public class TopologicalOrder {
@@ -40,97 +39,340 @@ public class TopologicalOrder {
      * representing a load-after dependency. For example an edge from node A to
      * node B signifies that A depends on B and that B must load before A, the
      * resulting topological order would therefore be {@code [B, A]}.
+     *
+     * The sort uses Kahn's algorithm over an {@link IndexedGraph} and runs in
+     * {@code O(V + E)}. Ties are broken by the order in which nodes were added
+     * to the graph, so the same graph always produces the same order. The
+     * given graph is not modified.
      * 
      * @throws CyclicGraphException if the graph contains a cycle.
      */
     public static <T> List<T> createOrderedLoad(DirectedGraph<T> graph) {
-        final List<T> orderedList = new ArrayList<>();
-        while (graph.getNodeCount() != 0) {
-            DirectedGraph.DataNode<T> next = null;
-            for (DirectedGraph.DataNode<T> node : graph.getNodes()) {
-                if (node.getEdgeCount() == 0) {
-                    next = node;
-                    break;
-                }
+
+        final IndexedGraph<T> indexed = IndexedGraph.of(graph);
+        final IndexedGraph<T> dependents = indexed.reverse();
+        final int nodeCount = indexed.getNodeCount();
+
+        // the number of dependencies of each node that have not been ordered yet.
+        final int[] remaining = new int[nodeCount];
+
+        // every node is queued exactly once, so the queue never needs more than one slot per node.
+        final int[] queue = new int[nodeCount];
+        int head = 0;
+        int tail = 0;
+
+        for (int i = 0; i < nodeCount; i++) {
+            remaining[i] = indexed.getEdgeCount(i);
+
+            if (remaining[i] == 0) {
+                queue[tail++] = i;
             }
-            if (next == null) {
-                // We have a cycle
-                // Find all cycles for reporting purposes
-                TarjanCycleDetector detector = new TarjanCycleDetector(graph);
-                List<DataNode<?>[]> cycles = detector.getCycles();
-                StringBuilder msg = new StringBuilder();
-                msg.append("Graph is cyclic! Cycles:\n");
-                for (DataNode<?>[] cycle : cycles) {
-                    msg.append("[");
-                    for (DataNode<?> node : cycle) {
-                        msg.append(node.getData().toString()).append(" ");
-                    }
-                    msg.append("]\n");
+        }
+
+        final List<T> orderedList = new ArrayList<>(nodeCount);
+
+        while (head < tail) {
+            int next = queue[head++];
+            orderedList.add(indexed.getData(next));
+
+            for (int edge = dependents.getEdgeStart(next); edge < dependents.getEdgeEnd(next); edge++) {
+                int dependent = dependents.getEdgeTarget(edge);
+
+                if (--remaining[dependent] == 0) {
+                    queue[tail++] = dependent;
                 }
-                throw new CyclicGraphException(cycles, msg.toString());
             }
-            orderedList.add(next.getData());
-            graph.remove(next.getData());
         }
+
+        if (orderedList.size() != nodeCount) {
+            // We have a cycle
+            // Find all cycles for reporting purposes
+            TarjanCycleDetector<T> detector = new TarjanCycleDetector<>(indexed);
+            detector.detect();
+
+            List<DataNode<?>[]> components = detector.getComponents();
+            List<DataNode<?>[]> cycles = detector.getCycles();
+            StringBuilder msg = new StringBuilder();
+            msg.append("Graph is cyclic! Cycles:\n");
+            for (DataNode<?>[] cycle : cycles) {
+                appendNodes(msg, cycle);
+            }
+            throw new CyclicGraphException(components, cycles, msg.toString());
+        }
+
         return orderedList;
     }
 
+    private static void appendNodes(StringBuilder msg, DataNode<?>[] nodes) {
+        msg.append("[");
+        for (DataNode<?> node : nodes) {
+            msg.append(node.getData().toString()).append(" ");
+        }
+        msg.append("]\n");
+    }
+
     /**
      * Uses Tarjan's strongly connected components algorithm to find all cycles
      * in a graph.
+     *
+     * The search is iterative, so deep graphs cannot overflow the stack, and
+     * keeps its state in arrays indexed by node with stack membership tracked
+     * in a bitset, so the whole pass is {@code O(V + E)}. For every component
+     * that contains a cycle it also reports a concrete shortest cycle.
      */
-    private static class TarjanCycleDetector {
+    private static class TarjanCycleDetector<T> {
+
+        private static final int UNVISITED = -1;
+        private static final int SEARCH_BUDGET_FACTOR = 8;
+
+        private final IndexedGraph<T> graph;
 
-        private DirectedGraph<?> graph;
-        private int index = 0;
-        private Deque<DataNode<?>> stack = new ArrayDeque<>();
-        private Object2IntOpenHashMap<DataNode<?>> node_indices = new Object2IntOpenHashMap<>();
-        private Object2IntOpenHashMap<DataNode<?>> lowlinks = new Object2IntOpenHashMap<>();
-        private List<DataNode<?>[]> result = null;
+        private final int[] indices;
+        private final int[] lowlinks;
+        private final int[] components;
+        private final BitSet onStack;
 
-        public TarjanCycleDetector(DirectedGraph<?> graph) {
+        private final int[] stack;
+        private int stackSize = 0;
+
+        private final int[] parents;
+        private final int[] depths;
+        private final int[] seen;
+        private final int[] queue;
+        private int searchCount = 0;
+        private long visited = 0;
+
+        private final List<DataNode<?>[]> componentResult = new ArrayList<>();
+        private final List<DataNode<?>[]> cycleResult = new ArrayList<>();
+
+        TarjanCycleDetector(IndexedGraph<T> graph) {
             this.graph = graph;
+
+            int nodeCount = graph.getNodeCount();
+
+            this.indices = new int[nodeCount];
+            this.lowlinks = new int[nodeCount];
+            this.components = new int[nodeCount];
+            this.onStack = new BitSet(nodeCount);
+            this.stack = new int[nodeCount];
+            this.parents = new int[nodeCount];
+            this.depths = new int[nodeCount];
+            this.seen = new int[nodeCount];
+            this.queue = new int[nodeCount];
+
+            Arrays.fill(this.indices, UNVISITED);
+            Arrays.fill(this.components, UNVISITED);
+
+        }
+
+        /**
+         * Gets every strongly connected component that contains a cycle.
+         */
+        List<DataNode<?>[]> getComponents() {
+            return this.componentResult;
+        }
+
+        /**
+         * Gets one shortest cycle for each component, in the same order as
+         * {@link #getComponents()}. Each node in a cycle has an edge to the
+         * next, and the last node has an edge to the first.
+         */
+        List<DataNode<?>[]> getCycles() {
+            return this.cycleResult;
+        }
+
+        void detect() {
+
+            int nodeCount = this.graph.getNodeCount();
+
+            // the simulated call stack: the node being visited and the next edge to follow from it.
+            int[] callNodes = new int[nodeCount];
+            int[] callEdges = new int[nodeCount];
+
+            int index = 0;
+            int componentCount = 0;
+
+            for (int root = 0; root < nodeCount; root++) {
+
+                if (this.indices[root] != UNVISITED) {
+                    continue;
+                }
+
+                int depth = 0;
+                callNodes[0] = root;
+                callEdges[0] = this.graph.getEdgeStart(root);
+                visit(root, index++);
+
+                while (depth >= 0) {
+
+                    int node = callNodes[depth];
+                    int edge = callEdges[depth];
+
+                    if (edge < this.graph.getEdgeEnd(node)) {
+
+                        callEdges[depth] = edge + 1;
+                        int adj = this.graph.getEdgeTarget(edge);
+
+                        if (this.indices[adj] == UNVISITED) {
+                            visit(adj, index++);
+                            depth++;
+                            callNodes[depth] = adj;
+                            callEdges[depth] = this.graph.getEdgeStart(adj);
+                        } else if (this.onStack.get(adj)) {
+                            this.lowlinks[node] = Math.min(this.lowlinks[node], this.indices[adj]);
+                        }
+
+                    } else {
+
+                        if (this.lowlinks[node] == this.indices[node]) {
+                            popComponent(node, componentCount++);
+                        }
+
+                        depth--;
+
+                        if (depth >= 0) {
+                            int parent = callNodes[depth];
+                            this.lowlinks[parent] = Math.min(this.lowlinks[parent], this.lowlinks[node]);
+                        }
+                    }
+                }
+            }
+        }
+
+        private void visit(int node, int index) {
+            this.indices[node] = index;
+            this.lowlinks[node] = index;
+            this.stack[this.stackSize++] = node;
+            this.onStack.set(node);
         }
 
-        public List<DataNode<?>[]> getCycles() {
-            if (this.result != null) {
-                return this.result;
+        private void popComponent(int root, int component) {
+
+            int start = this.stackSize;
+            int w;
+            do {
+                w = this.stack[--start];
+                this.onStack.clear(w);
+                this.components[w] = component;
+            } while (w != root);
+
+            int[] members = Arrays.copyOfRange(this.stack, start, this.stackSize);
+            this.stackSize = start;
+
+            if (members.length == 1 && !hasEdge(root, root)) {
+                // a single node without a self loop is not a cycle.
+                return;
             }
-            this.result = new ArrayList<>();
-            for (DataNode<?> node : this.graph.getNodes()) {
-                if (!this.node_indices.containsKey(node)) {
-                    strongconnect(node);
+
+            Arrays.sort(members);
+            this.componentResult.add(toNodes(members, members.length));
+            this.cycleResult.add(findShortestCycle(members, component));
+        }
+
+        private boolean hasEdge(int from, int to) {
+            for (int edge = this.graph.getEdgeStart(from); edge < this.graph.getEdgeEnd(from); edge++) {
+                if (this.graph.getEdgeTarget(edge) == to) {
+                    return true;
                 }
             }
-            return this.result;
+            return false;
         }
 
-        private void strongconnect(DataNode<?> node) {
-            this.node_indices.put(node, this.index);
-            this.lowlinks.put(node, this.index);
-            this.index++;
-            this.stack.push(node);
-
-            for (DataNode<?> adj : node.getAdjacent()) {
-                if (!this.node_indices.containsKey(adj)) {
-                    strongconnect(adj);
-                    int lowlink = Math.min(this.lowlinks.getInt(node), this.lowlinks.getInt(adj));
-                    this.lowlinks.put(node, lowlink);
-                } else if (this.stack.contains(adj)) {
-                    int lowlink = Math.min(this.lowlinks.getInt(node), this.node_indices.getInt(adj));
-                    this.lowlinks.put(node, lowlink);
+        /**
+         * Finds the shortest cycle in a component. A breadth-first search is
+         * started from each member in turn, following only edges that stay
+         * inside the component and stopping as soon as it cannot beat the
+         * best cycle found so far. The searches share a budget proportional
+         * to the size of the component, so a large component costs linear
+         * time and reports the shortest cycle found within that budget.
+         */
+        private DataNode<?>[] findShortestCycle(int[] members, int component) {
+
+            long budget = 0;
+            for (int member : members) {
+                budget += 1 + this.graph.getEdgeCount(member);
+            }
+            budget *= SEARCH_BUDGET_FACTOR;
+
+            int[] best = null;
+
+            for (int start : members) {
+
+                if (best != null && (budget <= 0 || best.length == 1)) {
+                    break;
+                }
+
+                int limit = best == null ? Integer.MAX_VALUE : best.length - 1;
+                int[] cycle = search(start, component, limit);
+
+                if (cycle != null) {
+                    best = cycle;
+                }
+
+                budget -= this.visited;
+            }
+
+            return toNodes(best, best.length);
+        }
+
+        /**
+         * Breadth-first search from the given node for a cycle back to it
+         * that is no longer than the given limit.
+         *
+         * @return the cycle in edge order, or null if there is none within the limit.
+         */
+        private int[] search(int start, int component, int limit) {
+
+            // every search has its own stamp, so the arrays never need clearing.
+            int stamp = ++this.searchCount;
+            this.visited = 0;
+
+            int head = 0;
+            int tail = 0;
+            this.queue[tail++] = start;
+            this.seen[start] = stamp;
+            this.depths[start] = 0;
+
+            while (head < tail) {
+                int node = this.queue[head++];
+                int depth = this.depths[node];
+
+                if (depth + 1 > limit) {
+                    // every remaining node is at least this deep, so no shorter cycle exists from here.
+                    return null;
+                }
+
+                for (int edge = this.graph.getEdgeStart(node); edge < this.graph.getEdgeEnd(node); edge++) {
+                    int adj = this.graph.getEdgeTarget(edge);
+                    this.visited++;
+
+                    if (adj == start) {
+                        // walk back to the start to recover the path in edge order.
+                        int[] cycle = new int[depth + 1];
+                        for (int w = node, i = depth; i >= 0; w = this.parents[w], i--) {
+                            cycle[i] = w;
+                        }
+                        return cycle;
+                    }
+
+                    if (this.components[adj] == component && this.seen[adj] != stamp) {
+                        this.seen[adj] = stamp;
+                        this.parents[adj] = node;
+                        this.depths[adj] = depth + 1;
+                        this.queue[tail++] = adj;
+                    }
                 }
             }
 
-            if (this.lowlinks.getInt(node) == this.node_indices.getInt(node)) {
-                List<DataNode<?>> cycle = new ArrayList<>();
-                DataNode<?> w;
-                do {
-                    w = this.stack.pop();
-                    cycle.add(w);
-                } while (w != node);
-                this.result.add(cycle.toArray(new DataNode<?>[cycle.size()]));
+            return null;
+        }
+
+        private DataNode<?>[] toNodes(int[] indices, int length) {
+            DataNode<?>[] nodes = new DataNode<?>[length];
+            for (int i = 0; i < length; i++) {
+                nodes[i] = this.graph.getNode(indices[i]);
             }
+            return nodes;
         }
 
     }
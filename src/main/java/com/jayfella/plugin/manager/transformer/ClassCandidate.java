@@ -0,0 +1,123 @@
+package com.jayfella.plugin.manager.transformer;
+
+import com.jayfella.plugin.manager.plugin.description.PluginDescription;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A class that is about to be defined, as seen by a {@link ClassTarget}.
+ *
+ * The raw class file is only inspected if a target asks for its constants, and even then it is read in place without
+ * being copied or fully parsed.
+ */
+public final class ClassCandidate {
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_FLOAT = 4;
+    private static final int CONSTANT_LONG = 5;
+    private static final int CONSTANT_DOUBLE = 6;
+    private static final int CONSTANT_METHOD_HANDLE = 15;
+
+    private final PluginDescription plugin;
+    private final String className;
+    private final ByteBuffer classFile;
+
+    public ClassCandidate(@NotNull PluginDescription plugin, @NotNull String className, @NotNull ByteBuffer classFile) {
+        this.plugin = plugin;
+        this.className = className;
+        this.classFile = classFile;
+    }
+
+    /**
+     * Gets the plugin that contains the class.
+     */
+    @NotNull
+    public PluginDescription getPlugin() {
+        return plugin;
+    }
+
+    /**
+     * Gets the binary name of the class, for example {@code com.example.Foo}.
+     */
+    @NotNull
+    public String getClassName() {
+        return className;
+    }
+
+    /**
+     * Returns whether the constant pool of the class contains the given UTF-8 constant, such as a type descriptor.
+     * Malformed class files never contain anything.
+     */
+    public boolean containsConstant(@NotNull String value) {
+
+        byte[] expected = value.getBytes(StandardCharsets.UTF_8);
+        int base = classFile.position();
+        int limit = classFile.limit();
+
+        try {
+
+            int count = classFile.getShort(base + 8) & 0xFFFF;
+            int position = base + 10;
+
+            for (int i = 1; i < count; i++) {
+
+                int tag = classFile.get(position);
+
+                switch (tag) {
+                    case CONSTANT_UTF8:
+                        int length = classFile.getShort(position + 1) & 0xFFFF;
+                        if (length == expected.length && equalsAt(position + 3, expected)) {
+                            return true;
+                        }
+                        position += 3 + length;
+                        break;
+                    case CONSTANT_INTEGER:
+                    case CONSTANT_FLOAT:
+                        position += 5;
+                        break;
+                    case CONSTANT_LONG:
+                    case CONSTANT_DOUBLE:
+                        // eight byte constants take up two slots.
+                        position += 9;
+                        i++;
+                        break;
+                    case CONSTANT_METHOD_HANDLE:
+                        position += 4;
+                        break;
+                    case 7: case 8: case 16: case 19: case 20:
+                        // class, string, method type, module and package references.
+                        position += 3;
+                        break;
+                    case 9: case 10: case 11: case 12: case 17: case 18:
+                        // member references, name and type, dynamic constants and invokedynamic.
+                        position += 5;
+                        break;
+                    default:
+                        return false;
+                }
+
+                if (position > limit) {
+                    return false;
+                }
+            }
+
+        } catch (IndexOutOfBoundsException e) {
+            return false;
+        }
+
+        return false;
+    }
+
+    private boolean equalsAt(int position, byte[] expected) {
+        for (int i = 0; i < expected.length; i++) {
+            if (classFile.get(position + i) != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
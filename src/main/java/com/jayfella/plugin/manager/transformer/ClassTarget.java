@@ -0,0 +1,92 @@
+package com.jayfella.plugin.manager.transformer;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Selects the classes a {@link ClassTransformer} applies to.
+ *
+ * Targets are evaluated before a class is parsed, so they should be cheap. The factories in this interface only look at
+ * the name of the class and, for annotations, at the constant pool of the raw class file.
+ */
+@FunctionalInterface
+public interface ClassTarget {
+
+    /**
+     * Returns whether the given class should be transformed.
+     */
+    boolean matches(@NotNull ClassCandidate candidate);
+
+    /**
+     * Returns a target that matches either this target or the given one.
+     */
+    @NotNull
+    default ClassTarget or(@NotNull ClassTarget other) {
+        return candidate -> matches(candidate) || other.matches(candidate);
+    }
+
+    /**
+     * Returns a target that matches every class.
+     */
+    @NotNull
+    static ClassTarget all() {
+        return candidate -> true;
+    }
+
+    /**
+     * Returns a target that matches every class in the given packages and their sub-packages.
+     *
+     * @param packageNames package names, for example {@code com.example}.
+     */
+    @NotNull
+    static ClassTarget packages(@NotNull String... packageNames) {
+
+        String[] prefixes = Arrays.stream(packageNames)
+                .map(packageName -> packageName.endsWith(".") ? packageName : packageName + ".")
+                .toArray(String[]::new);
+
+        return candidate -> {
+            for (String prefix : prefixes) {
+                if (candidate.getClassName().startsWith(prefix)) {
+                    return true;
+                }
+            }
+            return false;
+        };
+    }
+
+    /**
+     * Returns a target that matches every class of the given plugins.
+     *
+     * @param pluginIds plugin ids.
+     */
+    @NotNull
+    static ClassTarget plugins(@NotNull String... pluginIds) {
+
+        String[] ids = pluginIds.clone();
+
+        return candidate -> {
+            for (String id : ids) {
+                if (id.equals(candidate.getPlugin().getId())) {
+                    return true;
+                }
+            }
+            return false;
+        };
+    }
+
+    /**
+     * Returns a target that matches every class whose constant pool references the given annotation type. This
+     * includes classes where the annotation is only present on a field or method, and it cannot see annotations with
+     * {@link java.lang.annotation.RetentionPolicy#SOURCE source} retention.
+     *
+     * @param annotationClassName the binary name of the annotation type, for example {@code com.example.Inject}.
+     */
+    @NotNull
+    static ClassTarget annotatedWith(@NotNull String annotationClassName) {
+        String descriptor = "L" + annotationClassName.replace('.', '/') + ";";
+        return candidate -> candidate.containsConstant(descriptor);
+    }
+
+}
@@ -0,0 +1,57 @@
+package com.jayfella.plugin.manager.transformer;
+
+import com.jayfella.plugin.manager.plugin.description.PluginDescription;
+import org.jetbrains.annotations.NotNull;
+import org.objectweb.asm.ClassVisitor;
+
+/**
+ * Transforms the bytecode of plugin classes as they are loaded.
+ *
+ * Transformers are registered with {@link com.jayfella.plugin.manager.ClassSerializer}. Every transformer whose
+ * {@link #getTarget() target} matches a class takes part in a single ASM pass over that class, chained in the order
+ * they were registered. Classes that no transformer targets are defined from their original bytes without being parsed.
+ */
+public interface ClassTransformer {
+
+    /**
+     * Gets the name of this transformer, used when reporting statistics.
+     */
+    @NotNull
+    String getName();
+
+    /**
+     * Gets the version of this transformer. It must change whenever the output of the transformer changes, because
+     * transformed classes may be cached across restarts.
+     */
+    @NotNull
+    default String getVersion() {
+        return "1";
+    }
+
+    /**
+     * Gets the classes this transformer applies to.
+     */
+    @NotNull
+    ClassTarget getTarget();
+
+    /**
+     * Gets the {@link org.objectweb.asm.ClassWriter} flags this transformer requires, such as
+     * {@link org.objectweb.asm.ClassWriter#COMPUTE_MAXS}. The flags of every transformer in a pass are combined.
+     * With {@link org.objectweb.asm.ClassWriter#COMPUTE_FRAMES} the supertypes needed to compute frames are read from
+     * the class files the plugin can see, without loading them, and a class whose frames needed any is not cached.
+     */
+    default int getWriterFlags() {
+        return 0;
+    }
+
+    /**
+     * Returns a visitor that transforms the given class and forwards the result to the given visitor.
+     *
+     * @param plugin    the plugin that contains the class.
+     * @param className the binary name of the class, for example {@code com.example.Foo}.
+     * @param next      the visitor to forward the transformed class to.
+     */
+    @NotNull
+    ClassVisitor transform(@NotNull PluginDescription plugin, @NotNull String className, @NotNull ClassVisitor next);
+
+}
@@ -0,0 +1,149 @@
+package com.jayfella.plugin.manager;
+
+import com.jayfella.plugin.manager.fixture.PluginJarGenerator;
+import com.jayfella.plugin.manager.plugin.Plugin;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Unloads plugins that have borrowed classes from each other and verifies that their class loaders are garbage
+ * collected, whether the borrower is unloaded on its own or together with the plugin it borrowed from. Also verifies
+ * that a lookup which found a class loader before it was unloaded cannot publish a class from it afterwards.
+ */
+public class TestClassLoaderUnloading {
+
+    private static final Logger log = Logger.getLogger(TestClassLoaderUnloading.class.getName());
+
+    private static final int GC_ATTEMPTS = 10;
+
+    public static void main(String... args) throws Exception {
+
+        File pluginDir = Files.createTempDirectory("class-loader-unloading").toFile();
+
+        try {
+
+            PluginJarGenerator.writePlugin(pluginDir, "alpha", Collections.emptyList());
+            PluginJarGenerator.writePlugin(pluginDir, "beta", Collections.singletonList("alpha"));
+
+            Logger.getLogger("Plugin Manager").setLevel(Level.WARNING);
+
+            // the borrower is unloaded: the plugin it borrowed from must not keep it alive.
+            testUnload(pluginDir, "beta", "beta");
+
+            // the provider is unloaded, and the borrower with it as its dependent.
+            testUnload(pluginDir, "alpha", "beta");
+
+        } finally {
+            FileUtils.deleteDirectory(pluginDir);
+        }
+
+        testClosedLookup();
+
+        log.info("Test Complete.");
+    }
+
+    /**
+     * Loads every plugin, makes the given borrower resolve the main class of alpha through its own class loader, then
+     * unloads the given plugin and waits for the class loaders it unloaded to be collected.
+     */
+    private static void testUnload(File pluginDir, String unloadId, String borrowerId) throws IOException, ReflectiveOperationException, InterruptedException {
+
+        SimplePluginManager pluginManager = new SimplePluginManager();
+        pluginManager.registerInterface(SimplePluginLoader.class);
+        pluginManager.setClassLoaderLeakGracePeriod(0, TimeUnit.SECONDS);
+        pluginManager.loadPlugins(pluginDir);
+        pluginManager.enablePlugins();
+
+        String className = PluginJarGenerator.getPackageName("alpha") + ".Main";
+        ClassLoader borrower = pluginManager.getPlugin(borrowerId).getClass().getClassLoader();
+
+        if (Class.forName(className, true, borrower).getClassLoader() == borrower) {
+            throw new IllegalStateException(borrowerId + " defined " + className + " itself.");
+        }
+
+        borrower = null;
+
+        Plugin[] unloaded = pluginManager.unloadPlugin(pluginManager.getPlugin(unloadId));
+        int unloadedCount = unloaded.length;
+        unloaded = null;
+
+        for (int i = 0; i < GC_ATTEMPTS && pluginManager.getUncollectedClassLoaderCount() > 0; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+
+        String[] leaks = pluginManager.getSuspectedClassLoaderLeaks();
+
+        if (pluginManager.getUncollectedClassLoaderCount() != 0 || leaks.length != 0) {
+            throw new IllegalStateException(String.format("Unloading %s: uncollected=%d leaks=%s",
+                    unloadId, pluginManager.getUncollectedClassLoaderCount(), Arrays.toString(leaks)));
+        }
+
+        log.info(String.format("Unloading %s: %d class loaders collected", unloadId, unloadedCount));
+    }
+
+    /**
+     * Closes a class loader the way unloading does before its classes are purged, then makes a lookup that already
+     * found it, and a borrower that already resolved one of its classes, finish. Neither may publish a class of it.
+     */
+    private static void testClosedLookup() throws IOException {
+
+        File pluginDir = Files.createTempDirectory("class-loader-closed").toFile();
+
+        try {
+
+            PluginJarGenerator.writePlugin(pluginDir, "gamma", Collections.emptyList(), Collections.emptyMap(), 1);
+            PluginJarGenerator.writePlugin(pluginDir, "delta", Collections.singletonList("gamma"));
+
+            SimplePluginManager pluginManager = new SimplePluginManager();
+            pluginManager.registerInterface(SimplePluginLoader.class);
+            pluginManager.loadPlugins(pluginDir);
+
+            Plugin gamma = pluginManager.getPlugin("gamma");
+            SimplePluginLoader loader = (SimplePluginLoader) gamma.getPluginLoader();
+            SimplePluginClassLoader gammaLoader = (SimplePluginClassLoader) loader.getClassLoader(gamma);
+            SimplePluginClassLoader deltaLoader = (SimplePluginClassLoader) loader.getClassLoader(pluginManager.getPlugin("delta"));
+
+            String undefined = PluginJarGenerator.getClassName("gamma", 0);
+            String defined = PluginJarGenerator.getPackageName("gamma") + ".Main";
+
+            gammaLoader.markClosed();
+
+            try {
+                gammaLoader.findClass(undefined, false);
+                throw new IllegalStateException("A closed class loader defined " + undefined);
+            } catch (ClassNotFoundException expected) {
+                // the lookup moves on to the next plugin.
+            }
+
+            if (loader.getClassByName(undefined) != null) {
+                throw new IllegalStateException("A class of a closed class loader was published.");
+            }
+
+            // the class was found in the global cache, but its class loader was closed before it was cached.
+            try {
+                deltaLoader.findClass(defined, true);
+            } catch (ClassNotFoundException e) {
+                throw new IllegalStateException("The class of a closing plugin was not found.", e);
+            }
+
+            if (deltaLoader.getClasses().contains(defined)) {
+                throw new IllegalStateException("A borrower cached a class of a closed class loader.");
+            }
+
+        } finally {
+            FileUtils.deleteDirectory(pluginDir);
+        }
+
+        log.info("Closed lookup: OK");
+    }
+
+}
@@ -0,0 +1,380 @@
+package com.jayfella.plugin.manager;
+
+import com.jayfella.plugin.manager.fixture.PluginJarGenerator;
+import com.jayfella.plugin.manager.json.JsonObjectMapper;
+import com.jayfella.plugin.manager.plugin.description.PluginDescription;
+import com.jayfella.plugin.manager.transformer.ClassTarget;
+import com.jayfella.plugin.manager.transformer.ClassTransformer;
+import org.apache.commons.io.FileUtils;
+import org.jetbrains.annotations.NotNull;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Verifies that classes no transformer targets are passed through untouched without running any transformer, that
+ * transformers see a class in the order they were registered, that the time of a pass is split between the
+ * transformers in it, and that frames can be computed for a class whose supertypes only its plugin can see.
+ */
+public class TestClassSerializer {
+
+    private static final Logger log = Logger.getLogger(TestClassSerializer.class.getName());
+
+    private static final String MARKER_PREFIX = "marker$";
+
+    private static final long SLOW_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final int TIMED_CLASSES = 20;
+
+    public static void main(String... args) throws Exception {
+
+        testBypass();
+        testOrdering();
+        testTimings();
+        testComputeFrames();
+
+        log.info("Test Complete.");
+    }
+
+    private static void testBypass() {
+
+        ClassSerializer serializer = new ClassSerializer();
+        PluginDescription plugin = createDescription("bypass");
+
+        ByteBuffer untargeted = ByteBuffer.wrap(PluginJarGenerator.createEmptyClass("generated.other.Untargeted"));
+        check(serializer.processClass(plugin, "generated/other/Untargeted.class", untargeted) == untargeted,
+                "A class was not passed through while no transformer was registered.");
+
+        MarkerTransformer transformer = new MarkerTransformer("target", ClassTarget.packages("generated.target"));
+        serializer.registerTransformer(transformer);
+
+        check(serializer.processClass(plugin, "generated/other/Untargeted.class", untargeted) == untargeted,
+                "A class that no transformer targets was not passed through.");
+        check(transformer.calls.get() == 0, "A transformer ran over a class it does not target.");
+        check(serializer.getBypassedCount() == 2 && serializer.getTransformedCount() == 0,
+                "Bypassed classes were not counted.");
+
+        ByteBuffer targeted = ByteBuffer.wrap(PluginJarGenerator.createEmptyClass("generated.target.Targeted"));
+        ByteBuffer result = serializer.processClass(plugin, "generated/target/Targeted.class", targeted);
+
+        check(result != targeted && transformer.calls.get() == 1, "A targeted class was not transformed.");
+        check(getMarkers(result).equals(Arrays.asList("target", "0")), "The targeted class was not marked.");
+        check(serializer.getStats(transformer).getClassCount() == 1, "The transformed class was not counted.");
+
+        log.info("Bypass: OK");
+    }
+
+    private static void testOrdering() {
+
+        ClassSerializer serializer = new ClassSerializer();
+        PluginDescription plugin = createDescription("ordering");
+
+        // each transformer records how many markers it saw before its own, so the markers give the order of the chain.
+        serializer.registerTransformer(new MarkerTransformer("first", ClassTarget.all()));
+        serializer.registerTransformer(new MarkerTransformer("unmatched", ClassTarget.packages("generated.elsewhere")));
+        serializer.registerTransformer(new MarkerTransformer("second", ClassTarget.all()));
+        serializer.registerTransformer(new MarkerTransformer("third", ClassTarget.plugins("ordering")));
+
+        ByteBuffer clazz = ByteBuffer.wrap(PluginJarGenerator.createEmptyClass("generated.ordering.Ordered"));
+        List<String> markers = getMarkers(serializer.processClass(plugin, "generated/ordering/Ordered.class", clazz));
+
+        List<String> expected = Arrays.asList("first", "0", "second", "1", "third", "2");
+
+        if (!markers.equals(expected)) {
+            throw new IllegalStateException("Expected the markers " + expected + " but found " + markers);
+        }
+
+        log.info("Ordering: OK");
+    }
+
+    private static void testTimings() {
+
+        ClassSerializer serializer = new ClassSerializer();
+        serializer.setTransformerTimingsEnabled(true);
+
+        MarkerTransformer slow = new MarkerTransformer("slow", ClassTarget.all(), SLOW_NANOS);
+        serializer.registerTransformer(slow);
+
+        transformClasses(serializer);
+
+        // a transformer that runs alone is charged the whole pass.
+        long slowNanos = serializer.getStats(slow).getNanos();
+        check(slowNanos == serializer.getTransformNanos(), "A transformer that ran alone was not charged the whole pass.");
+        check(slowNanos >= SLOW_NANOS * TIMED_CLASSES, "The slow transformer was not charged its own time.");
+
+        MarkerTransformer fast = new MarkerTransformer("fast", ClassTarget.all());
+        serializer.registerTransformer(fast);
+
+        long passNanos = serializer.getTransformNanos();
+
+        transformClasses(serializer);
+
+        passNanos = serializer.getTransformNanos() - passNanos;
+        long slowShare = serializer.getStats(slow).getNanos() - slowNanos;
+        long fastShare = serializer.getStats(fast).getNanos();
+
+        // the pass is split evenly, less at most a nanosecond of rounding per class.
+        check(slowShare == fastShare, "The time of a pass was not split evenly, slow=" + slowShare + " fast=" + fastShare);
+        check(passNanos - slowShare - fastShare < TIMED_CLASSES, "The time of a pass was not charged in full.");
+
+        log.info(String.format("Timings, shared pass: slow=%.3f ms fast=%.3f ms",
+                slowShare / 1_000_000.0, fastShare / 1_000_000.0));
+
+        // without timings only the classes are counted.
+        serializer = new ClassSerializer();
+        slow = new MarkerTransformer("slow", ClassTarget.all(), SLOW_NANOS);
+        serializer.registerTransformer(slow);
+
+        transformClasses(serializer);
+
+        check(serializer.getStats(slow).getClassCount() == TIMED_CLASSES, "Transformed classes were not counted.");
+        check(serializer.getStats(slow).getNanos() == 0, "A transformer was timed while timings were disabled.");
+
+        log.info("Timings: OK");
+    }
+
+    private static void testComputeFrames() throws Exception {
+
+        File pluginDir = Files.createTempDirectory("compute-frames").toFile();
+
+        try {
+
+            // both children extend a class of another plugin, which the class loader of ASM cannot see.
+            String packageName = PluginJarGenerator.getPackageName("frames");
+            String superClass = PluginJarGenerator.getClassName("framesbase", 0);
+            String first = packageName + ".First";
+            String second = packageName + ".Second";
+            String chooser = packageName + ".Chooser";
+
+            Map<String, byte[]> classes = new LinkedHashMap<>();
+            classes.put(first, PluginJarGenerator.createEmptyClass(first, superClass));
+            classes.put(second, PluginJarGenerator.createEmptyClass(second, superClass));
+            classes.put(chooser, createChooserClass(chooser, first, second, superClass));
+
+            PluginJarGenerator.writePlugin(pluginDir, "framesbase", Collections.emptyList(), Collections.emptyMap(), 1);
+            PluginJarGenerator.writePlugin(pluginDir, "frames", Collections.singletonList("framesbase"),
+                    Collections.emptyMap(), 0, Collections.emptyList(), classes);
+
+            SimplePluginManager pluginManager = new SimplePluginManager();
+            pluginManager.registerInterface(SimplePluginLoader.class);
+
+            MarkerTransformer transformer = new MarkerTransformer("frames", ClassTarget.plugins("frames"), 0, ClassWriter.COMPUTE_FRAMES);
+            pluginManager.getClassSerializer().registerTransformer(transformer);
+            pluginManager.loadPlugins(pluginDir);
+
+            ClassLoader classLoader = pluginManager.getPlugin("frames").getClass().getClassLoader();
+            Class<?> chooserClass = Class.forName(chooser, true, classLoader);
+
+            // if the frames could not be computed, the class was defined from its original bytes.
+            try {
+                chooserClass.getField(MARKER_PREFIX + "frames$0");
+            } catch (NoSuchFieldException e) {
+                throw new IllegalStateException("The frames of a class whose supertype is a plugin class were not computed.", e);
+            }
+
+            Object chosen = chooserClass.getMethod("choose", boolean.class).invoke(null, false);
+            check(chosen.getClass().getName().equals(second), "The transformed class did not run correctly.");
+
+        } finally {
+            FileUtils.deleteDirectory(pluginDir);
+        }
+
+        log.info("Compute frames: OK");
+    }
+
+    private static void transformClasses(ClassSerializer serializer) {
+
+        PluginDescription plugin = createDescription("timings");
+
+        for (int i = 0; i < TIMED_CLASSES; i++) {
+            String className = PluginJarGenerator.getClassName("timings", i);
+            ByteBuffer clazz = ByteBuffer.wrap(PluginJarGenerator.createEmptyClass(className));
+            serializer.processClass(plugin, className.replace('.', '/') + ".class", clazz);
+        }
+    }
+
+    /**
+     * Creates a class with a static method that returns a new instance of one of the two given classes, so the frame
+     * where the branches meet holds their common superclass.
+     */
+    private static byte[] createChooserClass(String className, String first, String second, String superClass) {
+
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, className.replace('.', '/'), null, "java/lang/Object", null);
+
+        Label otherwise = new Label();
+        Label done = new Label();
+
+        MethodVisitor choose = cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "choose", "(Z)Ljava/lang/Object;", null, null);
+        choose.visitCode();
+        choose.visitVarInsn(Opcodes.ILOAD, 0);
+        choose.visitJumpInsn(Opcodes.IFEQ, otherwise);
+        newInstance(choose, first);
+        choose.visitJumpInsn(Opcodes.GOTO, done);
+        choose.visitLabel(otherwise);
+        choose.visitFrame(Opcodes.F_SAME, 0, null, 0, null);
+        newInstance(choose, second);
+        choose.visitLabel(done);
+        choose.visitFrame(Opcodes.F_SAME1, 0, null, 1, new Object[] { superClass.replace('.', '/') });
+        choose.visitInsn(Opcodes.ARETURN);
+        choose.visitMaxs(0, 0);
+        choose.visitEnd();
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static void newInstance(MethodVisitor method, String className) {
+        String internalName = className.replace('.', '/');
+        method.visitTypeInsn(Opcodes.NEW, internalName);
+        method.visitInsn(Opcodes.DUP);
+        method.visitMethodInsn(Opcodes.INVOKESPECIAL, internalName, "<init>", "()V", false);
+    }
+
+    /**
+     * Gets the marker fields of the given class in the order they were added, as pairs of the transformer name and the
+     * number of markers that transformer saw before adding its own.
+     */
+    private static List<String> getMarkers(ByteBuffer clazz) {
+
+        byte[] bytes = new byte[clazz.remaining()];
+        clazz.duplicate().get(bytes);
+
+        List<String> markers = new ArrayList<>();
+
+        new ClassReader(bytes).accept(new ClassVisitor(Opcodes.ASM7) {
+            @Override
+            public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+
+                if (name.startsWith(MARKER_PREFIX)) {
+                    markers.addAll(Arrays.asList(name.substring(MARKER_PREFIX.length()).split("\\$")));
+                }
+
+                return null;
+            }
+        }, 0);
+
+        return markers;
+    }
+
+    private static PluginDescription createDescription(String id) {
+
+        Map<String, Object> values = new HashMap<>();
+        values.put("id", id);
+        values.put("main", "generated." + id + ".Main");
+
+        return JsonObjectMapper.getInstance().getObjectMapper().convertValue(values, PluginDescription.class);
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+
+    /**
+     * Adds a field named after itself and the number of marker fields it saw before, optionally spending the given
+     * time on every class and requiring the given class writer flags.
+     */
+    private static class MarkerTransformer implements ClassTransformer {
+
+        private final String name;
+        private final ClassTarget target;
+        private final long busyNanos;
+        private final int writerFlags;
+
+        private final AtomicInteger calls = new AtomicInteger();
+
+        MarkerTransformer(String name, ClassTarget target) {
+            this(name, target, 0);
+        }
+
+        MarkerTransformer(String name, ClassTarget target, long busyNanos) {
+            this(name, target, busyNanos, 0);
+        }
+
+        MarkerTransformer(String name, ClassTarget target, long busyNanos, int writerFlags) {
+            this.name = name;
+            this.target = target;
+            this.busyNanos = busyNanos;
+            this.writerFlags = writerFlags;
+        }
+
+        @Override
+        public @NotNull String getName() {
+            return name;
+        }
+
+        @Override
+        public @NotNull ClassTarget getTarget() {
+            return target;
+        }
+
+        @Override
+        public int getWriterFlags() {
+            return writerFlags;
+        }
+
+        @Override
+        public @NotNull ClassVisitor transform(@NotNull PluginDescription plugin, @NotNull String className, @NotNull ClassVisitor next) {
+
+            calls.incrementAndGet();
+
+            return new ClassVisitor(Opcodes.ASM7, next) {
+
+                private int seen;
+
+                @Override
+                public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+
+                    if (name.startsWith(MARKER_PREFIX)) {
+                        seen++;
+                    }
+
+                    return super.visitField(access, name, descriptor, signature, value);
+                }
+
+                @Override
+                public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+
+                    MethodVisitor method = super.visitMethod(access, name, descriptor, signature, exceptions);
+
+                    // a transformer that needs frames rewrites code, so the methods cannot be copied as they are.
+                    return (writerFlags & ClassWriter.COMPUTE_FRAMES) == 0 ? method : new MethodVisitor(Opcodes.ASM7, method) { };
+                }
+
+                @Override
+                public void visitEnd() {
+
+                    long start = System.nanoTime();
+
+                    while (System.nanoTime() - start < busyNanos) {
+                        // spin, so the time is spent in this transformer rather than off the CPU.
+                    }
+
+                    super.visitField(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, MARKER_PREFIX + MarkerTransformer.this.name + "$" + seen, "I", null, null).visitEnd();
+                    super.visitEnd();
+                }
+            };
+        }
+
+    }
+
+}
@@ -0,0 +1,178 @@
+package com.jayfella.plugin.manager;
+
+import com.jayfella.plugin.manager.fixture.PluginJarGenerator;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Loads every class of many plugins from many threads at once, each thread in its own random order and through a
+ * random class loader, and verifies that every class is defined exactly once and that every thread sees the same
+ * class. Reports how many classes are resolved per second.
+ */
+public class TestConcurrentClassLoading {
+
+    private static final Logger log = Logger.getLogger(TestConcurrentClassLoading.class.getName());
+
+    private static final int PLUGIN_COUNT = 20;
+    private static final int CLASS_COUNT = 250;
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 5;
+
+    public static void main(String... args) throws IOException, InterruptedException {
+
+        File pluginDir = Files.createTempDirectory("concurrent-class-loading").toFile();
+
+        try {
+
+            List<String> ids = new ArrayList<>();
+            List<String> classNames = new ArrayList<>();
+
+            // every plugin depends on the one before it, so a plugin may look up the classes of all plugins before it.
+            for (int i = 0; i < PLUGIN_COUNT; i++) {
+                String id = String.format("plugin-%04d", i);
+                List<String> dependencies = i == 0 ? Collections.emptyList() : Collections.singletonList(ids.get(i - 1));
+
+                PluginJarGenerator.writePlugin(pluginDir, id, dependencies, Collections.emptyMap(), CLASS_COUNT);
+                ids.add(id);
+
+                for (int j = 0; j < CLASS_COUNT; j++) {
+                    classNames.add(PluginJarGenerator.getClassName(id, j));
+                }
+            }
+
+            Logger.getLogger("Plugin Manager").setLevel(Level.WARNING);
+
+            long totalNanos = 0;
+            long totalLookups = 0;
+
+            // every round uses new class loaders, so every class is defined while the threads race for it.
+            for (int round = 0; round < ROUNDS; round++) {
+
+                SimplePluginManager pluginManager = new SimplePluginManager();
+                pluginManager.registerInterface(SimplePluginLoader.class);
+                pluginManager.loadPlugins(pluginDir);
+
+                List<ClassLoader> classLoaders = new ArrayList<>();
+
+                for (String id : ids) {
+                    classLoaders.add(pluginManager.getPlugin(id).getClass().getClassLoader());
+                }
+
+                SimplePluginLoader pluginLoader = (SimplePluginLoader) pluginManager.getPlugin(ids.get(0)).getPluginLoader();
+
+                Map<String, Class<?>> resolved = new ConcurrentHashMap<>();
+                ConcurrentLinkedQueue<Throwable> failures = new ConcurrentLinkedQueue<>();
+                CyclicBarrier barrier = new CyclicBarrier(THREADS + 1);
+
+                List<Thread> threads = new ArrayList<>();
+
+                for (int i = 0; i < THREADS; i++) {
+                    threads.add(new Thread(() -> {
+
+                        List<Integer> order = new ArrayList<>();
+
+                        for (int j = 0; j < classNames.size(); j++) {
+                            order.add(j);
+                        }
+
+                        Collections.shuffle(order, ThreadLocalRandom.current());
+
+                        try {
+                            barrier.await();
+
+                            for (int index : order) {
+
+                                String className = classNames.get(index);
+
+                                // half of the lookups go through the class loader of the plugin or one of its
+                                // dependents, half through the global lookup.
+                                Class<?> clazz;
+
+                                if (ThreadLocalRandom.current().nextBoolean()) {
+                                    int provider = index / CLASS_COUNT;
+                                    ClassLoader classLoader = classLoaders.get(ThreadLocalRandom.current().nextInt(provider, PLUGIN_COUNT));
+                                    clazz = Class.forName(className, false, classLoader);
+                                } else {
+                                    clazz = pluginLoader.getClassByName(className);
+                                }
+
+                                if (clazz == null) {
+                                    throw new AssertionError("Class " + className + " was not found.");
+                                }
+
+                                Class<?> previous = resolved.putIfAbsent(className, clazz);
+
+                                if (previous != null && previous != clazz) {
+                                    throw new AssertionError("Class " + className + " was defined twice.");
+                                }
+                            }
+                        } catch (Throwable e) {
+                            failures.add(e);
+                        }
+
+                    }, "Loader " + i));
+                }
+
+                threads.forEach(Thread::start);
+
+                try {
+                    barrier.await();
+                } catch (Exception e) {
+                    throw new AssertionError("The loader threads could not be started.", e);
+                }
+
+                long start = System.nanoTime();
+
+                for (Thread thread : threads) {
+                    thread.join(TimeUnit.SECONDS.toMillis(60));
+
+                    if (thread.isAlive()) {
+                        throw new AssertionError(thread.getName() + " did not finish.");
+                    }
+                }
+
+                long elapsed = System.nanoTime() - start;
+
+                if (!failures.isEmpty()) {
+                    AssertionError error = new AssertionError(failures.size() + " thread(s) failed in round " + round + ".");
+                    failures.forEach(error::addSuppressed);
+                    throw error;
+                }
+
+                if (resolved.size() != classNames.size()) {
+                    throw new AssertionError("Expected " + classNames.size() + " classes, but resolved " + resolved.size());
+                }
+
+                totalNanos += elapsed;
+                totalLookups += (long) THREADS * classNames.size();
+
+                // unloading the first plugin unloads every plugin that depends on it.
+                pluginManager.unloadPlugin(pluginManager.getPlugin(ids.get(0)));
+            }
+
+            log.info(String.format("%d lookups of %d classes across %d threads in %d ms (%.0f/s).",
+                    totalLookups, classNames.size() * ROUNDS, THREADS, TimeUnit.NANOSECONDS.toMillis(totalNanos),
+                    totalLookups * 1e9 / totalNanos));
+
+        } finally {
+            FileUtils.deleteDirectory(pluginDir);
+        }
+
+        log.info("Test Complete.");
+    }
+
+}
@@ -0,0 +1,168 @@
+package com.jayfella.plugin.manager;
+
+import com.jayfella.plugin.manager.fixture.PluginJarGenerator;
+import com.jayfella.plugin.manager.plugin.Plugin;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Looks up plugins and classes from several threads while another thread keeps unloading and adding plugins, and
+ * verifies that no reader ever fails and that the registry is consistent afterwards.
+ */
+public class TestConcurrentRegistry {
+
+    private static final Logger log = Logger.getLogger(TestConcurrentRegistry.class.getName());
+
+    private static final int PLUGIN_COUNT = 100;
+    private static final int READERS = 4;
+    private static final long DURATION_MS = 5000;
+
+    public static void main(String... args) throws IOException, InterruptedException {
+
+        File pluginDir = Files.createTempDirectory("concurrent-registry").toFile();
+
+        try {
+
+            // every plugin depends on the base plugin, so each of them can be unloaded on its own.
+            PluginJarGenerator.writePlugin(pluginDir, "base", Collections.emptyList());
+
+            List<String> ids = new ArrayList<>();
+
+            for (int i = 0; i < PLUGIN_COUNT; i++) {
+                String id = String.format("plugin-%04d", i);
+                PluginJarGenerator.writePlugin(pluginDir, id, Collections.singletonList("base"));
+                ids.add(id);
+            }
+
+            Logger.getLogger("Plugin Manager").setLevel(Level.WARNING);
+
+            SimplePluginManager pluginManager = new SimplePluginManager();
+            pluginManager.registerInterface(SimplePluginLoader.class);
+            pluginManager.loadPlugins(pluginDir);
+            pluginManager.enablePlugins();
+
+            SimplePluginLoader pluginLoader = (SimplePluginLoader) pluginManager.getPlugin("base").getPluginLoader();
+
+            AtomicBoolean running = new AtomicBoolean(true);
+            AtomicLong lookups = new AtomicLong();
+            AtomicLong reloads = new AtomicLong();
+            ConcurrentLinkedQueue<Throwable> failures = new ConcurrentLinkedQueue<>();
+
+            List<Thread> threads = new ArrayList<>();
+
+            for (int i = 0; i < READERS; i++) {
+                threads.add(new Thread(() -> {
+
+                    long count = 0;
+
+                    try {
+                        while (running.get()) {
+
+                            String id = ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+
+                            Plugin plugin = pluginManager.getPlugin(id);
+
+                            if (plugin != null && pluginManager.getResolvedDependencies(plugin) == null && pluginManager.getPlugin(id) == plugin) {
+                                throw new AssertionError("Registered plugin " + id + " has no resolved dependencies.");
+                            }
+
+                            // the class may be absent while its plugin is being reloaded, but the lookup must not fail.
+                            pluginLoader.getClassByName("generated." + id.replace('-', '_') + ".Main");
+
+                            for (Plugin registered : pluginManager.getPlugins()) {
+                                registered.getDescription().getId();
+                            }
+
+                            pluginManager.getEnabledPluginCount();
+
+                            count++;
+                        }
+                    } catch (Throwable e) {
+                        failures.add(e);
+                    }
+
+                    lookups.addAndGet(count);
+
+                }, "Reader " + i));
+            }
+
+            threads.add(new Thread(() -> {
+
+                try {
+                    while (running.get()) {
+
+                        String id = ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+                        Plugin plugin = pluginManager.getPlugin(id);
+
+                        if (plugin == null) {
+                            throw new AssertionError("Plugin " + id + " went missing.");
+                        }
+
+                        File file = plugin.getFile();
+                        pluginManager.unloadPlugin(plugin);
+
+                        if (pluginManager.addPlugins(Collections.singletonList(file)).length != 1) {
+                            throw new AssertionError("Plugin " + id + " could not be added again.");
+                        }
+
+                        reloads.incrementAndGet();
+                    }
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+
+            }, "Writer"));
+
+            threads.forEach(Thread::start);
+            Thread.sleep(DURATION_MS);
+            running.set(false);
+
+            for (Thread thread : threads) {
+                thread.join(TimeUnit.SECONDS.toMillis(30));
+            }
+
+            if (!failures.isEmpty()) {
+                AssertionError error = new AssertionError(failures.size() + " thread(s) failed.");
+                failures.forEach(error::addSuppressed);
+                throw error;
+            }
+
+            Set<String> registered = new HashSet<>();
+
+            for (Plugin plugin : pluginManager.getPlugins()) {
+                if (!registered.add(plugin.getId())) {
+                    throw new AssertionError("Plugin " + plugin.getId() + " is registered twice.");
+                }
+            }
+
+            if (registered.size() != PLUGIN_COUNT + 1 || pluginManager.getEnabledPluginCount() != PLUGIN_COUNT + 1) {
+                throw new AssertionError("Expected " + (PLUGIN_COUNT + 1) + " enabled plugins, but " + registered.size()
+                        + " are registered and " + pluginManager.getEnabledPluginCount() + " are enabled.");
+            }
+
+            log.info(String.format("%d lookups (%.0f/s) across %d readers while %d plugins were unloaded and added again.",
+                    lookups.get(), lookups.get() * 1000.0 / DURATION_MS, READERS, reloads.get()));
+
+        } finally {
+            FileUtils.deleteDirectory(pluginDir);
+        }
+
+        log.info("Test Complete.");
+    }
+
+}
@@ -0,0 +1,163 @@
+package com.jayfella.plugin.manager;
+
+import com.jayfella.plugin.manager.fixture.PluginFarmGenerator;
+import com.jayfella.plugin.manager.fixture.PluginFarmGenerator.Topology;
+import com.jayfella.plugin.manager.plugin.Plugin;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Loads and enables farms of 100, 1,000 and 10,000 generated plugins in each dependency topology, and verifies that
+ * startup time and retained heap grow roughly linearly with the number of plugins.
+ *
+ * Run with enough heap and file handles for 10,000 open jars, for example {@code -Xmx2g}.
+ */
+public class TestLargeScaleStartup {
+
+    private static final Logger log = Logger.getLogger(TestLargeScaleStartup.class.getName());
+
+    private static final int[] SIZES = { 100, 1000, 10000 };
+    private static final int CLASS_COUNT = 5;
+
+    // how much more each additional plugin may cost between the two largest farms than between the two smallest before
+    // growth is not linear. The cost of the additional plugins is compared, rather than the cost per plugin, so the fixed
+    // cost of a plugin manager and the noise of measuring a small farm do not skew the comparison.
+    private static final double TIME_TOLERANCE = 3.0;
+    private static final double HEAP_TOLERANCE = 2.0;
+
+    private static final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+    public static void main(String... args) throws IOException, InterruptedException {
+
+        Logger.getLogger("Plugin Manager").setLevel(Level.WARNING);
+
+        File root = Files.createTempDirectory("large-scale-startup").toFile();
+
+        try {
+
+            // the first farm is loaded once before anything is measured, so it does not pay for class loading and JIT.
+            measure(root, Topology.RANDOM_DAG, SIZES[0]);
+
+            for (Topology topology : Topology.values()) {
+
+                long[] nanos = new long[SIZES.length];
+                long[] bytes = new long[SIZES.length];
+
+                for (int i = 0; i < SIZES.length; i++) {
+
+                    Measurement measurement = measure(root, topology, SIZES[i]);
+
+                    nanos[i] = measurement.nanos;
+                    bytes[i] = measurement.bytes;
+
+                    log.info(String.format("%-10s %6d plugins: %7d ms (%6.1f us/plugin), %6.1f MB retained (%5.1f KB/plugin)",
+                            topology, SIZES[i], TimeUnit.NANOSECONDS.toMillis(nanos[i]), nanos[i] / (SIZES[i] * 1000.0),
+                            bytes[i] / (1024.0 * 1024.0), bytes[i] / (SIZES[i] * 1024.0)));
+                }
+
+                int last = SIZES.length - 1;
+
+                double firstNanos = getMarginalCost(nanos, 1);
+                double lastNanos = getMarginalCost(nanos, last);
+
+                if (lastNanos > firstNanos * TIME_TOLERANCE) {
+                    throw new AssertionError(String.format("%s: each plugin from %d to %d takes %.1f us to start, but %.1f us from %d to %d.",
+                            topology, SIZES[last - 1], SIZES[last], lastNanos / 1000, firstNanos / 1000, SIZES[0], SIZES[1]));
+                }
+
+                double firstBytes = getMarginalCost(bytes, 1);
+                double lastBytes = getMarginalCost(bytes, last);
+
+                if (lastBytes > firstBytes * HEAP_TOLERANCE) {
+                    throw new AssertionError(String.format("%s: each plugin from %d to %d retains %.1f KB, but %.1f KB from %d to %d.",
+                            topology, SIZES[last - 1], SIZES[last], lastBytes / 1024, firstBytes / 1024, SIZES[0], SIZES[1]));
+                }
+            }
+
+        } finally {
+            FileUtils.deleteDirectory(root);
+        }
+
+        log.info("Test Complete.");
+    }
+
+    /**
+     * Generates a farm, then loads and enables it with a new plugin manager and measures the time that took and the
+     * heap the plugin manager retains afterwards.
+     */
+    private static Measurement measure(File root, Topology topology, int size) throws IOException, InterruptedException {
+
+        File pluginDir = new File(root, topology.name().toLowerCase() + "-" + size);
+
+        new PluginFarmGenerator(topology, size)
+                .setClassCount(CLASS_COUNT)
+                .generate(pluginDir);
+
+        long heapBefore = getUsedHeap();
+        long start = System.nanoTime();
+
+        SimplePluginManager pluginManager = new SimplePluginManager();
+        pluginManager.registerInterface(SimplePluginLoader.class);
+        pluginManager.loadPlugins(pluginDir);
+        pluginManager.enablePlugins();
+
+        long nanos = System.nanoTime() - start;
+
+        if (pluginManager.getEnabledPluginCount() != size) {
+            throw new AssertionError(String.format("%s: expected %d enabled plugins, but %d are enabled.",
+                    topology, size, pluginManager.getEnabledPluginCount()));
+        }
+
+        long bytes = getUsedHeap() - heapBefore;
+
+        // every plugin depends on the first one, directly or transitively, so this unloads the whole farm.
+        Plugin first = pluginManager.getPlugin(PluginFarmGenerator.getPluginId(0));
+        pluginManager.unloadPlugin(first);
+
+        if (pluginManager.getPlugins().length != 0) {
+            throw new AssertionError(topology + ": " + pluginManager.getPlugins().length + " plugins are still loaded.");
+        }
+
+        FileUtils.deleteDirectory(pluginDir);
+
+        return new Measurement(nanos, bytes);
+    }
+
+    /**
+     * Gets the cost of each plugin added between the farm at the given index and the one before it.
+     */
+    private static double getMarginalCost(long[] costs, int index) {
+        return (costs[index] - costs[index - 1]) / (double) (SIZES[index] - SIZES[index - 1]);
+    }
+
+    private static long getUsedHeap() throws InterruptedException {
+
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    private static final class Measurement {
+
+        private final long nanos;
+        private final long bytes;
+
+        Measurement(long nanos, long bytes) {
+            this.nanos = nanos;
+            this.bytes = bytes;
+        }
+
+    }
+
+}
@@ -0,0 +1,136 @@
+package com.jayfella.plugin.manager;
+
+import com.jayfella.plugin.manager.fixture.PluginJarGenerator;
+import com.jayfella.plugin.manager.plugin.Plugin;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Makes the onEnable of a plugin start a thread that activates a lazy dependent of it, or disables it, and then use
+ * the plugin manager while that thread waits for the plugin to finish enabling. Verifies that neither deadlocks.
+ */
+public class TestLockOrder {
+
+    private static final Logger log = Logger.getLogger(TestLockOrder.class.getName());
+
+    private static final long TIMEOUT_SECONDS = 10;
+
+    // what the probe does with the plugin manager on another thread while base is enabling.
+    private static volatile SimplePluginManager pluginManager;
+    private static volatile Consumer<SimplePluginManager> action;
+    private static volatile Thread actionThread;
+
+    public static void main(String... args) throws Exception {
+
+        File pluginDir = Files.createTempDirectory("lock-order").toFile();
+
+        try {
+
+            PluginJarGenerator.writePlugin(pluginDir, "base", Collections.emptyList(), Collections.emptyMap(), 0,
+                    Collections.singletonList(Probe.class.getName()));
+            PluginJarGenerator.writePlugin(pluginDir, "lazy", Collections.singletonList("base"),
+                    Collections.singletonMap("lazy", true));
+
+            Logger.getLogger("Plugin Manager").setLevel(Level.WARNING);
+
+            // daemon threads, so a deadlock fails the test instead of hanging it.
+            ExecutorService executor = Executors.newFixedThreadPool(2, runnable -> {
+                Thread thread = new Thread(runnable);
+                thread.setDaemon(true);
+                return thread;
+            });
+
+            try {
+
+                // the lazy plugin is activated, and base enabled as its dependency, while base is enabling.
+                run(pluginDir, executor, manager -> manager.activatePlugin("lazy"));
+
+                Plugin lazy = pluginManager.getPlugin("lazy");
+
+                if (lazy == null || !lazy.isEnabled() || !pluginManager.getPlugin("base").isEnabled()) {
+                    throw new IllegalStateException("The lazy plugin and its dependency were not enabled.");
+                }
+
+                log.info("Activate while enabling: OK");
+
+            } finally {
+                executor.shutdownNow();
+            }
+
+            // base is disabled while it is enabling.
+            run(pluginDir, null, manager -> manager.disablePlugin(manager.getPlugin("base")));
+
+            if (pluginManager.getPlugin("base").isEnabled()) {
+                throw new IllegalStateException("base was not disabled once it had finished enabling.");
+            }
+
+            log.info("Disable while enabling: OK");
+
+        } finally {
+            FileUtils.deleteDirectory(pluginDir);
+        }
+
+        log.info("Test Complete.");
+    }
+
+    private static void run(File pluginDir, ExecutorService executor, Consumer<SimplePluginManager> probeAction) throws InterruptedException {
+
+        SimplePluginManager manager = new SimplePluginManager();
+        manager.registerInterface(SimplePluginLoader.class);
+        manager.setEnableExecutor(executor);
+        manager.loadPlugins(pluginDir);
+
+        pluginManager = manager;
+        action = probeAction;
+        actionThread = null;
+
+        Thread enableThread = new Thread(manager::enablePlugins, "enable-plugins");
+        enableThread.setDaemon(true);
+        enableThread.start();
+        enableThread.join(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+
+        Thread probeThread = actionThread;
+
+        if (probeThread != null) {
+            probeThread.join(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+        }
+
+        if (enableThread.isAlive() || probeThread == null || probeThread.isAlive()) {
+            throw new IllegalStateException("The plugin manager deadlocked while a plugin was enabling.");
+        }
+    }
+
+    /**
+     * Created in the onEnable of base. Starts the action on another thread, gives it time to take the lock of the
+     * plugin manager and wait for base, then uses the plugin manager from onEnable.
+     */
+    public static class Probe {
+
+        public Probe() {
+
+            Thread thread = new Thread(() -> action.accept(pluginManager), "lock-order-probe");
+            thread.setDaemon(true);
+            actionThread = thread;
+            thread.start();
+
+            try {
+                Thread.sleep(300);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            pluginManager.getPlugin("missing");
+        }
+
+    }
+
+}
@@ -0,0 +1,161 @@
+package com.jayfella.plugin.manager;
+
+import com.jayfella.plugin.manager.fixture.PluginJarGenerator;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.jar.JarOutputStream;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * Verifies that a mapped jar is unmapped as soon as it is closed, unless a slice of the mapping is still in use, in
+ * which case it stays readable until it is released. Also verifies that a jar that cannot be parsed is not left
+ * mapped. The mappings are looked up in /proc/self/maps, so those checks are skipped where it does not exist.
+ */
+public class TestMappedJarFile {
+
+    private static final Logger log = Logger.getLogger(TestMappedJarFile.class.getName());
+
+    private static final String STORED_PATH = "generated/mapped/Stored.class";
+    private static final String DEFLATED_PATH = "generated/mapped/Deflated.class";
+
+    public static void main(String... args) throws IOException {
+
+        File directory = Files.createTempDirectory("mapped-jar").toFile();
+
+        try {
+
+            File jar = writeJar(new File(directory, "mapped.jar"));
+
+            testCloseUnmaps(jar);
+            testReleaseUnmaps(jar);
+            testInvalidJar(directory);
+
+        } finally {
+            FileUtils.deleteDirectory(directory);
+        }
+
+        log.info("Test Complete.");
+    }
+
+    private static void testCloseUnmaps(File jar) throws IOException {
+
+        MappedJarFile mapped = new MappedJarFile(jar);
+        check(isMapped(jar) != Boolean.FALSE, "The jar was not mapped.");
+
+        // an inflated entry does not use the mapping once it has been read.
+        ByteBuffer deflated = mapped.read(DEFLATED_PATH);
+        check(deflated != null && deflated.hasArray(), "The deflated entry was not inflated.");
+        mapped.release(deflated);
+
+        mapped.close();
+        check(isMapped(jar) != Boolean.TRUE, "The jar was still mapped after it was closed.");
+
+        try {
+            mapped.read(STORED_PATH);
+            throw new IllegalStateException("A closed jar was read.");
+        } catch (IOException expected) {
+            // the jar has been closed.
+        }
+
+        log.info("Close unmaps: OK");
+    }
+
+    private static void testReleaseUnmaps(File jar) throws IOException {
+
+        MappedJarFile mapped = new MappedJarFile(jar);
+
+        ByteBuffer stored = mapped.read(STORED_PATH);
+        check(stored != null && !stored.hasArray(), "The stored entry was not a slice of the mapping.");
+
+        mapped.close();
+
+        // the slice is still in use, so the jar stays mapped and the slice readable.
+        check(isMapped(jar) != Boolean.FALSE, "The jar was unmapped while a slice of it was in use.");
+        check(stored.duplicate().getInt() == 0xCAFEBABE, "The slice was not readable after the jar was closed.");
+
+        mapped.release(stored);
+        check(isMapped(jar) != Boolean.TRUE, "The jar was still mapped after its last slice was released.");
+
+        log.info("Release unmaps: OK");
+    }
+
+    private static void testInvalidJar(File directory) throws IOException {
+
+        File invalid = new File(directory, "invalid.jar");
+        FileUtils.writeStringToFile(invalid, "not a zip archive", StandardCharsets.UTF_8);
+
+        try {
+            new MappedJarFile(invalid).close();
+            throw new IllegalStateException("An invalid jar was mapped.");
+        } catch (ZipException expected) {
+            // the caller falls back to JarFile.
+        }
+
+        check(isMapped(invalid) != Boolean.TRUE, "An invalid jar was left mapped.");
+
+        log.info("Invalid jar: OK");
+    }
+
+    /**
+     * Writes a jar with one stored and one deflated class, so both kinds of reads can be checked.
+     */
+    private static File writeJar(File file) throws IOException {
+
+        byte[] storedClass = PluginJarGenerator.createEmptyClass("generated.mapped.Stored");
+        byte[] deflatedClass = PluginJarGenerator.createEmptyClass("generated.mapped.Deflated");
+
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(file))) {
+
+            CRC32 crc = new CRC32();
+            crc.update(storedClass);
+
+            ZipEntry stored = new ZipEntry(STORED_PATH);
+            stored.setMethod(ZipEntry.STORED);
+            stored.setSize(storedClass.length);
+            stored.setCompressedSize(storedClass.length);
+            stored.setCrc(crc.getValue());
+
+            out.putNextEntry(stored);
+            out.write(storedClass);
+            out.closeEntry();
+
+            out.putNextEntry(new ZipEntry(DEFLATED_PATH));
+            out.write(deflatedClass);
+            out.closeEntry();
+        }
+
+        return file;
+    }
+
+    /**
+     * Returns whether the given file is mapped into this process, or null if that cannot be determined.
+     */
+    private static Boolean isMapped(File file) throws IOException {
+
+        File maps = new File("/proc/self/maps");
+
+        if (!maps.exists()) {
+            return null;
+        }
+
+        String path = file.getCanonicalPath();
+        return Files.readAllLines(Paths.get(maps.getPath())).stream().anyMatch(line -> line.endsWith(" " + path));
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+
+}
@@ -0,0 +1,78 @@
+package com.jayfella.plugin.manager;
+
+import com.jayfella.plugin.manager.fixture.PluginJarGenerator;
+import com.jayfella.plugin.manager.plugin.Plugin;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Makes one plugin look up a class of a plugin that is not loaded, so the negative lookup cache records it as absent,
+ * then adds the plugin that provides it and verifies that the plugin can load its own main class and that the class
+ * is found from then on.
+ */
+public class TestNegativeLookupCache {
+
+    private static final Logger log = Logger.getLogger(TestNegativeLookupCache.class.getName());
+
+    public static void main(String... args) throws Exception {
+
+        File pluginDir = Files.createTempDirectory("negative-lookup-cache").toFile();
+
+        try {
+
+            File alphaJar = PluginJarGenerator.writePlugin(pluginDir, "alpha", Collections.emptyList());
+            PluginJarGenerator.writePlugin(pluginDir, "beta", Collections.emptyList());
+
+            Logger.getLogger("Plugin Manager").setLevel(Level.SEVERE);
+
+            SimplePluginManager pluginManager = new SimplePluginManager();
+            pluginManager.registerInterface(SimplePluginLoader.class);
+            pluginManager.loadPlugins(pluginDir);
+            pluginManager.enablePlugins();
+
+            String className = PluginJarGenerator.getPackageName("alpha") + ".Main";
+            ClassLoader beta = pluginManager.getPlugin("beta").getClass().getClassLoader();
+
+            pluginManager.unloadPlugin(pluginManager.getPlugin("alpha"));
+
+            // twice, so the second lookup is answered by the cache.
+            for (int i = 0; i < 2; i++) {
+                try {
+                    Class.forName(className, false, beta);
+                    throw new IllegalStateException(className + " was found while alpha was unloaded.");
+                } catch (ClassNotFoundException expected) {
+                    // the class is absent until alpha is added again.
+                }
+            }
+
+            SimplePluginLoader pluginLoader = (SimplePluginLoader) pluginManager.getPlugin("beta").getPluginLoader();
+
+            if (pluginLoader.getNegativeLookupCache().getHitCount() == 0) {
+                throw new IllegalStateException("The negative lookup cache never answered a lookup.");
+            }
+
+            Plugin[] added = pluginManager.addPlugins(Collections.singletonList(alphaJar));
+
+            if (added.length != 1 || pluginManager.getPlugin("alpha") == null) {
+                throw new IllegalStateException("alpha could not be added again after its main class was recorded as absent.");
+            }
+
+            Class<?> mainClass = Class.forName(className, false, beta);
+
+            if (mainClass.getClassLoader() != pluginManager.getPlugin("alpha").getClass().getClassLoader()) {
+                throw new IllegalStateException(className + " was not resolved from the new alpha.");
+            }
+
+        } finally {
+            FileUtils.deleteDirectory(pluginDir);
+        }
+
+        log.info("Test Complete.");
+    }
+
+}
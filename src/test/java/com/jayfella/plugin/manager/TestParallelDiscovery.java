@@ -0,0 +1,148 @@
+package com.jayfella.plugin.manager;
+
+import com.jayfella.plugin.manager.fixture.PluginJarGenerator;
+import com.jayfella.plugin.manager.plugin.Plugin;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Loads the same directory of generated plugins serially and with 1, 2, 4 and 8 discovery workers, verifying that
+ * every run registers the plugins in the same order and reporting how the load time scales.
+ *
+ * Every configuration is warmed up before anything is timed, and the timed runs alternate between the configurations,
+ * so neither the JIT nor the page cache favours the ones that happen to run later. The median of the runs is reported.
+ * A single worker still beats the serial path, because it reads descriptions while the calling thread creates the
+ * class loaders of the plugins it has already read.
+ */
+public class TestParallelDiscovery {
+
+    private static final Logger log = Logger.getLogger(TestParallelDiscovery.class.getName());
+
+    private static final int PLUGIN_COUNT = 300;
+    private static final int[] WORKERS = { 1, 2, 4, 8 };
+
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int TIMED_ROUNDS = 5;
+
+    public static void main(String... args) throws IOException, InterruptedException {
+
+        File pluginDir = Files.createTempDirectory("parallel-discovery").toFile();
+
+        try {
+
+            for (int i = 0; i < PLUGIN_COUNT; i++) {
+                List<String> dependencies = i == 0
+                        ? Collections.emptyList()
+                        : Collections.singletonList(String.format("plugin-%04d", i / 2));
+
+                PluginJarGenerator.writePlugin(pluginDir, String.format("plugin-%04d", i), dependencies);
+            }
+
+            // the plugin manager logs every plugin it loads.
+            Logger.getLogger("Plugin Manager").setLevel(Level.WARNING);
+
+            List<String> serialOrder = load(pluginDir, null);
+
+            if (serialOrder.size() != PLUGIN_COUNT) {
+                throw new AssertionError("Expected " + PLUGIN_COUNT + " plugins, but loaded " + serialOrder.size());
+            }
+
+            // index 0 is the serial path, the rest are the worker counts in order.
+            ExecutorService[] executors = new ExecutorService[WORKERS.length + 1];
+
+            for (int i = 0; i < WORKERS.length; i++) {
+                executors[i + 1] = Executors.newFixedThreadPool(WORKERS[i]);
+            }
+
+            try {
+
+                for (int i = 0; i < WORKERS.length; i++) {
+
+                    List<String> parallelOrder = load(pluginDir, executors[i + 1]);
+
+                    if (!parallelOrder.equals(serialOrder)) {
+                        throw new AssertionError("Parallel discovery with " + WORKERS[i] + " workers registered plugins in a different order.");
+                    }
+                }
+
+                for (int round = 0; round < WARMUP_ROUNDS; round++) {
+                    for (ExecutorService executor : executors) {
+                        load(pluginDir, executor);
+                    }
+                }
+
+                long[][] times = new long[executors.length][TIMED_ROUNDS];
+
+                for (int round = 0; round < TIMED_ROUNDS; round++) {
+                    for (int i = 0; i < executors.length; i++) {
+                        times[i][round] = time(pluginDir, executors[i]);
+                    }
+                }
+
+                long serialTime = median(times[0]);
+
+                log.info(String.format("Serial: %d plugins in %d ms", serialOrder.size(), serialTime));
+
+                for (int i = 0; i < WORKERS.length; i++) {
+
+                    long parallelTime = median(times[i + 1]);
+
+                    log.info(String.format("%d worker(s): %d plugins in %d ms (%.2fx serial)",
+                            WORKERS[i], serialOrder.size(), parallelTime, serialTime / (double) Math.max(1, parallelTime)));
+                }
+
+            } finally {
+                for (ExecutorService executor : executors) {
+                    if (executor != null) {
+                        executor.shutdown();
+                        executor.awaitTermination(10, TimeUnit.SECONDS);
+                    }
+                }
+            }
+
+            log.info("Test Complete.");
+
+        } finally {
+            FileUtils.deleteQuietly(pluginDir);
+        }
+
+    }
+
+    private static List<String> load(File pluginDir, ExecutorService executor) {
+
+        SimplePluginManager pluginManager = new SimplePluginManager();
+        pluginManager.registerInterface(SimplePluginLoader.class);
+        pluginManager.setDiscoveryExecutor(executor);
+
+        pluginManager.loadPlugins(pluginDir);
+
+        List<String> ids = new ArrayList<>();
+        Arrays.stream(pluginManager.getPlugins()).map(Plugin::getId).forEach(ids::add);
+        return ids;
+    }
+
+    private static long time(File pluginDir, ExecutorService executor) {
+        long start = System.nanoTime();
+        load(pluginDir, executor);
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    private static long median(long[] times) {
+        long[] sorted = times.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+}
@@ -0,0 +1,193 @@
+package com.jayfella.plugin.manager;
+
+import com.jayfella.plugin.manager.json.JsonObjectMapper;
+import com.jayfella.plugin.manager.plugin.description.PluginDescription;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * Verifies the reachability index against a breadth-first search of the dependency graph, with plugins that depend
+ * on each other added in the same batch, cycles through soft dependencies, and plugins removed in between.
+ */
+public class TestReachabilityIndex {
+
+    private static final Logger log = Logger.getLogger(TestReachabilityIndex.class.getName());
+
+    private static final int PLUGIN_COUNT = 200;
+    private static final int STEPS = 600;
+    private static final long SEED = 42;
+
+    public static void main(String... args) {
+
+        testSameBatch();
+        testRandomChanges();
+
+        log.info("Test Complete.");
+    }
+
+    /**
+     * Adds a chain and a cycle in one batch, in an order where every dependent comes before its dependencies.
+     */
+    private static void testSameBatch() {
+
+        Map<String, PluginDescription> plugins = new LinkedHashMap<>();
+        plugins.put("a", createDescription("a", Collections.singletonList("b"), Collections.emptyList()));
+        plugins.put("b", createDescription("b", Collections.singletonList("c"), Collections.emptyList()));
+        plugins.put("c", createDescription("c", Collections.emptyList(), Collections.singletonList("d")));
+        plugins.put("d", createDescription("d", Collections.emptyList(), Collections.singletonList("c")));
+
+        ReachabilityIndex index = new ReachabilityIndex();
+        index.add(new ArrayList<>(plugins.values()));
+
+        check(index, plugins, plugins.keySet());
+
+        if (!index.reaches(plugins.get("a"), "d") || index.reaches(plugins.get("d"), "a")) {
+            throw new IllegalStateException("Paths between plugins of the same batch were not resolved.");
+        }
+
+        // removing the middle of the chain cuts every path through it.
+        index.remove("b");
+        Set<String> present = new HashSet<>(Arrays.asList("a", "c", "d"));
+        check(index, plugins, present);
+
+        // adding it back in a batch of its own restores them.
+        index.add(Collections.singletonList(plugins.get("b")));
+        check(index, plugins, plugins.keySet());
+
+        log.info("Same batch: OK");
+    }
+
+    /**
+     * Adds random batches of a random graph with cycles and removes random plugins, checking every pair of
+     * registered plugins as it goes.
+     */
+    private static void testRandomChanges() {
+
+        Random random = new Random(SEED);
+        Map<String, PluginDescription> plugins = new LinkedHashMap<>();
+
+        for (int i = 0; i < PLUGIN_COUNT; i++) {
+
+            List<String> dependencies = new ArrayList<>();
+            List<String> softDependencies = new ArrayList<>();
+
+            for (int j = 0; j < 3; j++) {
+                if (i > 0 && random.nextInt(3) == 0) {
+                    dependencies.add("p" + random.nextInt(i));
+                }
+            }
+
+            // soft dependencies may point forward, so the graph has cycles.
+            if (random.nextInt(5) == 0) {
+                softDependencies.add("p" + random.nextInt(PLUGIN_COUNT));
+            }
+
+            plugins.put("p" + i, createDescription("p" + i, dependencies, softDependencies));
+        }
+
+        List<String> ids = new ArrayList<>(plugins.keySet());
+        Set<String> present = new LinkedHashSet<>();
+        ReachabilityIndex index = new ReachabilityIndex();
+
+        for (int step = 0; step < STEPS; step++) {
+
+            if (present.isEmpty() || random.nextInt(3) != 0) {
+
+                int batchSize = random.nextInt(4) == 0 ? 1 + random.nextInt(60) : 1 + random.nextInt(4);
+                List<PluginDescription> batch = new ArrayList<>();
+
+                for (int i = 0; i < batchSize; i++) {
+
+                    String id = ids.get(random.nextInt(ids.size()));
+
+                    if (present.add(id)) {
+                        batch.add(plugins.get(id));
+                    }
+                }
+
+                index.add(batch);
+
+            } else {
+
+                String id = new ArrayList<>(present).get(random.nextInt(present.size()));
+                present.remove(id);
+                index.remove(id);
+            }
+
+            if (step % 5 == 0) {
+                check(index, plugins, present);
+            }
+        }
+
+        log.info("Random changes: OK");
+    }
+
+    private static void check(ReachabilityIndex index, Map<String, PluginDescription> plugins, Set<String> present) {
+
+        for (String from : present) {
+            for (String to : present) {
+
+                boolean expected = search(plugins, present, from, to);
+                boolean actual = index.reaches(plugins.get(from), to);
+
+                if (expected != actual) {
+                    throw new IllegalStateException(String.format("%s reaches %s: expected %s but was %s", from, to, expected, actual));
+                }
+            }
+        }
+    }
+
+    private static boolean search(Map<String, PluginDescription> plugins, Set<String> present, String from, String to) {
+
+        Deque<String> queue = new ArrayDeque<>();
+        Set<String> seen = new HashSet<>();
+        queue.add(from);
+
+        while (!queue.isEmpty()) {
+
+            PluginDescription description = plugins.get(queue.poll());
+
+            List<String> dependencyIds = new ArrayList<>(description.getDependencies());
+            dependencyIds.addAll(description.getSoftDependencies());
+
+            for (String id : dependencyIds) {
+
+                if (present.contains(id) && seen.add(id)) {
+
+                    if (id.equals(to)) {
+                        return true;
+                    }
+
+                    queue.add(id);
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private static PluginDescription createDescription(String id, List<String> dependencies, List<String> softDependencies) {
+
+        Map<String, Object> values = new HashMap<>();
+        values.put("id", id);
+        values.put("main", "generated." + id + ".Main");
+        values.put("dependencies", dependencies);
+        values.put("softDependencies", softDependencies);
+
+        return JsonObjectMapper.getInstance().getObjectMapper().convertValue(values, PluginDescription.class);
+    }
+
+}
@@ -0,0 +1,242 @@
+package com.jayfella.plugin.manager.cache;
+
+import com.jayfella.plugin.manager.fixture.PluginJarGenerator;
+import com.jayfella.plugin.manager.plugin.description.PluginDescription;
+import com.jayfella.plugin.manager.transformer.ClassTarget;
+import com.jayfella.plugin.manager.transformer.ClassTransformer;
+import org.apache.commons.io.FileUtils;
+import org.jetbrains.annotations.NotNull;
+import org.objectweb.asm.ClassVisitor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Verifies that the bytecode cache returns what was stored, also from a new instance, that a different transformer
+ * version or input produces a different key, and that truncated, corrupted, foreign and moved entries are dropped
+ * instead of being returned.
+ */
+public class TestBytecodeCache {
+
+    private static final Logger log = Logger.getLogger(TestBytecodeCache.class.getName());
+
+    private static final long MAX_BYTES = 1024 * 1024;
+
+    public static void main(String... args) throws IOException {
+
+        File directory = Files.createTempDirectory("bytecode-cache").toFile();
+
+        try {
+
+            testHits(directory);
+            testVersionBump(directory);
+            testCorruptEntries(directory);
+
+        } finally {
+            FileUtils.deleteDirectory(directory);
+        }
+
+        log.info("Test Complete.");
+    }
+
+    private static void testHits(File directory) throws IOException {
+
+        File cacheDir = new File(directory, "hits");
+        BytecodeCache cache = new BytecodeCache(cacheDir, MAX_BYTES);
+
+        byte[] original = PluginJarGenerator.createEmptyClass("generated.hits.Original");
+        byte[] transformed = PluginJarGenerator.createEmptyClass("generated.hits.Transformed");
+        String key = cache.createKey("hits", "generated.hits.Original", ByteBuffer.wrap(original), chain("1"));
+
+        check(cache.get(key) == null, "An empty cache returned an entry.");
+        check(cache.getMissCount() == 1, "A miss was not counted.");
+
+        cache.put(key, transformed);
+        check(Arrays.equals(cache.get(key), transformed), "A stored entry was not returned.");
+        check(cache.getHitCount() == 1 && cache.getWriteCount() == 1, "A hit or write was not counted.");
+
+        // a new instance, as after a restart, reads the entry and its size from disk.
+        cache = new BytecodeCache(cacheDir, MAX_BYTES);
+        check(cache.getSize() > transformed.length, "The size of the stored entries was not read from disk.");
+        check(Arrays.equals(cache.get(key), transformed), "A stored entry was not returned after a restart.");
+
+        log.info("Hits: OK");
+    }
+
+    private static void testVersionBump(File directory) throws IOException {
+
+        BytecodeCache cache = new BytecodeCache(new File(directory, "versions"), MAX_BYTES);
+
+        byte[] original = PluginJarGenerator.createEmptyClass("generated.versions.Original");
+        String className = "generated.versions.Original";
+
+        String key = cache.createKey("versions", className, ByteBuffer.wrap(original), chain("1"));
+        cache.put(key, PluginJarGenerator.createEmptyClass("generated.versions.Transformed"));
+
+        check(key.equals(cache.createKey("versions", className, ByteBuffer.wrap(original), chain("1"))),
+                "The key of the same input and transformers changed.");
+
+        String bumped = cache.createKey("versions", className, ByteBuffer.wrap(original), chain("2"));
+        check(!bumped.equals(key), "Bumping the version of a transformer kept the key.");
+        check(cache.get(bumped) == null, "The entry of the previous transformer version was returned.");
+
+        String reordered = cache.createKey("versions", className, ByteBuffer.wrap(original), Arrays.asList(
+                new VersionedTransformer("second", "1"), new VersionedTransformer("first", "1")));
+        check(!reordered.equals(cache.createKey("versions", className, ByteBuffer.wrap(original), Arrays.asList(
+                new VersionedTransformer("first", "1"), new VersionedTransformer("second", "1")))),
+                "Reordering the transformers kept the key.");
+
+        byte[] changed = PluginJarGenerator.createEmptyClass("generated.versions.Changed");
+        check(!key.equals(cache.createKey("versions", className, ByteBuffer.wrap(changed), chain("1"))),
+                "Different class bytes produced the same key.");
+        check(!key.equals(cache.createKey("other", className, ByteBuffer.wrap(original), chain("1"))),
+                "A different plugin produced the same key.");
+
+        log.info("Version bump: OK");
+    }
+
+    private static void testCorruptEntries(File directory) throws IOException {
+
+        File cacheDir = new File(directory, "corrupt");
+        BytecodeCache cache = new BytecodeCache(cacheDir, MAX_BYTES);
+
+        byte[] transformed = PluginJarGenerator.createEmptyClass("generated.corrupt.Transformed");
+
+        // a flipped byte in the class bytes.
+        String flipped = putEntry(cache, "Flipped", transformed);
+        File entry = getEntryFile(cacheDir, flipped);
+
+        try (RandomAccessFile file = new RandomAccessFile(entry, "rw")) {
+            file.seek(file.length() - 1);
+            int last = file.read();
+            file.seek(file.length() - 1);
+            file.write(last ^ 0xFF);
+        }
+
+        checkDropped(cache, flipped, "with a flipped byte");
+
+        // a truncated entry.
+        String truncated = putEntry(cache, "Truncated", transformed);
+        entry = getEntryFile(cacheDir, truncated);
+
+        try (RandomAccessFile file = new RandomAccessFile(entry, "rw")) {
+            file.setLength(file.length() / 2);
+        }
+
+        checkDropped(cache, truncated, "that was truncated");
+
+        // a bare class file, as written by an older version or by something else entirely.
+        String foreign = putEntry(cache, "Foreign", transformed);
+        Files.write(getEntryFile(cacheDir, foreign).toPath(), transformed);
+
+        checkDropped(cache, foreign, "without a header");
+
+        // a valid entry copied under another key.
+        String source = putEntry(cache, "Source", transformed);
+        String target = putEntry(cache, "Target", PluginJarGenerator.createEmptyClass("generated.corrupt.Other"));
+        Files.copy(getEntryFile(cacheDir, source).toPath(), getEntryFile(cacheDir, target).toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+
+        checkDropped(cache, target, "copied under another key");
+        check(Arrays.equals(cache.get(source), transformed), "The entry that was copied is no longer returned.");
+
+        check(cache.getCorruptCount() == 4, "Expected 4 corrupt entries but counted " + cache.getCorruptCount());
+
+        // a dropped entry is simply written again.
+        cache.put(flipped, transformed);
+        check(Arrays.equals(cache.get(flipped), transformed), "A dropped entry could not be written again.");
+
+        log.info("Corrupt entries: OK");
+    }
+
+    private static String putEntry(BytecodeCache cache, String simpleName, byte[] transformed) {
+
+        String className = "generated.corrupt." + simpleName;
+        byte[] original = PluginJarGenerator.createEmptyClass(className);
+        String key = cache.createKey("corrupt", className, ByteBuffer.wrap(original), chain("1"));
+
+        cache.put(key, transformed);
+        check(cache.get(key) != null, "The entry for " + className + " was not stored.");
+
+        return key;
+    }
+
+    private static void checkDropped(BytecodeCache cache, String key, String description) throws IOException {
+
+        check(cache.get(key) == null, "An entry " + description + " was returned.");
+
+        File cacheDir = cache.getDirectory();
+        check(!getEntryFile(cacheDir, key).exists(), "An entry " + description + " was not deleted.");
+    }
+
+    /**
+     * Finds the file of the given key without relying on the layout of the cache directory.
+     */
+    private static File getEntryFile(File cacheDir, String key) throws IOException {
+
+        try (Stream<Path> files = Files.walk(cacheDir.toPath())) {
+
+            Collection<File> matches = files
+                    .map(Path::toFile)
+                    .filter(file -> file.getName().startsWith(key) && file.getName().endsWith(".class"))
+                    .collect(Collectors.toList());
+
+            return matches.isEmpty() ? new File(cacheDir, key) : matches.iterator().next();
+        }
+    }
+
+    private static List<ClassTransformer> chain(String version) {
+        return Collections.singletonList(new VersionedTransformer("versioned", version));
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+
+    private static class VersionedTransformer implements ClassTransformer {
+
+        private final String name;
+        private final String version;
+
+        VersionedTransformer(String name, String version) {
+            this.name = name;
+            this.version = version;
+        }
+
+        @Override
+        public @NotNull String getName() {
+            return name;
+        }
+
+        @Override
+        public @NotNull String getVersion() {
+            return version;
+        }
+
+        @Override
+        public @NotNull ClassTarget getTarget() {
+            return ClassTarget.all();
+        }
+
+        @Override
+        public @NotNull ClassVisitor transform(@NotNull PluginDescription plugin, @NotNull String className, @NotNull ClassVisitor next) {
+            return next;
+        }
+
+    }
+
+}
@@ -0,0 +1,197 @@
+package com.jayfella.plugin.manager.cache;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.jayfella.plugin.manager.SimplePluginLoader;
+import com.jayfella.plugin.manager.SimplePluginManager;
+import com.jayfella.plugin.manager.fixture.PluginJarGenerator;
+import com.jayfella.plugin.manager.json.JsonObjectMapper;
+import com.jayfella.plugin.manager.plugin.description.PluginDescription;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Verifies that the description cache returns a description while its jar is unchanged, survives a restart, drops
+ * it when the jar changes, detects content changes that keep the size and timestamp only when hashing, and rebuilds
+ * itself from a corrupt cache file.
+ */
+public class TestPluginDescriptionCache {
+
+    private static final Logger log = Logger.getLogger(TestPluginDescriptionCache.class.getName());
+
+    public static void main(String... args) throws IOException {
+
+        File directory = Files.createTempDirectory("description-cache").toFile();
+
+        try {
+
+            testHitsAndMisses(directory);
+            testHashContent(directory);
+            testCorruptFile(directory);
+            testPluginManager(directory);
+
+        } finally {
+            FileUtils.deleteDirectory(directory);
+        }
+
+        log.info("Test Complete.");
+    }
+
+    private static void testHitsAndMisses(File directory) throws IOException {
+
+        File jar = writeFile(directory, "hits.jar", "content");
+        File cacheFile = new File(directory, "hits.descriptions.json");
+
+        PluginDescriptionCache cache = new PluginDescriptionCache(cacheFile);
+        cache.load();
+
+        check(cache.get(jar) == null, "An empty cache returned a description.");
+
+        cache.put(jar, createDescription("hits"));
+        check(isCached(cache, jar, "hits"), "A stored description was not returned.");
+
+        cache.save();
+
+        // a new cache reads what the previous one saved.
+        cache = new PluginDescriptionCache(cacheFile);
+        cache.load();
+        check(isCached(cache, jar, "hits"), "A saved description was not returned after loading the cache again.");
+
+        // a different size is a miss, and the stale entry is dropped.
+        writeFile(directory, "hits.jar", "changed content");
+        check(cache.get(jar) == null, "A description was returned for a jar whose size changed.");
+        check(cache.size() == 0, "The entry of a changed jar was kept.");
+
+        // so is a different modification time.
+        cache.put(jar, createDescription("hits"));
+        check(jar.setLastModified(jar.lastModified() - 10_000), "Unable to change the modification time of " + jar);
+        check(cache.get(jar) == null, "A description was returned for a jar whose modification time changed.");
+
+        // only the jars that are still there are kept.
+        cache.put(jar, createDescription("hits"));
+        cache.retain(Collections.emptyList());
+        check(cache.size() == 0, "The entry of a removed jar was kept.");
+
+        log.info("Hits and misses: OK");
+    }
+
+    private static void testHashContent(File directory) throws IOException {
+
+        File jar = writeFile(directory, "hash.jar", "aaaa");
+        long lastModified = jar.lastModified();
+
+        PluginDescriptionCache cache = new PluginDescriptionCache(new File(directory, "hash.descriptions.json"));
+        cache.put(jar, createDescription("hash"));
+
+        // the same size and modification time with different content.
+        writeFile(directory, "hash.jar", "bbbb");
+        check(jar.setLastModified(lastModified), "Unable to change the modification time of " + jar);
+
+        check(isCached(cache, jar, "hash"), "Without hashing, a jar with the same size and timestamp should be a hit.");
+
+        // an entry stored without a hash is read again once hashing is enabled.
+        cache.setHashContent(true);
+        check(cache.get(jar) == null, "An entry without a hash was returned while hashing.");
+
+        cache.put(jar, createDescription("hash"));
+        check(isCached(cache, jar, "hash"), "A hashed entry of an unchanged jar was not returned.");
+
+        writeFile(directory, "hash.jar", "cccc");
+        check(jar.setLastModified(lastModified), "Unable to change the modification time of " + jar);
+
+        check(cache.get(jar) == null, "A jar whose content changed was a hit while hashing.");
+
+        log.info("Hash content: OK");
+    }
+
+    private static void testCorruptFile(File directory) throws IOException {
+
+        File jar = writeFile(directory, "corrupt.jar", "content");
+        File cacheFile = writeFile(directory, "corrupt.descriptions.json", "{ \"version\": 1, \"entries\": [ {");
+
+        Logger.getLogger(PluginDescriptionCache.class.getName()).setLevel(Level.SEVERE);
+
+        PluginDescriptionCache cache = new PluginDescriptionCache(cacheFile);
+        cache.load();
+
+        check(cache.size() == 0, "A corrupt cache file produced entries.");
+        check(cache.get(jar) == null, "A corrupt cache file produced a hit.");
+
+        // a corrupt file is replaced by the next save, even if nothing was added.
+        cache.save();
+
+        cache = new PluginDescriptionCache(cacheFile);
+        cache.load();
+        check(cache.size() == 0, "The rewritten cache file is not empty.");
+
+        cache.put(jar, createDescription("corrupt"));
+        cache.save();
+
+        cache = new PluginDescriptionCache(cacheFile);
+        cache.load();
+        check(isCached(cache, jar, "corrupt"), "A cache rebuilt from a corrupt file lost its entry.");
+
+        log.info("Corrupt file: OK");
+    }
+
+    /**
+     * Enables hashing through the plugin manager and checks that the entries it writes carry a hash.
+     */
+    private static void testPluginManager(File directory) throws IOException {
+
+        File pluginDir = new File(directory, "plugins");
+        Files.createDirectories(pluginDir.toPath());
+        PluginJarGenerator.writePlugin(pluginDir, "managed", Collections.emptyList());
+
+        Logger.getLogger("Plugin Manager").setLevel(Level.WARNING);
+
+        SimplePluginManager pluginManager = new SimplePluginManager();
+        pluginManager.registerInterface(SimplePluginLoader.class);
+        pluginManager.setDescriptionCacheEnabled(true);
+        pluginManager.setDescriptionCacheHashContent(true);
+        pluginManager.loadPlugins(pluginDir);
+
+        File cacheFile = PluginDescriptionCache.forDirectory(pluginDir).getCacheFile();
+        JsonNode entries = JsonObjectMapper.getInstance().getObjectMapper().readTree(cacheFile).get("entries");
+
+        check(entries != null && entries.size() == 1, "The plugin manager did not cache the description.");
+        check(entries.get(0).hasNonNull("hash"), "The plugin manager did not hash the jar.");
+
+        log.info("Plugin manager: OK");
+    }
+
+    private static boolean isCached(PluginDescriptionCache cache, File jar, String id) {
+        PluginDescription description = cache.get(jar);
+        return description != null && id.equals(description.getId());
+    }
+
+    private static File writeFile(File directory, String name, String content) throws IOException {
+        File file = new File(directory, name);
+        FileUtils.writeStringToFile(file, content, StandardCharsets.UTF_8);
+        return file;
+    }
+
+    private static PluginDescription createDescription(String id) {
+
+        Map<String, Object> values = new HashMap<>();
+        values.put("id", id);
+        values.put("main", "generated." + id + ".Main");
+
+        return JsonObjectMapper.getInstance().getObjectMapper().convertValue(values, PluginDescription.class);
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+
+}
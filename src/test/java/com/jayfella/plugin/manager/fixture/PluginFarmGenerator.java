@@ -0,0 +1,128 @@
+package com.jayfella.plugin.manager.fixture;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Writes a directory of generated plugins whose dependencies form a given topology, for tests that need thousands of
+ * plugins. Plugin ids are {@code plugin-00000}, {@code plugin-00001} and so on, and a plugin only ever depends on
+ * plugins with a lower index, so every farm is acyclic.
+ */
+public class PluginFarmGenerator {
+
+    public enum Topology {
+
+        /**
+         * Every plugin depends on the plugin before it, giving a single chain as deep as the farm.
+         */
+        CHAIN,
+
+        /**
+         * Every plugin depends on the first plugin.
+         */
+        STAR,
+
+        /**
+         * Every plugin depends on up to {@link #setMaxDependencies(int) a few} random plugins before it.
+         */
+        RANDOM_DAG
+
+    }
+
+    private final Topology topology;
+    private final int pluginCount;
+
+    private int classCount;
+    private int maxDependencies = 3;
+    private long seed = 1;
+
+    public PluginFarmGenerator(Topology topology, int pluginCount) {
+        this.topology = topology;
+        this.pluginCount = pluginCount;
+    }
+
+    /**
+     * Sets the number of classes each plugin contains besides its main class. They are all loaded when the plugin is
+     * enabled.
+     */
+    public PluginFarmGenerator setClassCount(int classCount) {
+        this.classCount = classCount;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of dependencies of a plugin in a {@link Topology#RANDOM_DAG random DAG}.
+     */
+    public PluginFarmGenerator setMaxDependencies(int maxDependencies) {
+        this.maxDependencies = maxDependencies;
+        return this;
+    }
+
+    /**
+     * Sets the seed of random topologies. The same seed always produces the same farm.
+     */
+    public PluginFarmGenerator setSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    public static String getPluginId(int index) {
+        return String.format("plugin-%05d", index);
+    }
+
+    /**
+     * Writes the plugins into the given directory.
+     *
+     * @return the ids of the plugins, in the order they were generated.
+     */
+    public List<String> generate(File directory) throws IOException {
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create " + directory);
+        }
+
+        Random random = new Random(seed);
+        List<String> ids = new ArrayList<>(pluginCount);
+
+        for (int i = 0; i < pluginCount; i++) {
+
+            String id = getPluginId(i);
+            PluginJarGenerator.writePlugin(directory, id, getDependencies(i, random), Collections.emptyMap(), classCount);
+            ids.add(id);
+        }
+
+        return ids;
+    }
+
+    private List<String> getDependencies(int index, Random random) {
+
+        if (index == 0) {
+            return Collections.emptyList();
+        }
+
+        switch (topology) {
+            case CHAIN:
+                return Collections.singletonList(getPluginId(index - 1));
+            case STAR:
+                return Collections.singletonList(getPluginId(0));
+            case RANDOM_DAG:
+                Set<String> dependencies = new LinkedHashSet<>();
+                int count = 1 + random.nextInt(Math.min(index, maxDependencies));
+
+                while (dependencies.size() < count) {
+                    dependencies.add(getPluginId(random.nextInt(index)));
+                }
+
+                return new ArrayList<>(dependencies);
+            default:
+                throw new IllegalArgumentException(topology.name());
+        }
+    }
+
+}
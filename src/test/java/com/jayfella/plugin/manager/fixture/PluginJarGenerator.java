@@ -0,0 +1,243 @@
+package com.jayfella.plugin.manager.fixture;
+
+import com.jayfella.plugin.manager.json.JsonObjectMapper;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/**
+ * Writes minimal SimplePlugin jars for tests. Each jar contains a generated main class that extends SimplePlugin
+ * and a plugin.json that describes it.
+ */
+public class PluginJarGenerator {
+
+    private static final String SIMPLE_PLUGIN = "com/jayfella/plugin/manager/plugin/SimplePlugin";
+    private static final String[] LIFECYCLE_METHODS = { "onLoad", "onUnload", "onEnable", "onDisable" };
+
+    private PluginJarGenerator() {
+
+    }
+
+    /**
+     * Writes a plugin jar named {@code <id>.jar} into the given directory.
+     *
+     * @param directory    the directory to write the jar into.
+     * @param id           the id of the plugin. Also used to derive the main class package.
+     * @param dependencies the ids of the plugins this plugin depends on.
+     * @return the jar that was written.
+     */
+    public static File writePlugin(File directory, String id, List<String> dependencies) throws IOException {
+        return writePlugin(directory, id, dependencies, Collections.emptyMap());
+    }
+
+    /**
+     * Writes a plugin jar named {@code <id>.jar} into the given directory.
+     *
+     * @param directory    the directory to write the jar into.
+     * @param id           the id of the plugin. Also used to derive the main class package.
+     * @param dependencies the ids of the plugins this plugin depends on.
+     * @param properties   additional plugin.json properties, such as "lazy".
+     * @return the jar that was written.
+     */
+    public static File writePlugin(File directory, String id, List<String> dependencies, Map<String, Object> properties) throws IOException {
+        return writePlugin(directory, id, dependencies, properties, 0);
+    }
+
+    /**
+     * Writes a plugin jar named {@code <id>.jar} into the given directory, with additional empty classes named
+     * {@code Class0000}, {@code Class0001} and so on in the package of the main class. The main class creates an
+     * instance of each of them in onEnable, so enabling the plugin loads all of its classes.
+     *
+     * @param directory    the directory to write the jar into.
+     * @param id           the id of the plugin. Also used to derive the main class package.
+     * @param dependencies the ids of the plugins this plugin depends on.
+     * @param properties   additional plugin.json properties, such as "lazy".
+     * @param classCount   the number of additional classes.
+     * @return the jar that was written.
+     */
+    public static File writePlugin(File directory, String id, List<String> dependencies, Map<String, Object> properties, int classCount) throws IOException {
+        return writePlugin(directory, id, dependencies, properties, classCount, Collections.emptyList());
+    }
+
+    /**
+     * Writes a plugin jar named {@code <id>.jar} into the given directory, with additional empty classes as described
+     * in {@link #writePlugin(File, String, List, Map, int)}. The main class also creates an instance of each of the
+     * given classes in onEnable, after the additional classes. They are not written into the jar, so they must be
+     * public classes with a public default constructor that the plugin can load from its parent, such as test classes.
+     *
+     * @param directory     the directory to write the jar into.
+     * @param id            the id of the plugin. Also used to derive the main class package.
+     * @param dependencies  the ids of the plugins this plugin depends on.
+     * @param properties    additional plugin.json properties, such as "lazy".
+     * @param classCount    the number of additional classes.
+     * @param enableClasses the binary names of the classes to create an instance of in onEnable.
+     * @return the jar that was written.
+     */
+    public static File writePlugin(File directory, String id, List<String> dependencies, Map<String, Object> properties, int classCount, List<String> enableClasses) throws IOException {
+        return writePlugin(directory, id, dependencies, properties, classCount, enableClasses, Collections.emptyMap());
+    }
+
+    /**
+     * Writes a plugin jar named {@code <id>.jar} into the given directory, as described in
+     * {@link #writePlugin(File, String, List, Map, int, List)}, that also contains the given classes.
+     *
+     * @param directory     the directory to write the jar into.
+     * @param id            the id of the plugin. Also used to derive the main class package.
+     * @param dependencies  the ids of the plugins this plugin depends on.
+     * @param properties    additional plugin.json properties, such as "lazy".
+     * @param classCount    the number of additional classes.
+     * @param enableClasses the binary names of the classes to create an instance of in onEnable.
+     * @param classes       the bytecode of further classes to write into the jar, by binary name.
+     * @return the jar that was written.
+     */
+    public static File writePlugin(File directory, String id, List<String> dependencies, Map<String, Object> properties, int classCount, List<String> enableClasses, Map<String, byte[]> classes) throws IOException {
+
+        String mainClass = getPackageName(id) + ".Main";
+
+        List<String> classNames = new ArrayList<>(classCount);
+
+        for (int i = 0; i < classCount; i++) {
+            classNames.add(getClassName(id, i));
+        }
+
+        List<String> instantiated = new ArrayList<>(classNames);
+        instantiated.addAll(enableClasses);
+
+        Map<String, Object> description = new LinkedHashMap<>();
+        description.put("main", mainClass);
+        description.put("type", "SimplePlugin");
+        description.put("id", id);
+        description.put("version", "1.0.0");
+        description.put("dependencies", new ArrayList<>(dependencies));
+        description.putAll(properties);
+
+        File jarFile = new File(directory, id + ".jar");
+
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jarFile))) {
+
+            out.putNextEntry(new JarEntry("plugin.json"));
+            out.write(JsonObjectMapper.getInstance().getObjectMapper().writeValueAsBytes(description));
+            out.closeEntry();
+
+            out.putNextEntry(new JarEntry(mainClass.replace('.', '/') + ".class"));
+            out.write(createMainClass(mainClass, instantiated));
+            out.closeEntry();
+
+            for (String className : classNames) {
+                out.putNextEntry(new JarEntry(className.replace('.', '/') + ".class"));
+                out.write(createEmptyClass(className));
+                out.closeEntry();
+            }
+
+            for (Map.Entry<String, byte[]> clazz : classes.entrySet()) {
+                out.putNextEntry(new JarEntry(clazz.getKey().replace('.', '/') + ".class"));
+                out.write(clazz.getValue());
+                out.closeEntry();
+            }
+        }
+
+        return jarFile;
+    }
+
+    /**
+     * Gets the package of the classes of the plugin with the given id.
+     */
+    public static String getPackageName(String id) {
+        return "generated." + id.replaceAll("[^A-Za-z0-9_]", "_");
+    }
+
+    /**
+     * Gets the name of the additional class with the given index in the plugin with the given id.
+     */
+    public static String getClassName(String id, int index) {
+        return String.format("%s.Class%04d", getPackageName(id), index);
+    }
+
+    /**
+     * Creates the bytecode of an empty public class with a default constructor.
+     */
+    public static byte[] createEmptyClass(String className) {
+        return createEmptyClass(className, "java.lang.Object");
+    }
+
+    /**
+     * Creates the bytecode of an empty public class with a default constructor that extends the given class.
+     */
+    public static byte[] createEmptyClass(String className, String superClassName) {
+
+        String superName = superClassName.replace('.', '/');
+
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, className.replace('.', '/'), null, superName, null);
+
+        MethodVisitor constructor = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        constructor.visitCode();
+        constructor.visitVarInsn(Opcodes.ALOAD, 0);
+        constructor.visitMethodInsn(Opcodes.INVOKESPECIAL, superName, "<init>", "()V", false);
+        constructor.visitInsn(Opcodes.RETURN);
+        constructor.visitMaxs(0, 0);
+        constructor.visitEnd();
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    /**
+     * Creates the bytecode of a class that extends SimplePlugin and implements every lifecycle method as a no-op.
+     */
+    public static byte[] createMainClass(String className) {
+        return createMainClass(className, Collections.emptyList());
+    }
+
+    /**
+     * Creates the bytecode of a class that extends SimplePlugin, where onEnable creates an instance of each of the
+     * given classes and every other lifecycle method is a no-op.
+     */
+    public static byte[] createMainClass(String className, List<String> enableClasses) {
+
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, className.replace('.', '/'), null, SIMPLE_PLUGIN, null);
+
+        MethodVisitor constructor = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        constructor.visitCode();
+        constructor.visitVarInsn(Opcodes.ALOAD, 0);
+        constructor.visitMethodInsn(Opcodes.INVOKESPECIAL, SIMPLE_PLUGIN, "<init>", "()V", false);
+        constructor.visitInsn(Opcodes.RETURN);
+        constructor.visitMaxs(0, 0);
+        constructor.visitEnd();
+
+        for (String methodName : LIFECYCLE_METHODS) {
+            MethodVisitor method = cw.visitMethod(Opcodes.ACC_PUBLIC, methodName, "()V", null, null);
+            method.visitCode();
+
+            if (methodName.equals("onEnable")) {
+                for (String enableClass : enableClasses) {
+                    String internalName = enableClass.replace('.', '/');
+                    method.visitTypeInsn(Opcodes.NEW, internalName);
+                    method.visitInsn(Opcodes.DUP);
+                    method.visitMethodInsn(Opcodes.INVOKESPECIAL, internalName, "<init>", "()V", false);
+                    method.visitInsn(Opcodes.POP);
+                }
+            }
+
+            method.visitInsn(Opcodes.RETURN);
+            method.visitMaxs(0, 0);
+            method.visitEnd();
+        }
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+}
@@ -0,0 +1,149 @@
+package com.jayfella.plugin.manager.sorter;
+
+import com.jayfella.plugin.manager.sorter.DirectedGraph.DataNode;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Compares {@link TopologicalOrder#createOrderedLoad(DirectedGraph)} against the previous remove-a-node-at-a-time
+ * implementation over several graph shapes and sizes, and verifies that both produce valid load orders.
+ */
+public class BenchmarkTopologicalOrder {
+
+    private static final Logger log = Logger.getLogger(BenchmarkTopologicalOrder.class.getName());
+
+    private static final int[] SIZES = { 500, 1000, 2000, 4000 };
+    private static final int ITERATIONS = 5;
+
+    public static void main(String... args) {
+
+        for (String shape : new String[] { "chain", "reverse-chain", "random-dag", "star" }) {
+            for (int size : SIZES) {
+
+                // verify before timing anything.
+                List<Integer> linear = TopologicalOrder.createOrderedLoad(createGraph(shape, size));
+                List<Integer> legacy = createLegacyOrderedLoad(createGraph(shape, size));
+
+                verifyOrder(createGraph(shape, size), linear);
+                verifyOrder(createGraph(shape, size), legacy);
+
+                // the linear implementation is deterministic, so it must also be repeatable.
+                if (!linear.equals(TopologicalOrder.createOrderedLoad(createGraph(shape, size)))) {
+                    throw new AssertionError("createOrderedLoad is not deterministic for " + shape + " " + size);
+                }
+
+                long linearNanos = 0;
+                long legacyNanos = 0;
+
+                for (int i = 0; i < ITERATIONS; i++) {
+
+                    DirectedGraph<Integer> graph = createGraph(shape, size);
+                    long start = System.nanoTime();
+                    TopologicalOrder.createOrderedLoad(graph);
+                    linearNanos += System.nanoTime() - start;
+
+                    graph = createGraph(shape, size);
+                    start = System.nanoTime();
+                    createLegacyOrderedLoad(graph);
+                    legacyNanos += System.nanoTime() - start;
+                }
+
+                log.info(String.format("%-13s %5d nodes: linear %8.3f ms, legacy %9.3f ms (%.1fx)",
+                        shape, size,
+                        linearNanos / (double) ITERATIONS / TimeUnit.MILLISECONDS.toNanos(1),
+                        legacyNanos / (double) ITERATIONS / TimeUnit.MILLISECONDS.toNanos(1),
+                        legacyNanos / (double) Math.max(1, linearNanos)));
+            }
+        }
+
+        log.info("Benchmark Complete.");
+    }
+
+    /**
+     * Creates a graph of the given shape where an edge from A to B means A depends on B.
+     */
+    static DirectedGraph<Integer> createGraph(String shape, int size) {
+
+        DirectedGraph<Integer> graph = new DirectedGraph<>();
+        Random random = new Random(size);
+
+        for (int i = 0; i < size; i++) {
+            graph.add(i);
+        }
+
+        for (int i = 1; i < size; i++) {
+            switch (shape) {
+                case "chain":
+                    graph.addEdge(i, i - 1);
+                    break;
+                case "reverse-chain":
+                    graph.addEdge(i - 1, i);
+                    break;
+                case "star":
+                    graph.addEdge(i, 0);
+                    break;
+                case "random-dag":
+                    // depend on up to three nodes with a higher index so insertion order is a poor guess.
+                    for (int d = 0; d < 3 && i + d < size; d++) {
+                        graph.addEdge(i - 1, i + random.nextInt(size - i));
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException(shape);
+            }
+        }
+
+        return graph;
+    }
+
+    static <T> void verifyOrder(DirectedGraph<T> graph, List<T> order) {
+
+        if (order.size() != graph.getNodeCount()) {
+            throw new AssertionError("Expected " + graph.getNodeCount() + " nodes but the order has " + order.size());
+        }
+
+        Map<T, Integer> positions = new HashMap<>();
+
+        for (int i = 0; i < order.size(); i++) {
+            positions.put(order.get(i), i);
+        }
+
+        for (DataNode<T> node : graph.getNodes()) {
+            for (DataNode<T> dependency : node.getAdjacent()) {
+                if (positions.get(dependency.getData()) > positions.get(node.getData())) {
+                    throw new AssertionError(node.getData() + " is ordered before its dependency " + dependency.getData());
+                }
+            }
+        }
+    }
+
+    /**
+     * The previous implementation of {@link TopologicalOrder#createOrderedLoad(DirectedGraph)}, kept as a baseline.
+     * It repeatedly scans for a node without edges and removes it from the graph.
+     */
+    static <T> List<T> createLegacyOrderedLoad(DirectedGraph<T> graph) {
+        final List<T> orderedList = new ArrayList<>();
+        while (graph.getNodeCount() != 0) {
+            DataNode<T> next = null;
+            for (DataNode<T> node : graph.getNodes()) {
+                if (node.getEdgeCount() == 0) {
+                    next = node;
+                    break;
+                }
+            }
+            if (next == null) {
+                throw new IllegalStateException("Graph is cyclic!");
+            }
+            orderedList.add(next.getData());
+            graph.remove(next.getData());
+        }
+        return orderedList;
+    }
+
+}